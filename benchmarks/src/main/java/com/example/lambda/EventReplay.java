@@ -0,0 +1,97 @@
+package com.example.lambda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replay de fluxos de eventos "Feedback Submitted" contra as janelas de coalescência
+ * (EventWindows, mesma regra do batching window do SQS).
+ *
+ * Para cada cenário e configuração de janela, mostra quantas execuções do workflow seriam
+ * iniciadas (contra uma por evento, como na regra antiga) e quanto cada evento esperou a mais.
+ *
+ * java -cp target/benchmarks.jar com.example.lambda.EventReplay
+ */
+public class EventReplay {
+
+    private static final long HOUR = 3_600_000L;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        List<Scenario> scenarios = List.of(
+            new Scenario("constante, 1 evento/min por 24 h", poisson(random, 0, 24 * HOUR, 1 / 60_000d)),
+            new Scenario("fim de aula: 300 eventos em 2 min, a cada hora, por 8 h", bursts(random, 8, 300, 120_000)),
+            new Scenario("pico: 5000 eventos em 10 min + 2/min de fundo por 2 h", merge(
+                poisson(random, 0, 2 * HOUR, 2 / 60_000d), bursts(random, 1, 5000, 600_000))));
+        long[][] windows = {{10_000, 1000}, {60_000, 1000}, {300_000, 1000}, {300_000, 100}};
+
+        for (Scenario scenario : scenarios) {
+            System.out.printf("%n%s (%d eventos)%n", scenario.name, scenario.arrivals.length);
+            System.out.printf("%-22s %10s %9s %12s %12s %12s %12s%n",
+                "janela / lote máx.", "execuções", "evitadas", "espera méd.", "p50", "p99", "máx.");
+            for (long[] window : windows) {
+                report(scenario.arrivals, window[0], (int) window[1]);
+            }
+        }
+    }
+
+    private static void report(long[] arrivals, long maxWaitMillis, int maxEvents) {
+        List<EventWindows.Window> windows = EventWindows.coalesce(arrivals, maxWaitMillis, maxEvents);
+        long[] delays = new long[arrivals.length];
+        long total = 0;
+        int i = 0;
+        for (EventWindows.Window window : windows) {
+            for (int n = 0; n < window.events(); n++, i++) {
+                delays[i] = window.closesAt() - arrivals[i];
+            }
+            total += window.totalDelayMillis();
+        }
+        Arrays.sort(delays);
+        int saved = arrivals.length - windows.size();
+        System.out.printf("%-22s %10d %8.1f%% %10.1f s %10.1f s %10.1f s %10.1f s%n",
+            maxWaitMillis / 1000 + " s / " + maxEvents,
+            windows.size(), 100.0 * saved / arrivals.length,
+            total / 1000.0 / arrivals.length,
+            percentile(delays, 0.50) / 1000.0, percentile(delays, 0.99) / 1000.0, delays[delays.length - 1] / 1000.0);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    // Chegadas com intervalos exponenciais (processo de Poisson) com a taxa dada por ms
+    private static long[] poisson(Random random, long from, long to, double perMillis) {
+        List<Long> arrivals = new ArrayList<>();
+        for (double t = from; ; ) {
+            t += -Math.log(1 - random.nextDouble()) / perMillis;
+            if (t >= to) {
+                break;
+            }
+            arrivals.add((long) t);
+        }
+        return arrivals.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // "count" eventos espalhados em "spreadMillis" no início de cada uma das "hours" horas
+    private static long[] bursts(Random random, int hours, int count, long spreadMillis) {
+        long[] arrivals = new long[hours * count];
+        for (int h = 0; h < hours; h++) {
+            for (int n = 0; n < count; n++) {
+                arrivals[h * count + n] = h * HOUR + (long) (random.nextDouble() * spreadMillis);
+            }
+        }
+        Arrays.sort(arrivals);
+        return arrivals;
+    }
+
+    private static long[] merge(long[] a, long[] b) {
+        long[] merged = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, merged, a.length, b.length);
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    private record Scenario(String name, long[] arrivals) { }
+}
@@ -0,0 +1,83 @@
+package com.example.lambda;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Estatísticas do relatório: implementação anterior (cinco passadas sobre a lista)
+ * contra o FeedbackStats (uma passada, sequencial e paralela).
+ *
+ * java -jar target/benchmarks.jar FeedbackStatsBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedbackStatsBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private List<Map<String, Object>> feedbacks;
+
+    @Setup
+    public void setUp() {
+        feedbacks = SyntheticFeedbacks.week(size, 42);
+    }
+
+    @Benchmark
+    public void multiPass(Blackhole bh) {
+        // Cópia do cálculo que existia em generateReportContent
+        OptionalDouble mediaNotas = feedbacks.stream()
+            .filter(feedback -> feedback.get("nota") != null)
+            .mapToDouble(feedback -> {
+                try {
+                    return Double.parseDouble(feedback.get("nota").toString());
+                } catch (NumberFormatException e) {
+                    return 0.0;
+                }
+            })
+            .filter(nota -> nota > 0)
+            .average();
+        long alta = feedbacks.stream().filter(f -> "alta".equals(f.get("urgency"))).count();
+        long media = feedbacks.stream().filter(f -> "media".equals(f.get("urgency"))).count();
+        long baixa = feedbacks.stream().filter(f -> "baixa".equals(f.get("urgency"))).count();
+        Map<String, Long> avaliacoesPorDia = feedbacks.stream()
+            .filter(feedback -> feedback.get("createdAt") != null)
+            .collect(Collectors.groupingBy(
+                feedback -> feedback.get("createdAt").toString().substring(0, 10),
+                Collectors.counting()));
+
+        bh.consume(mediaNotas);
+        bh.consume(alta + media + baixa);
+        bh.consume(avaliacoesPorDia);
+    }
+
+    @Benchmark
+    public FeedbackStats singlePass() {
+        return feedbacks.stream().collect(FeedbackStats.collector());
+    }
+
+    @Benchmark
+    public FeedbackStats singlePassParallel() {
+        return feedbacks.parallelStream().collect(FeedbackStats.collector());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.lambda;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Corpo da resposta de uma página da Lambda A: conversão anterior (mapas + ObjectMapper)
+ * contra o FeedbackJsonWriter (JsonGenerator direto dos AttributeValue).
+ *
+ * java -jar target/benchmarks.jar ListResponseBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListResponseBenchmark {
+
+    @Param({"100", "1000"})
+    public int pageSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final FeedbackJsonWriter writer = new FeedbackJsonWriter();
+    private FeedbackPage page;
+
+    @Setup
+    public void setUp() {
+        page = new FeedbackPage(SyntheticFeedbacks.items(pageSize, 42),
+            Map.of("pk", "FEEDBACK", "createdAt", "2026-01-04T23:59:59Z"));
+    }
+
+    @Benchmark
+    public String mapTree() throws Exception {
+        // Cópia do caminho que existia em processRequest + createApiGatewayResponse
+        Map<String, Object> result = new HashMap<>();
+        result.put("count", page.items().size());
+        List<Map<String, Object>> responseItems = new ArrayList<>();
+        for (Map<String, AttributeValue> item : page.items()) {
+            Map<String, Object> convertedItem = new HashMap<>();
+            for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+                convertedItem.put(entry.getKey(), convertAttributeValue(entry.getValue()));
+            }
+            responseItems.add(convertedItem);
+        }
+        result.put("items", responseItems);
+        result.put("nextToken", page.nextToken());
+        result.put("startDate", "2025-12-29T00:00:00Z");
+        result.put("endDate", "2026-01-04T23:59:59Z");
+        result.put("urgency", null);
+        return mapper.writeValueAsString(result);
+    }
+
+    @Benchmark
+    public String streaming() throws Exception {
+        return writer.page(page, "2025-12-29T00:00:00Z", "2026-01-04T23:59:59Z", null);
+    }
+
+    private Object convertAttributeValue(AttributeValue value) {
+        if (value.s() != null) {
+            return value.s();
+        } else if (value.n() != null) {
+            return value.n();
+        } else if (value.bool() != null) {
+            return value.bool();
+        } else if (value.hasL() && !value.l().isEmpty()) {
+            return value.l().stream().map(this::convertAttributeValue).toArray();
+        } else if (value.hasM() && !value.m().isEmpty()) {
+            Map<String, Object> map = new HashMap<>();
+            value.m().forEach((k, v) -> map.put(k, convertAttributeValue(v)));
+            return map;
+        } else if (value.nul() != null && value.nul()) {
+            return null;
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.lambda;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paginação do modo drain sobre o período inteiro (uma semana ou um ano) numa tabela em memória:
+ * FeedbackDrainer com a partição única (mesma Query da Lambda A), com a partição única em fatias de
+ * tempo (TimeSlicedFeedbackQuery, 32 fatias com 8 simultâneas) ou com o ShardedFeedbackQuery.
+ *
+ * Com queryLatencyMs = 0 o resultado mede só o custo de CPU e alocação do lado da Lambda (tokens,
+ * merge dos shards, estimativa de tamanho). Com latência, cada Query espera esse tempo antes de
+ * responder, como a ida e volta ao DynamoDB, e aparece o ganho das consultas simultâneas.
+ *
+ * java -jar target/benchmarks.jar PaginationBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PaginationBenchmark {
+
+    private static final String START = "2025-12-29T00:00:00Z";
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"single", "sliced", "sharded"})
+    public String layout;
+
+    @Param({"0", "5"})
+    public int queryLatencyMs;
+
+    @Param({"7", "365"})
+    public int days;
+
+    @Param({"1000"})
+    public int pageSize;
+
+    private static final int SHARDS = 8;
+    private static final int SLICES = 32;
+    private static final int SCAN_CONCURRENCY = 8;
+    private static final int SCAN_PREFETCH_PAGES = 4;
+
+    private InMemoryDynamoDb table;
+    private String end;
+    private final Metrics metrics = new Metrics("benchmark");
+
+    @Setup
+    public void setUp() {
+        table = SyntheticFeedbacks.table(size, "sharded".equals(layout) ? SHARDS : 0, days, 42);
+        end = LocalDate.parse(START.substring(0, 10)).plusDays(days - 1) + "T23:59:59Z";
+        if (queryLatencyMs > 0) {
+            table = new SlowDynamoDb(table, queryLatencyMs);
+        }
+    }
+
+    @Benchmark
+    public FeedbackDrainer.Result drain(Blackhole bh) {
+        FeedbackPage.Source source = switch (layout) {
+            case "sharded" -> new ShardedFeedbackQuery(table, metrics, "feedbacks", SHARDS, START, end, null);
+            case "sliced" -> new TimeSlicedFeedbackQuery(table, metrics, "feedbacks", START, end, null,
+                SLICES, SCAN_CONCURRENCY, SCAN_PREFETCH_PAGES);
+            default -> this::legacyPage;
+        };
+        FeedbackDrainer drainer = new FeedbackDrainer(pageSize, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+        try (source) {
+            FeedbackDrainer.Result result = drainer.drain(source, null, bh::consume);
+            metrics.discard();
+            return result;
+        }
+    }
+
+    // Mesma Query da partição única em ListFeedbacksHandler.pageSource
+    private FeedbackPage legacyPage(Map<String, Object> token, int limit) {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":pk", AttributeValue.builder().s(FeedbackKeys.LEGACY_PARTITION).build());
+        values.put(":start", AttributeValue.builder().s(START).build());
+        values.put(":end", AttributeValue.builder().s(end).build());
+        QueryRequest.Builder request = QueryRequest.builder()
+            .tableName("feedbacks")
+            .limit(limit)
+            .keyConditionExpression("pk = :pk AND createdAt BETWEEN :start AND :end")
+            .expressionAttributeValues(values);
+        if (token != null) {
+            Map<String, AttributeValue> startKey = new HashMap<>();
+            token.forEach((k, v) -> startKey.put(k, AttributeValue.builder().s(v.toString()).build()));
+            request.exclusiveStartKey(startKey);
+        }
+        QueryResponse response = metrics.query(table, request.build());
+        if (response.lastEvaluatedKey().isEmpty()) {
+            return new FeedbackPage(response.items(), null);
+        }
+        Map<String, Object> next = new HashMap<>();
+        response.lastEvaluatedKey().forEach((k, v) -> next.put(k, v.s()));
+        return new FeedbackPage(response.items(), next);
+    }
+
+    // Mesma tabela, com uma espera fixa por Query (as threads virtuais esperando não ocupam CPU)
+    private static final class SlowDynamoDb extends InMemoryDynamoDb {
+        private final InMemoryDynamoDb delegate;
+        private final long latencyMillis;
+
+        SlowDynamoDb(InMemoryDynamoDb delegate, long latencyMillis) {
+            this.delegate = delegate;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public QueryResponse query(QueryRequest request) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return delegate.query(request);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.lambda;
+
+import org.HdrHistogram.Histogram;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Carga de ponta a ponta nas três Lambdas, com DynamoDB, S3 e SES em memória (os fakes dos testes):
+ * ListFeedbacks em modo drain gravando o lote no S3, GenerateWeeklyReport lendo esse lote e
+ * NotifyReport enviando o relatório.
+ *
+ * Para cada estágio mostra vazão (invocações/s e feedbacks/s), latência (p50, p90, p99, máx. via
+ * HdrHistogram) e alocação (MB por invocação e MB/s), medida com getTotalThreadAllocatedBytes
+ * (todas as threads, inclusive as virtuais do fan-out e do prefetch).
+ *
+ * Os handlers leem a configuração do ambiente, como no Lambda: REPORTS_BUCKET é obrigatória
+ * (qualquer nome) e SHARD_COUNT escolhe o esquema de chaves da tabela gerada. O NotifyReport
+ * respeita o SES_MAX_SEND_RATE (padrão 14/s): com muitas iterações ou destinatários, a vazão
+ * desse estágio é a taxa de envio, não CPU.
+ *
+ * REPORTS_BUCKET=local SHARD_COUNT=8 java -cp target/benchmarks.jar com.example.lambda.PipelineLoadHarness [feedbacks] [iterações] [destinatários]
+ */
+public class PipelineLoadHarness {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int recipients = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int shardCount = Integer.parseInt(System.getenv().getOrDefault("SHARD_COUNT", "0"));
+        int warmup = Math.max(3, iterations / 5);
+        if (System.getenv("REPORTS_BUCKET") == null) {
+            System.err.println("Defina REPORTS_BUCKET (qualquer nome; o bucket é em memória)");
+            System.exit(1);
+        }
+
+        InMemoryDynamoDb ddb = SyntheticFeedbacks.table(size, shardCount, 42);
+        InMemoryS3 s3 = new InMemoryS3();
+        StubSes ses = new StubSes(0);
+        // Relatórios acima de INLINE_REPORT_MAX_BYTES vão como link; assinar é local, sem rede
+        S3Presigner presigner = S3Presigner.builder()
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local")))
+            .build();
+        AwsClients clients = new AwsClients(ddb, s3, ses, presigner);
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < recipients; i++) {
+            list.append("coordenador").append(i).append("@example.com\n");
+        }
+        s3.objects.put("destinatarios.txt", list.toString().getBytes(StandardCharsets.UTF_8));
+
+        ListFeedbacksHandler listHandler = new ListFeedbacksHandler(clients);
+        GenerateWeeklyReportHandler reportHandler = new GenerateWeeklyReportHandler(clients);
+        NotifyReportHandler notifyHandler = new NotifyReportHandler(clients);
+
+        Map<String, Stage> stages = new LinkedHashMap<>();
+        stages.put("ListFeedbacks (drain -> S3)", new Stage());
+        stages.put("GenerateWeeklyReport", new Stage());
+        stages.put("NotifyReport", new Stage());
+
+        System.out.printf("%d feedbacks, %s, %d iterações (+%d de aquecimento), %d destinatário(s)%n",
+            size, shardCount > 0 ? shardCount + " shards por dia" : "partição única", iterations, warmup, recipients);
+
+        for (int i = 0; i < warmup + iterations; i++) {
+            boolean measured = i >= warmup;
+            Map<String, Object> listed = stages.get("ListFeedbacks (drain -> S3)").run(measured, () ->
+                listHandler.handleRequest(Map.of("mode", "drain", "output", "s3",
+                    "startDate", "2025-12-29T00:00:00Z", "endDate", "2026-01-04T23:59:59Z"), new TestContext()));
+            String batchKey = (String) listed.get("batchKey");
+
+            String reportKey = stages.get("GenerateWeeklyReport").run(measured, () ->
+                reportHandler.handleRequest(Map.of("batchKey", batchKey, "endDate", "2026-01-04T23:59:59Z"), new TestContext()));
+
+            stages.get("NotifyReport").run(measured, () ->
+                notifyHandler.handleRequest(Map.of("reportKey", reportKey, "recipientsKey", "destinatarios.txt"), new TestContext()));
+
+            // Só o que cada iteração produziu; a lista de destinatários fica
+            s3.objects.remove(batchKey);
+            s3.objects.remove(reportKey);
+            s3.objects.remove("deliveries/" + reportKey + ".sent");
+            ses.sent.clear();
+            ses.attemptNanos.clear();
+        }
+
+        System.out.printf("%n%-28s %9s %13s %9s %9s %9s %9s %11s %9s%n",
+            "estágio", "inv/s", "feedbacks/s", "p50 ms", "p90 ms", "p99 ms", "máx. ms", "MB/inv", "MB/s");
+        stages.forEach((name, stage) -> stage.print(name, size));
+    }
+
+    private static final class Stage {
+        private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        private final Histogram latencyMicros = new Histogram(TimeUnit.MINUTES.toMicros(15), 3);
+        private long totalNanos;
+        private long allocatedBytes;
+
+        <T> T run(boolean measured, Supplier<T> invocation) {
+            long allocatedBefore = THREADS.getTotalThreadAllocatedBytes();
+            long start = System.nanoTime();
+            T result = invocation.get();
+            long elapsed = System.nanoTime() - start;
+            if (measured) {
+                latencyMicros.recordValue(elapsed / 1_000);
+                totalNanos += elapsed;
+                allocatedBytes += THREADS.getTotalThreadAllocatedBytes() - allocatedBefore;
+            }
+            return result;
+        }
+
+        void print(String name, int size) {
+            long count = latencyMicros.getTotalCount();
+            double seconds = totalNanos / 1e9;
+            double megabytes = allocatedBytes / 1e6;
+            System.out.printf("%-28s %9.2f %13.0f %9.1f %9.1f %9.1f %9.1f %11.1f %9.0f%n",
+                name, count / seconds, count * (double) size / seconds,
+                latencyMicros.getValueAtPercentile(50) / 1000.0, latencyMicros.getValueAtPercentile(90) / 1000.0,
+                latencyMicros.getValueAtPercentile(99) / 1000.0, latencyMicros.getMaxValue() / 1000.0,
+                megabytes / count, megabytes / seconds);
+        }
+    }
+}
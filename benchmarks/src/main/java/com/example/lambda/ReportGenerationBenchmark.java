@@ -0,0 +1,76 @@
+package com.example.lambda;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Geração do relatório semanal de ponta a ponta (o antigo generateReportContent, hoje estatísticas
+ * + writeReport + upload em streaming) pelo GenerateWeeklyReportHandler, com S3 em memória.
+ * "list" recebe os feedbacks no evento; "batch" lê o lote colunar FBK1 do bucket, como na Step Function.
+ *
+ * O relatório anterior é apagado a cada chamada: com a chave endereçada pelo conteúdo, a segunda
+ * chamada com a mesma entrada só faria um HEAD.
+ *
+ * java -jar target/benchmarks.jar ReportGenerationBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReportGenerationBenchmark {
+
+    private static final String BATCH_KEY = "batches/benchmark.fbk";
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"list", "batch"})
+    public String input;
+
+    private final InMemoryS3 s3 = new InMemoryS3();
+    private GenerateWeeklyReportHandler handler;
+    private Map<String, Object> event;
+
+    @Setup
+    public void setUp() throws IOException {
+        handler = new GenerateWeeklyReportHandler(new AwsClients(null, s3, null));
+        List<Map<String, Object>> feedbacks = SyntheticFeedbacks.week(size, 42);
+        if ("list".equals(input)) {
+            event = Map.of("feedbacks", feedbacks, "endDate", "2026-01-04T23:59:59Z");
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (FeedbackBatchWriter batch = new FeedbackBatchWriter(bytes)) {
+            for (Map<String, Object> feedback : feedbacks) {
+                batch.write((String) feedback.get("createdAt"), (String) feedback.get("nota"),
+                    (String) feedback.get("urgency"), (String) feedback.get("descricao"));
+            }
+        }
+        s3.objects.put(BATCH_KEY, bytes.toByteArray());
+        event = Map.of("batchKey", BATCH_KEY, "endDate", "2026-01-04T23:59:59Z");
+    }
+
+    @Benchmark
+    public String generate() {
+        String reportKey = handler.handleRequest(event, new TestContext());
+        s3.objects.remove(reportKey);
+        return reportKey;
+    }
+}
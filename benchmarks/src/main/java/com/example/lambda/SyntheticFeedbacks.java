@@ -0,0 +1,77 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Feedbacks sintéticos no mesmo formato que a Lambda A entrega à Lambda B (ou como itens do DynamoDB).
+ */
+final class SyntheticFeedbacks {
+
+    private static final String[] URGENCIES = {"alta", "media", "baixa"};
+    private static final DateTimeFormatter MILLIS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private SyntheticFeedbacks() {
+    }
+
+    static List<Map<String, Object>> week(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDate monday = LocalDate.parse("2025-12-29");
+        List<Map<String, Object>> feedbacks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> feedback = new HashMap<>();
+            int second = random.nextInt(7 * 86_400);
+            feedback.put("pk", "FEEDBACK");
+            feedback.put("createdAt", monday.plusDays(second / 86_400) + String.format("T%02d:%02d:%02dZ",
+                (second / 3600) % 24, (second / 60) % 60, second % 60));
+            feedback.put("nota", Integer.toString(1 + random.nextInt(10)));
+            feedback.put("urgency", URGENCIES[random.nextInt(URGENCIES.length)]);
+            feedback.put("descricao", "Feedback sintético número " + i);
+            feedbacks.add(feedback);
+        }
+        return feedbacks;
+    }
+
+    // Os mesmos feedbacks como itens crus do DynamoDB (todos os atributos S, como na tabela)
+    static List<Map<String, AttributeValue>> items(int size, long seed) {
+        List<Map<String, AttributeValue>> items = new ArrayList<>(size);
+        for (Map<String, Object> feedback : week(size, seed)) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            feedback.forEach((k, v) -> item.put(k, AttributeValue.builder().s(v.toString()).build()));
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Tabela em memória com "size" feedbacks espalhados pela semana, com createdAt distintos
+     * (precisão de milissegundos, para caber 1 milhão de itens). shardCount 0 usa a partição
+     * única "FEEDBACK"; acima disso, o esquema FEEDBACK#dia#n.
+     */
+    static InMemoryDynamoDb table(int size, int shardCount, long seed) {
+        return table(size, shardCount, 7, seed);
+    }
+
+    // O mesmo, espalhado por "days" dias a partir de 2025-12-29
+    static InMemoryDynamoDb table(int size, int shardCount, int days, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long monday = LocalDate.parse("2025-12-29").atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+        long step = days * 86_400_000L / size;
+        InMemoryDynamoDb table = new InMemoryDynamoDb();
+        for (int i = 0; i < size; i++) {
+            String createdAt = MILLIS.format(Instant.ofEpochMilli(monday + i * step));
+            table.put(FeedbackKeys.partitionKeyFor(createdAt, Integer.toString(i), shardCount), createdAt,
+                URGENCIES[random.nextInt(URGENCIES.length)], Integer.toString(1 + random.nextInt(10)));
+        }
+        return table;
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mantém os agregados diários a partir do stream da tabela de feedbacks.
+ *
+ * Os registros do lote são agrupados por dia e cada dia é aplicado numa TransactWriteItems: um
+ * UpdateItem "ADD" com o delta do dia (inclusões, remoções e alterações) e um marcador por
+ * registro ("event#" + eventID, com TTL) condicionado a não existir. Um registro entregue de novo
+ * (o Lambda reprocessa o lote depois de uma falha) encontra o seu marcador, sai da transação e
+ * não é somado duas vezes. Um dia que falha é devolvido em batchItemFailures
+ * (ReportBatchItemFailures): o Lambda retoma a partir dele, e os registros seguintes que já
+ * tinham sido aplicados são descartados pelos marcadores.
+ *
+ * Com DAILY_SKETCHES, as inclusões também entram nos sketches do dia (DailySketches) no mesmo
+ * UpdateItem, condicionado à versão lida; contadores, sketches e marcadores mudam juntos ou não
+ * mudam, e a transação é repetida relendo a linha se outro lote gravou o dia no meio tempo.
+ *
+ * O stream começa em LATEST: os dias anteriores ao deploy vêm de {@link #backfill}.
+ */
+public class AggregateFeedbacksHandler implements RequestHandler<DynamodbEvent, StreamsEventResponse> {
+
+    // Limite de 100 itens por transação: a linha do dia mais até 99 marcadores
+    private static final int RECORDS_PER_TRANSACTION = 99;
+    private static final int MAX_ATTEMPTS = 10;
+    static final String MARKER_PREFIX = "event#";
+    // O stream guarda registros por 24 h; depois disso nenhuma reentrega precisa do marcador
+    private static final long MARKER_TTL_SECONDS = Duration.ofHours(48).toSeconds();
+    private static final String ADD_EXPRESSION =
+        "ADD #count :count, notaCount :notaCount, notaSum :notaSum, alta :alta, media :media, baixa :baixa";
+    private static final String SET_COUNTERS =
+        "SET #count = :count, notaCount = :notaCount, notaSum = :notaSum, alta = :alta, media = :media, baixa = :baixa";
+    private static final long BACKFILL_TIME_MARGIN_MILLIS = 10_000;
+
+    private final AwsClients clients;
+    private final String statsTableName;
+    private final boolean sketchesEnabled;
+    private final String distinctAttribute = System.getenv().getOrDefault("SKETCH_DISTINCT_ATTRIBUTE", "descricao");
+    private final String tableName = System.getenv("TABLE_NAME");
+    private final int shardCount = Integer.parseInt(System.getenv().getOrDefault("SHARD_COUNT", "0"));
+
+    public AggregateFeedbacksHandler() {
+        this(AwsClients.shared());
+    }
+
+    AggregateFeedbacksHandler(AwsClients clients) {
+        this(clients, System.getenv("DAILY_STATS_TABLE"),
+            Boolean.parseBoolean(System.getenv().getOrDefault("DAILY_SKETCHES", "false")));
+    }
+
+    AggregateFeedbacksHandler(AwsClients clients, String statsTableName, boolean sketchesEnabled) {
+        this.clients = clients;
+        this.statsTableName = statsTableName;
+        this.sketchesEnabled = sketchesEnabled;
+    }
+
+    // Efeito de um registro do stream sobre a linha do seu dia; inserted só nas inclusões
+    private record Change(String eventId, String sequenceNumber, DailyAggregate delta,
+                          Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> inserted) {
+    }
+
+    @Override
+    public StreamsEventResponse handleRequest(DynamodbEvent event, Context context) {
+        LambdaLogger logger = context.getLogger();
+
+        Map<String, List<Change>> byDay = new TreeMap<>();
+        for (DynamodbEvent.DynamodbStreamRecord record : event.getRecords()) {
+            Change change = change(record);
+            if (change != null) {
+                byDay.computeIfAbsent(change.delta().day(), day -> new ArrayList<>()).add(change);
+            }
+        }
+
+        List<StreamsEventResponse.BatchItemFailure> failures = new ArrayList<>();
+        int applied = 0;
+        int redelivered = 0;
+        for (Map.Entry<String, List<Change>> day : byDay.entrySet()) {
+            List<Change> changes = day.getValue();
+            for (int from = 0; from < changes.size(); from += RECORDS_PER_TRANSACTION) {
+                List<Change> chunk = changes.subList(from, Math.min(changes.size(), from + RECORDS_PER_TRANSACTION));
+                try {
+                    int fresh = apply(day.getKey(), chunk);
+                    applied += fresh;
+                    redelivered += chunk.size() - fresh;
+                } catch (RuntimeException e) {
+                    logger.log("Falha ao agregar " + chunk.size() + " registros de " + day.getKey() + ": " + e + "\n");
+                    for (Change change : chunk) {
+                        failures.add(new StreamsEventResponse.BatchItemFailure(change.sequenceNumber()));
+                    }
+                }
+            }
+        }
+
+        logger.log("Agregados atualizados: " + event.getRecords().size() + " registros do stream, " + byDay.size() + " dias, "
+            + applied + " aplicados, " + redelivered + " já aplicados antes" + (failures.isEmpty() ? "" : ", " + failures.size() + " com falha")
+            + "\n");
+        return StreamsEventResponse.builder().withBatchItemFailures(failures).build();
+    }
+
+    /**
+     * Aplica os registros de um dia numa transação; devolve quantos ainda não tinham sido
+     * aplicados. Registros cujo marcador já existe saem e a transação é refeita com o resto.
+     */
+    private int apply(String day, List<Change> chunk) {
+        List<Change> pending = new ArrayList<>(chunk);
+        for (int attempt = 1; ; attempt++) {
+            DailyAggregate delta = DailyAggregate.empty(day);
+            DailySketches sketches = DailySketches.empty(distinctAttribute);
+            for (Change change : pending) {
+                delta = delta.plus(change.delta());
+                if (sketchesEnabled && change.inserted() != null) {
+                    sketches.add(DailyAggregate.parseNota(stringOf(change.inserted().get("nota"))),
+                        stringOf(change.inserted().get(distinctAttribute)));
+                }
+            }
+
+            Map<String, AttributeValue> values = delta.toUpdateValues();
+            Update.Builder row = Update.builder()
+                .tableName(statsTableName)
+                .key(DailyAggregate.key(day))
+                .expressionAttributeNames(Map.of("#count", "count"));
+            if (sketches.isEmpty()) {
+                row.updateExpression(ADD_EXPRESSION);
+            } else {
+                values.putAll(sketches.mergedValues(clients.dynamoDb(), statsTableName, day));
+                row.updateExpression(DailySketches.SET_EXPRESSION + " " + ADD_EXPRESSION)
+                    .conditionExpression(DailySketches.VERSION_CONDITION);
+            }
+
+            List<TransactWriteItem> items = new ArrayList<>(pending.size() + 1);
+            items.add(TransactWriteItem.builder().update(row.expressionAttributeValues(values).build()).build());
+            AttributeValue expiresAt = AttributeValue.builder()
+                .n(Long.toString(Instant.now().getEpochSecond() + MARKER_TTL_SECONDS))
+                .build();
+            for (Change change : pending) {
+                items.add(TransactWriteItem.builder().put(Put.builder()
+                        .tableName(statsTableName)
+                        .item(Map.of("day", AttributeValue.builder().s(MARKER_PREFIX + change.eventId()).build(), "expiresAt", expiresAt))
+                        .conditionExpression("attribute_not_exists(#day)")
+                        .expressionAttributeNames(Map.of("#day", "day"))
+                        .build())
+                    .build());
+            }
+
+            try {
+                clients.dynamoDb().transactWriteItems(TransactWriteItemsRequest.builder().transactItems(items).build());
+                return pending.size();
+            } catch (TransactionCanceledException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                // Motivos na ordem dos itens: [0] é a linha do dia (versão dos sketches), depois os marcadores
+                List<CancellationReason> reasons = e.cancellationReasons();
+                if (reasons.size() == items.size()) {
+                    List<Change> remaining = new ArrayList<>(pending.size());
+                    for (int i = 0; i < pending.size(); i++) {
+                        if (!"ConditionalCheckFailed".equals(reasons.get(i + 1).code())) {
+                            remaining.add(pending.get(i));
+                        }
+                    }
+                    pending = remaining;
+                }
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Recalcula as linhas dos dias de startDate a endDate lendo os feedbacks da tabela: os dias
+     * anteriores ao deploy do stream, ou os que divergiram no modo "verify". Contadores e sketches
+     * são regravados com SET, então repetir o backfill de um dia dá o mesmo resultado. Só para dias
+     * fechados: um feedback gravado no dia durante a leitura pode ficar de fora. Se o tempo da
+     * Lambda acabar, nextStartDate diz de onde continuar.
+     */
+    public Map<String, Object> backfill(Map<String, Object> input, Context context) {
+        LambdaLogger logger = context.getLogger();
+        if (input == null || input.get("startDate") == null || input.get("endDate") == null) {
+            throw new IllegalArgumentException("startDate e endDate são obrigatórios no backfill");
+        }
+        LocalDate day = FeedbackKeys.dayOf(String.valueOf(input.get("startDate")));
+        LocalDate lastDay = FeedbackKeys.dayOf(String.valueOf(input.get("endDate")));
+        long deadline = System.currentTimeMillis() + context.getRemainingTimeInMillis() - BACKFILL_TIME_MARGIN_MILLIS;
+
+        int rebuilt = 0;
+        long feedbacks = 0;
+        for (; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            if (rebuilt > 0 && System.currentTimeMillis() > deadline) {
+                break;
+            }
+            feedbacks += rebuild(day);
+            rebuilt++;
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("days", rebuilt);
+        result.put("feedbacks", feedbacks);
+        result.put("nextStartDate", day.isAfter(lastDay) ? null : day.toString());
+        logger.log("Backfill dos agregados: " + rebuilt + " dias, " + feedbacks + " feedbacks"
+            + (day.isAfter(lastDay) ? "" : ", continua em " + day) + "\n");
+        return result;
+    }
+
+    // Lê o dia inteiro (partição legada e shards) e regrava a linha; devolve quantos feedbacks leu
+    private long rebuild(LocalDate day) {
+        DailyAggregate total = DailyAggregate.empty(day.toString());
+        DailySketches sketches = DailySketches.empty(distinctAttribute);
+        List<String> partitions = new ArrayList<>();
+        partitions.add(FeedbackKeys.LEGACY_PARTITION);
+        if (shardCount > 0) {
+            partitions.addAll(FeedbackKeys.partitionsOf(day, shardCount));
+        }
+
+        for (String partition : partitions) {
+            Map<String, AttributeValue> startKey = null;
+            do {
+                QueryRequest.Builder request = QueryRequest.builder()
+                    .tableName(tableName)
+                    .keyConditionExpression("pk = :pk AND createdAt BETWEEN :start AND :end")
+                    .expressionAttributeValues(Map.of(
+                        ":pk", AttributeValue.builder().s(partition).build(),
+                        ":start", AttributeValue.builder().s(day.toString()).build(),
+                        ":end", AttributeValue.builder().s(FeedbackKeys.upperBound(day + "T23:59:59Z")).build()));
+                if (startKey != null) {
+                    request.exclusiveStartKey(startKey);
+                }
+                QueryResponse page = clients.dynamoDb().query(request.build());
+                for (Map<String, AttributeValue> item : page.items()) {
+                    String nota = textOf(item.get("nota"));
+                    total = total.plus(DailyAggregate.of(item.get("createdAt").s(), nota, textOf(item.get("urgency")), 1));
+                    if (sketchesEnabled) {
+                        sketches.add(DailyAggregate.parseNota(nota), textOf(item.get(distinctAttribute)));
+                    }
+                }
+                startKey = page.hasLastEvaluatedKey() && !page.lastEvaluatedKey().isEmpty() ? page.lastEvaluatedKey() : null;
+            } while (startKey != null);
+        }
+
+        Map<String, AttributeValue> values = total.toUpdateValues();
+        String expression = SET_COUNTERS;
+        if (sketchesEnabled) {
+            // Versão avança: um lote do stream que leu a linha antes relê e funde sobre o recálculo
+            values.putAll(sketches.toUpdateValues());
+            values.put(":one", AttributeValue.builder().n("1").build());
+            expression += ", " + DailySketches.SET_SKETCHES + " ADD " + DailySketches.VERSION + " :one";
+        }
+        clients.dynamoDb().updateItem(UpdateItemRequest.builder()
+            .tableName(statsTableName)
+            .key(DailyAggregate.key(day.toString()))
+            .updateExpression(expression)
+            .expressionAttributeNames(Map.of("#count", "count"))
+            .expressionAttributeValues(values)
+            .build());
+        return total.count();
+    }
+
+    private Change change(DynamodbEvent.DynamodbStreamRecord record) {
+        Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> oldImage = record.getDynamodb().getOldImage();
+        Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> newImage = record.getDynamodb().getNewImage();
+        boolean inserted = oldImage == null || oldImage.isEmpty();
+
+        DailyAggregate delta = null;
+        if (!inserted) {
+            delta = contribution(oldImage, -1);
+        }
+        if (newImage != null && !newImage.isEmpty()) {
+            DailyAggregate added = contribution(newImage, 1);
+            delta = delta == null ? added : added == null ? delta : delta.plus(added);
+        }
+        // Fora da tabela de feedbacks, ou alteração que não muda nenhum contador
+        if (delta == null || (delta.isZero() && !inserted)) {
+            return null;
+        }
+        return new Change(record.getEventID(), record.getDynamodb().getSequenceNumber(), delta, inserted ? newImage : null);
+    }
+
+    private DailyAggregate contribution(Map<String, com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue> image,
+                                        int sign) {
+        com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue pk = image.get("pk");
+        com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue createdAt = image.get("createdAt");
+        // Só itens de feedback (partição legada ou particionada)
+        if (pk == null || pk.getS() == null || !pk.getS().startsWith(FeedbackKeys.LEGACY_PARTITION)
+                || createdAt == null || createdAt.getS() == null || createdAt.getS().length() < 10) {
+            return null;
+        }
+        return DailyAggregate.of(createdAt.getS(), stringOf(image.get("nota")), stringOf(image.get("urgency")), sign);
+    }
+
+    private String stringOf(com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        return value.getS() != null ? value.getS() : value.getN();
+    }
+
+    private String textOf(AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        return value.s() != null ? value.s() : value.n();
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.lambda;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.LambdaRuntime;
+
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.ContainerCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.ses.SesClient;
+import software.amazon.awssdk.services.sfn.SfnClient;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Clientes AWS compartilhados pelos handlers, criados só quando usados pela primeira vez.
+ *
+ * Região, credenciais e HTTP client são definidos explicitamente (URLConnection, sem Apache/Netty),
+ * para o SDK não sair procurando configuração no ambiente durante o cold start. Também registra
+ * um recurso CRaC: com SnapStart, o beforeCheckpoint roda os aquecimentos registrados pelos
+ * handlers antes do snapshot, e o afterRestore reinicia a medição do cold start.
+ */
+final class AwsClients {
+
+    private static final AwsClients SHARED = new AwsClients(System.getenv());
+
+    // Referência forte: o contexto global do CRaC só guarda referências fracas
+    private static final Priming PRIMING = new Priming();
+    private static volatile long startedAt = System.nanoTime();
+    private static volatile boolean restored;
+    private static final AtomicBoolean firstInvocation = new AtomicBoolean(true);
+
+    static {
+        Core.getGlobalContext().register(PRIMING);
+    }
+
+    private final Supplier<DynamoDbClient> dynamoDb;
+    private final Supplier<S3Client> s3;
+    private final Supplier<SesClient> ses;
+    private final Supplier<S3Presigner> presigner;
+    private final Supplier<SfnClient> sfn;
+
+    private AwsClients(Map<String, String> env) {
+        Region region = Region.of(env.getOrDefault("AWS_REGION", "us-east-1"));
+        Supplier<SdkHttpClient> httpClient = lazy(() -> UrlConnectionHttpClient.builder()
+            .connectionTimeout(Duration.ofSeconds(2))
+            .socketTimeout(Duration.ofSeconds(30))
+            .build());
+
+        this.dynamoDb = lazy(() -> {
+            DynamoDbClientBuilder builder = DynamoDbClient.builder()
+                .region(region)
+                .credentialsProvider(credentials(env))
+                .httpClient(httpClient.get());
+            String endpoint = env.get("DYNAMODB_ENDPOINT"); // usado só em testes locais
+            if (endpoint != null && !endpoint.isEmpty()) {
+                builder.endpointOverride(URI.create(endpoint));
+            }
+            return builder.build();
+        });
+
+        this.s3 = lazy(() -> {
+            S3ClientBuilder builder = S3Client.builder()
+                .region(region)
+                .credentialsProvider(credentials(env))
+                .httpClient(httpClient.get());
+            String endpoint = env.get("S3_ENDPOINT");
+            if (endpoint != null && !endpoint.isEmpty()) {
+                // MinIO ou S3 local
+                builder.endpointOverride(URI.create(endpoint)).forcePathStyle(true);
+            }
+            return builder.build();
+        });
+
+        this.ses = lazy(() -> SesClient.builder()
+            .region(region)
+            .credentialsProvider(credentials(env))
+            .httpClient(httpClient.get())
+            .build());
+
+        this.sfn = lazy(() -> SfnClient.builder()
+            .region(region)
+            .credentialsProvider(credentials(env))
+            .httpClient(httpClient.get())
+            .build());
+
+        this.presigner = lazy(() -> {
+            S3Presigner.Builder builder = S3Presigner.builder()
+                .region(region)
+                .credentialsProvider(credentials(env));
+            String endpoint = env.get("S3_ENDPOINT");
+            if (endpoint != null && !endpoint.isEmpty()) {
+                builder.endpointOverride(URI.create(endpoint))
+                    .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
+            }
+            return builder.build();
+        });
+    }
+
+    // Para testes e harness locais: clientes já prontos (fakes)
+    AwsClients(DynamoDbClient dynamoDb, S3Client s3, SesClient ses) {
+        this(dynamoDb, s3, ses, null);
+    }
+
+    AwsClients(DynamoDbClient dynamoDb, S3Client s3, SesClient ses, S3Presigner presigner) {
+        this.dynamoDb = () -> dynamoDb;
+        this.s3 = () -> s3;
+        this.ses = () -> ses;
+        this.presigner = () -> presigner;
+        this.sfn = () -> null;
+    }
+
+    AwsClients(SfnClient sfn) {
+        this.dynamoDb = () -> null;
+        this.s3 = () -> null;
+        this.ses = () -> null;
+        this.presigner = () -> null;
+        this.sfn = () -> sfn;
+    }
+
+    static AwsClients shared() {
+        return SHARED;
+    }
+
+    DynamoDbClient dynamoDb() {
+        return dynamoDb.get();
+    }
+
+    S3Client s3() {
+        return s3.get();
+    }
+
+    SesClient ses() {
+        return ses.get();
+    }
+
+    S3Presigner presigner() {
+        return presigner.get();
+    }
+
+    SfnClient sfn() {
+        return sfn.get();
+    }
+
+    /**
+     * Com SnapStart o Lambda entrega as credenciais pelo endpoint de container; sem ele, pelas
+     * variáveis de ambiente (AWS_ACCESS_KEY_ID etc., também usadas com MinIO/DynamoDB local).
+     */
+    private static AwsCredentialsProvider credentials(Map<String, String> env) {
+        if (env.get("AWS_CONTAINER_CREDENTIALS_FULL_URI") != null) {
+            return ContainerCredentialsProvider.builder().build();
+        }
+        String accessKey = env.get("AWS_ACCESS_KEY_ID");
+        String secretKey = env.get("AWS_SECRET_ACCESS_KEY");
+        if (accessKey != null && secretKey != null && env.get("AWS_SESSION_TOKEN") == null) {
+            return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        }
+        return EnvironmentVariableCredentialsProvider.create();
+    }
+
+    /**
+     * Registra um aquecimento para rodar antes do snapshot do SnapStart. Deve exercitar os caminhos
+     * do handler (Jackson, marshallers do SDK, geração do relatório) sem efeitos colaterais;
+     * falhas são só registradas no log.
+     */
+    static void registerPriming(String name, Runnable warmUp) {
+        PRIMING.add(name, warmUp);
+    }
+
+    /**
+     * Loga, uma vez por container, o tempo do init (ou do restore) até a primeira invocação e a
+     * duração dessa invocação. Chamar ao fim do primeiro handleRequest.
+     */
+    static void logFirstInvocation(LambdaLogger logger, String handler, long invocationStart) {
+        if (!firstInvocation.compareAndSet(true, false)) {
+            return;
+        }
+        long now = System.nanoTime();
+        logger.log(String.format("Cold start %s (%s): init %d ms, primeira invocação %d ms%n",
+            handler, restored ? "restore" : "init",
+            (invocationStart - startedAt) / 1_000_000, (now - invocationStart) / 1_000_000));
+    }
+
+    private static <T> Supplier<T> lazy(Supplier<T> factory) {
+        return new Supplier<>() {
+            private volatile T value;
+
+            @Override
+            public T get() {
+                T result = value;
+                if (result == null) {
+                    synchronized (this) {
+                        result = value;
+                        if (result == null) {
+                            result = factory.get();
+                            value = result;
+                        }
+                    }
+                }
+                return result;
+            }
+        };
+    }
+
+    private static final class Priming implements Resource {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<Runnable> warmUps = new ArrayList<>();
+
+        synchronized void add(String name, Runnable warmUp) {
+            names.add(name);
+            warmUps.add(warmUp);
+        }
+
+        @Override
+        public synchronized void beforeCheckpoint(Context<? extends Resource> context) {
+            // Fora de uma invocação: o logger do runtime é o mesmo que os handlers recebem no Context
+            LambdaLogger logger = LambdaRuntime.getLogger();
+            for (int i = 0; i < warmUps.size(); i++) {
+                long start = System.nanoTime();
+                try {
+                    warmUps.get(i).run();
+                    logger.log("Priming " + names.get(i) + ": " + (System.nanoTime() - start) / 1_000_000 + " ms\n");
+                } catch (RuntimeException e) {
+                    logger.log("Priming " + names.get(i) + " falhou: " + e.getMessage() + "\n");
+                }
+            }
+        }
+
+        @Override
+        public void afterRestore(Context<? extends Resource> context) {
+            startedAt = System.nanoTime();
+            restored = true;
+            firstInvocation.set(true);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Estatísticas acumuladas de um dia, guardadas como uma linha compacta na tabela de agregados.
+ * notaCount conta só as notas válidas (> 0), que são as que entram na média do relatório.
+ */
+record DailyAggregate(String day, long count, long notaCount, double notaSum, long alta, long media, long baixa) {
+
+    static DailyAggregate empty(String day) {
+        return new DailyAggregate(day, 0, 0, 0.0, 0, 0, 0);
+    }
+
+    // Contribuição de um único feedback (sign = 1 para inclusão, -1 para remoção)
+    static DailyAggregate of(String createdAt, String nota, String urgency, int sign) {
+        double value = parseNota(nota);
+        boolean valid = value > 0;
+        return new DailyAggregate(
+            createdAt.substring(0, 10),
+            sign,
+            valid ? sign : 0,
+            valid ? sign * value : 0.0,
+            "alta".equals(urgency) ? sign : 0,
+            "media".equals(urgency) ? sign : 0,
+            "baixa".equals(urgency) ? sign : 0
+        );
+    }
+
+    static double parseNota(String nota) {
+        if (nota == null) {
+            return 0.0;
+        }
+        try {
+            return Double.parseDouble(nota);
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    DailyAggregate plus(DailyAggregate other) {
+        return new DailyAggregate(day,
+            count + other.count,
+            notaCount + other.notaCount,
+            notaSum + other.notaSum,
+            alta + other.alta,
+            media + other.media,
+            baixa + other.baixa);
+    }
+
+    boolean isZero() {
+        return count == 0 && notaCount == 0 && notaSum == 0.0 && alta == 0 && media == 0 && baixa == 0;
+    }
+
+    static Map<String, AttributeValue> key(String day) {
+        return Map.of("day", AttributeValue.builder().s(day).build());
+    }
+
+    // Valores para "ADD" no UpdateItem: contadores atômicos, sem ler a linha antes
+    Map<String, AttributeValue> toUpdateValues() {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":count", number(count));
+        values.put(":notaCount", number(notaCount));
+        values.put(":notaSum", AttributeValue.builder().n(BigDecimal.valueOf(notaSum).toPlainString()).build());
+        values.put(":alta", number(alta));
+        values.put(":media", number(media));
+        values.put(":baixa", number(baixa));
+        return values;
+    }
+
+    static DailyAggregate fromItem(Map<String, AttributeValue> item) {
+        return new DailyAggregate(
+            item.get("day").s(),
+            longOf(item, "count"),
+            longOf(item, "notaCount"),
+            item.containsKey("notaSum") ? Double.parseDouble(item.get("notaSum").n()) : 0.0,
+            longOf(item, "alta"),
+            longOf(item, "media"),
+            longOf(item, "baixa")
+        );
+    }
+
+    private static long longOf(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value != null && value.n() != null ? Long.parseLong(value.n()) : 0L;
+    }
+
+    private static AttributeValue number(long value) {
+        return AttributeValue.builder().n(Long.toString(value)).build();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.ses.SesClient;
+import software.amazon.awssdk.services.ses.model.SendEmailRequest;
+import software.amazon.awssdk.services.ses.model.SesException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Envio de um mesmo e-mail para muitos destinatários via SES.
+ *
+ * Os destinatários são agrupados em lotes (um SendEmail por lote), enviados em paralelo em
+ * virtual threads, com no máximo "concurrency" chamadas em voo. Antes de cada tentativa o lote
+ * consome do token bucket um token por destinatário, já que a cota de envio do SES é contada por
+ * destinatário. Throttling é repetido com backoff exponencial com jitter; outros erros marcam o
+ * lote como falho sem afetar os demais.
+ */
+final class EmailDelivery {
+
+    // lastError: mensagem do último erro que fez um lote falhar (null se nenhum falhou)
+    record Result(int sent, List<String> failed, int retries, String lastError) { }
+
+    private final SesClient ses;
+    private final TokenBucket limiter;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final Metrics metrics;
+
+    EmailDelivery(SesClient ses, TokenBucket limiter, int concurrency, int maxAttempts, long baseBackoffMillis, Metrics metrics) {
+        this.ses = ses;
+        this.metrics = metrics;
+        this.limiter = limiter;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+    }
+
+    static List<List<String>> batches(List<String> recipients, int batchSize) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < recipients.size(); from += batchSize) {
+            batches.add(recipients.subList(from, Math.min(recipients.size(), from + batchSize)));
+        }
+        return batches;
+    }
+
+    Result deliver(List<List<String>> batches, Function<List<String>, SendEmailRequest> email) throws InterruptedException {
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger retries = new AtomicInteger();
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<String> lastError = new AtomicReference<>();
+        Semaphore inFlight = new Semaphore(concurrency);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (List<String> batch : batches) {
+                inFlight.acquire();
+                executor.submit(() -> {
+                    try {
+                        if (send(batch, email.apply(batch), retries, lastError)) {
+                            sent.addAndGet(batch.size());
+                        } else {
+                            failed.addAll(batch);
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        return new Result(sent.get(), List.copyOf(failed), retries.get(), lastError.get());
+    }
+
+    private boolean send(List<String> batch, SendEmailRequest request, AtomicInteger retries, AtomicReference<String> lastError) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                limiter.acquire(batch.size());
+                long start = System.nanoTime();
+                try {
+                    ses.sendEmail(request);
+                } finally {
+                    metrics.time(Metrics.SES_SEND, start);
+                }
+                return true;
+            } catch (SesException e) {
+                if (!e.isThrottlingException() || attempt == maxAttempts) {
+                    lastError.set(e.getMessage());
+                    return false;
+                }
+                retries.incrementAndGet();
+                if (!sleep(backoffMillis(attempt))) {
+                    return false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (RuntimeException e) {
+                lastError.set(e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    // "Full jitter": espera aleatória entre 0 e base * 2^(tentativa - 1)
+    private long backoffMillis(int attempt) {
+        long ceiling = baseBackoffMillis << Math.min(attempt - 1, 10);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.lambda;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Janelas de coalescência de eventos "Feedback Submitted": cada janela vira uma única execução
+ * do workflow.
+ *
+ * Uma janela abre no primeiro evento e fecha quando passa maxWaitMillis desde a abertura ou quando
+ * chega ao evento número maxEvents, o que vier antes. É a mesma regra do batching window do SQS
+ * no trigger do Lambda; coalesce() simula essa regra para o harness de replay, e summarize()
+ * descreve um lote já recebido pelo FeedbackBatchTriggerHandler.
+ */
+final class EventWindows {
+
+    // Atrasos em ms: quanto cada evento esperou entre a chegada e o fechamento da janela
+    record Window(long opensAt, long closesAt, int events, long totalDelayMillis, long maxDelayMillis) {
+
+        double meanDelayMillis() {
+            return events == 0 ? 0 : (double) totalDelayMillis / events;
+        }
+    }
+
+    private EventWindows() {
+    }
+
+    // arrivals: instantes de chegada em ms, em ordem crescente
+    static List<Window> coalesce(long[] arrivals, long maxWaitMillis, int maxEvents) {
+        List<Window> windows = new ArrayList<>();
+        int first = 0;
+        while (first < arrivals.length) {
+            long deadline = arrivals[first] + maxWaitMillis;
+            int last = first;
+            while (last + 1 < arrivals.length && last + 1 - first < maxEvents && arrivals[last + 1] <= deadline) {
+                last++;
+            }
+            // Cheia, fecha no último evento; senão, espera o prazo acabar
+            long closesAt = last + 1 - first == maxEvents ? arrivals[last] : deadline;
+            windows.add(window(arrivals, first, last + 1, closesAt));
+            first = last + 1;
+        }
+        return windows;
+    }
+
+    static Window summarize(long[] arrivals, long closesAt) {
+        return window(arrivals, 0, arrivals.length, closesAt);
+    }
+
+    private static Window window(long[] arrivals, int from, int to, long closesAt) {
+        long opensAt = Long.MAX_VALUE;
+        long totalDelay = 0;
+        long maxDelay = 0;
+        for (int i = from; i < to; i++) {
+            long delay = Math.max(0, closesAt - arrivals[i]);
+            opensAt = Math.min(opensAt, arrivals[i]);
+            totalDelay += delay;
+            maxDelay = Math.max(maxDelay, delay);
+        }
+        return new Window(to > from ? opensAt : closesAt, closesAt, to - from, totalDelay, maxDelay);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.lambda;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Item da tabela de feedbacks com os campos conhecidos já tipados. Atributos fora do esquema
+ * ficam em "others" (normalmente vazio) e são escritos como vieram do DynamoDB.
+ */
+record Feedback(String pk, String createdAt, String urgency, String nota, String descricao,
+                Map<String, AttributeValue> others) {
+
+    static Feedback of(Map<String, AttributeValue> item) {
+        String pk = null;
+        String createdAt = null;
+        String urgency = null;
+        String nota = null;
+        String descricao = null;
+        Map<String, AttributeValue> others = Map.of();
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            AttributeValue value = entry.getValue();
+            switch (entry.getKey()) {
+                case "pk" -> pk = value.s();
+                case "createdAt" -> createdAt = FeedbackKeys.createdAtOf(value.s());
+                case "urgency" -> urgency = value.s();
+                // nota pode estar gravada como S ou N
+                case "nota" -> nota = value.s() != null ? value.s() : value.n();
+                case "descricao" -> descricao = value.s();
+                default -> {
+                    if (others.isEmpty()) {
+                        others = new HashMap<>();
+                    }
+                    others.put(entry.getKey(), value);
+                }
+            }
+        }
+        return new Feedback(pk, createdAt, urgency, nota, descricao, others);
+    }
+
+    // Campos ausentes não são escritos, como no JSON montado a partir do item
+    void writeTo(JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        if (pk != null) {
+            json.writeStringField("pk", pk);
+        }
+        if (createdAt != null) {
+            json.writeStringField("createdAt", createdAt);
+        }
+        if (urgency != null) {
+            json.writeStringField("urgency", urgency);
+        }
+        if (nota != null) {
+            json.writeFieldName("nota");
+            if (FeedbackJsonWriter.isJsonNumber(nota)) {
+                json.writeNumber(nota);
+            } else {
+                json.writeString(nota);
+            }
+        }
+        if (descricao != null) {
+            json.writeStringField("descricao", descricao);
+        }
+        for (Map.Entry<String, AttributeValue> entry : others.entrySet()) {
+            json.writeFieldName(entry.getKey());
+            FeedbackJsonWriter.writeValue(json, entry.getValue());
+        }
+        json.writeEndObject();
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.lambda;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Lê o lote colunar gravado pelo {@link FeedbackBatchWriter} direto de um ByteBuffer
+ * (normalmente o arquivo mapeado em memória), sem materializar a lista de feedbacks.
+ *
+ * A leitura usa um único cursor reaproveitado entre as linhas; a descrição só é
+ * decodificada quando pedida.
+ */
+final class FeedbackBatchReader {
+
+    /**
+     * Linha atual da leitura. Válida apenas durante a chamada do visitante.
+     */
+    static final class Row {
+        private ByteBuffer buffer;
+        private String urgency;
+        private int nota;
+        private long createdAt;
+        private int createdAtOffset;
+        private int createdAtLength;
+        private boolean hasCreatedAtText;
+        private int descricaoOffset;
+        private int descricaoLength;
+
+        String urgency() {
+            return urgency;
+        }
+
+        boolean hasNota() {
+            return nota != FeedbackBatchWriter.NO_NOTA;
+        }
+
+        // Nota como double, 0 quando ausente (fica fora da média)
+        double nota() {
+            return hasNota() ? nota / 100.0 : 0.0;
+        }
+
+        String notaText() {
+            if (!hasNota()) {
+                return null;
+            }
+            return nota % 100 == 0
+                ? Integer.toString(nota / 100)
+                : BigDecimal.valueOf(nota, 2).stripTrailingZeros().toPlainString();
+        }
+
+        long createdAtEpochSecond() {
+            return createdAt;
+        }
+
+        long epochDay() {
+            return createdAt == FeedbackBatchWriter.NO_TIMESTAMP ? FeedbackStats.NO_DAY : Math.floorDiv(createdAt, 86_400L);
+        }
+
+        // Texto como gravado; lotes da versão 1 só têm o long, sem fuso nem frações de segundo
+        String createdAtText() {
+            if (hasCreatedAtText) {
+                return text(createdAtOffset, createdAtLength);
+            }
+            return createdAt == FeedbackBatchWriter.NO_TIMESTAMP ? null : Instant.ofEpochSecond(createdAt).toString();
+        }
+
+        String descricao() {
+            return text(descricaoOffset, descricaoLength);
+        }
+
+        private String text(int offset, int length) {
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    interface Visitor {
+        void visit(Row row) throws IOException;
+    }
+
+    private final ByteBuffer buffer;
+    private final boolean withText;
+
+    FeedbackBatchReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        byte version = buffer.get(4);
+        if (buffer.getInt(0) != FeedbackBatchWriter.MAGIC
+                || (version != FeedbackBatchWriter.VERSION && version != FeedbackBatchWriter.VERSION_WITHOUT_TEXT)) {
+            throw new IllegalArgumentException("Arquivo de lote inválido");
+        }
+        this.withText = version != FeedbackBatchWriter.VERSION_WITHOUT_TEXT;
+    }
+
+    static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    // Total gravado no bloco final
+    long totalRows() {
+        try {
+            int position = 5;
+            while (true) {
+                int rows = buffer.getInt(position);
+                if (rows == 0) {
+                    return buffer.getLong(position + 4);
+                }
+                position = skipBlock(position, rows, null, null);
+            }
+        } catch (IOException e) {
+            // Sem visitante não há I/O
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void forEach(Visitor visitor) throws IOException {
+        Row row = new Row();
+        row.buffer = buffer;
+        row.hasCreatedAtText = withText;
+        int position = 5;
+        while (true) {
+            int rows = buffer.getInt(position);
+            if (rows == 0) {
+                return;
+            }
+            position = skipBlock(position, rows, row, visitor);
+        }
+    }
+
+    // Percorre um bloco (visitando as linhas se houver visitante) e retorna a posição do próximo
+    private int skipBlock(int position, int rows, Row row, Visitor visitor) throws IOException {
+        int p = position + 4;
+        int dictionarySize = buffer.get(p) & 0xFF;
+        p++;
+        String[] dictionary = new String[dictionarySize + 1];
+        for (int i = 1; i <= dictionarySize; i++) {
+            int length = buffer.getShort(p) & 0xFFFF;
+            byte[] bytes = new byte[length];
+            buffer.get(p + 2, bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            p += 2 + length;
+        }
+
+        int urgencyColumn = p;
+        int notaColumn = urgencyColumn + rows;
+        int createdAtColumn = notaColumn + rows * 4;
+        int createdAtText = createdAtColumn + rows * 8;
+        int descricao = createdAtText;
+        if (withText) {
+            for (int i = 0; i < rows; i++) {
+                descricao += 4 + Math.max(buffer.getInt(descricao), 0);
+            }
+        }
+
+        for (int i = 0; i < rows; i++) {
+            int length = buffer.getInt(descricao);
+            if (visitor != null) {
+                row.urgency = dictionary[buffer.get(urgencyColumn + i) & 0xFF];
+                row.nota = buffer.getInt(notaColumn + i * 4);
+                row.createdAt = buffer.getLong(createdAtColumn + i * 8);
+                if (withText) {
+                    row.createdAtLength = buffer.getInt(createdAtText);
+                    row.createdAtOffset = createdAtText + 4;
+                    createdAtText += 4 + Math.max(row.createdAtLength, 0);
+                }
+                row.descricaoOffset = descricao + 4;
+                row.descricaoLength = length;
+                visitor.visit(row);
+            }
+            descricao += 4 + Math.max(length, 0);
+        }
+        return descricao;
+    }
+}
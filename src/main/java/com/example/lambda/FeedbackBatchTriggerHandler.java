@@ -0,0 +1,117 @@
+package com.example.lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+
+import software.amazon.awssdk.services.sfn.model.ExecutionAlreadyExistsException;
+import software.amazon.awssdk.services.sfn.model.StartExecutionRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Inicia uma execução do workflow por janela de eventos "Feedback Submitted".
+ *
+ * A regra do EventBridge manda os eventos para uma fila SQS, e o trigger do Lambda os entrega em
+ * lotes (batching window + tamanho máximo do lote): cada lote é uma janela e vira uma única
+ * execução, que já lista o período inteiro. O nome da execução vem dos IDs das mensagens, então
+ * a reentrega do mesmo lote não inicia outra execução.
+ */
+public class FeedbackBatchTriggerHandler implements RequestHandler<SQSEvent, String> {
+
+    private static final DateTimeFormatter NAME_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final AwsClients clients;
+    private final String stateMachineArn = System.getenv("STATE_MACHINE_ARN");
+
+    public FeedbackBatchTriggerHandler() {
+        this(AwsClients.shared());
+        AwsClients.registerPriming("FeedbackBatchTrigger", this::prime);
+    }
+
+    FeedbackBatchTriggerHandler(AwsClients clients) {
+        this.clients = clients;
+    }
+
+    // Antes do snapshot: monta uma requisição sem iniciar execução nenhuma
+    private void prime() {
+        long now = System.currentTimeMillis();
+        startRequest(List.of("priming"), EventWindows.summarize(new long[] {now}, now));
+    }
+
+    @Override
+    public String handleRequest(SQSEvent event, Context context) {
+        long invocationStart = System.nanoTime();
+        LambdaLogger logger = context.getLogger();
+
+        try {
+            List<SQSEvent.SQSMessage> messages = event.getRecords() != null ? event.getRecords() : List.of();
+            if (messages.isEmpty()) {
+                logger.log("Lote vazio, nenhuma execução iniciada\n");
+                return "0 eventos";
+            }
+
+            long now = System.currentTimeMillis();
+            long[] arrivals = new long[messages.size()];
+            List<String> messageIds = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++) {
+                SQSEvent.SQSMessage message = messages.get(i);
+                String sent = message.getAttributes() != null ? message.getAttributes().get("SentTimestamp") : null;
+                arrivals[i] = sent != null ? Long.parseLong(sent) : now;
+                messageIds.add(message.getMessageId());
+            }
+            EventWindows.Window window = EventWindows.summarize(arrivals, now);
+
+            StartExecutionRequest request = startRequest(messageIds, window);
+            try {
+                String executionArn = clients.sfn().startExecution(request).executionArn();
+                logger.log(String.format("Execução %s iniciada para %d eventos (espera média %.0f ms, máxima %d ms)%n",
+                    request.name(), window.events(), window.meanDelayMillis(), window.maxDelayMillis()));
+                return executionArn;
+            } catch (ExecutionAlreadyExistsException e) {
+                // Lote reentregue pelo SQS: a execução dele já foi iniciada
+                logger.log("Execução " + request.name() + " já existe, lote reentregue ignorado\n");
+                return request.name();
+            }
+        } finally {
+            AwsClients.logFirstInvocation(logger, "FeedbackBatchTrigger", invocationStart);
+        }
+    }
+
+    // Nome e entrada determinísticos para o mesmo lote: o Step Functions trata repetição como a mesma execução
+    private StartExecutionRequest startRequest(List<String> messageIds, EventWindows.Window window) {
+        String name = "feedbacks-" + NAME_TIME.format(Instant.ofEpochMilli(window.opensAt())) + "-" + hash(messageIds);
+        String input = String.format("{\"trigger\":\"feedback-batch\",\"events\":%d,\"firstEventAt\":\"%s\"}",
+            window.events(), Instant.ofEpochMilli(window.opensAt()));
+        return StartExecutionRequest.builder()
+            .stateMachineArn(stateMachineArn)
+            .name(name)
+            .input(input)
+            .build();
+    }
+
+    private static String hash(List<String> messageIds) {
+        String[] sorted = messageIds.toArray(new String[0]);
+        Arrays.sort(sorted);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String id : sorted) {
+                digest.update(id.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
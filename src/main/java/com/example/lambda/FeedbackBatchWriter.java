@@ -0,0 +1,171 @@
+package com.example.lambda;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grava feedbacks no formato de lote colunar usado entre a Lambda A e a Lambda B.
+ *
+ * Arquivo: "FBK1" + versão, seguido de blocos de até BLOCK_ROWS linhas e de um bloco vazio final
+ * com o total de linhas. Cada bloco guarda as colunas uma após a outra:
+ * <ul>
+ *   <li>dicionário de urgências do bloco (short + UTF-8) e um byte por linha (0 = sem urgência)</li>
+ *   <li>nota em centésimos, int (NO_NOTA = ausente ou inválida)</li>
+ *   <li>createdAt em epoch seconds do dia e da hora como escritos (o fuso não muda o dia), long (NO_TIMESTAMP = ausente ou inválido)</li>
+ *   <li>createdAt como escrito, em UTF-8 com prefixo de tamanho int (-1 = ausente), desde a versão 2</li>
+ *   <li>descrição em UTF-8 com prefixo de tamanho int (-1 = ausente)</li>
+ * </ul>
+ * O long serve para o dia e para comparar; o texto é o que o relatório mostra, com fuso e frações
+ * de segundo como vieram do DynamoDB. Só um bloco fica em memória, então o arquivo pode ser escrito
+ * em streaming.
+ */
+final class FeedbackBatchWriter implements Closeable {
+
+    static final int MAGIC = 0x46424B31; // "FBK1"
+    static final byte VERSION = 2;
+    // Sem a coluna de texto de createdAt: lotes gravados antes continuam legíveis
+    static final byte VERSION_WITHOUT_TEXT = 1;
+    static final int BLOCK_ROWS = 4096;
+    static final int NO_NOTA = Integer.MIN_VALUE;
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final DataOutputStream out;
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final byte[] urgencies = new byte[BLOCK_ROWS];
+    private final int[] notas = new int[BLOCK_ROWS];
+    private final long[] timestamps = new long[BLOCK_ROWS];
+    private final byte[][] createdAts = new byte[BLOCK_ROWS][];
+    private final byte[][] descricoes = new byte[BLOCK_ROWS][];
+    private int rows;
+    private long totalRows;
+
+    FeedbackBatchWriter(OutputStream output) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(output, 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    void write(String createdAt, String nota, String urgency, String descricao) throws IOException {
+        byte code = encodeUrgency(urgency);
+        urgencies[rows] = code;
+        notas[rows] = encodeNota(nota);
+        timestamps[rows] = encodeTimestamp(createdAt);
+        createdAts[rows] = createdAt != null ? createdAt.getBytes(StandardCharsets.UTF_8) : null;
+        descricoes[rows] = descricao != null ? descricao.getBytes(StandardCharsets.UTF_8) : null;
+        rows++;
+        totalRows++;
+        if (rows == BLOCK_ROWS) {
+            flushBlock();
+        }
+    }
+
+    long totalRows() {
+        return totalRows;
+    }
+
+    private byte encodeUrgency(String urgency) throws IOException {
+        if (urgency == null) {
+            return 0;
+        }
+        Integer code = codes.get(urgency);
+        if (code == null) {
+            // Dicionário cheio (valores fora do enum): fecha o bloco e recomeça
+            if (dictionary.size() == 255) {
+                flushBlock();
+            }
+            dictionary.add(urgency);
+            code = dictionary.size();
+            codes.put(urgency, code);
+        }
+        return (byte) (int) code;
+    }
+
+    static int encodeNota(String nota) {
+        if (nota == null) {
+            return NO_NOTA;
+        }
+        try {
+            return new BigDecimal(nota.trim()).movePointRight(2).setScale(0, RoundingMode.HALF_UP).intValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return NO_NOTA;
+        }
+    }
+
+    static long encodeTimestamp(String createdAt) {
+        if (createdAt == null) {
+            return NO_TIMESTAMP;
+        }
+        // Relógio como está escrito, com ou sem fuso: o dia é o do prefixo, como em FeedbackKeys.dayOf
+        try {
+            return LocalDateTime.from(DateTimeFormatter.ISO_DATE_TIME.parse(createdAt)).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            // Só a data (ou outro formato com a data na frente) fica à meia-noite do dia
+            long day = FeedbackStats.epochDay(createdAt);
+            return day == FeedbackStats.NO_DAY ? NO_TIMESTAMP : day * 86_400L;
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        out.writeInt(rows);
+        out.writeByte(dictionary.size());
+        for (String value : dictionary) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        out.write(urgencies, 0, rows);
+        for (int i = 0; i < rows; i++) {
+            out.writeInt(notas[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            out.writeLong(timestamps[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            writeText(createdAts[i]);
+            createdAts[i] = null;
+        }
+        for (int i = 0; i < rows; i++) {
+            writeText(descricoes[i]);
+            descricoes[i] = null;
+        }
+        rows = 0;
+        dictionary.clear();
+        codes.clear();
+    }
+
+    private void writeText(byte[] text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(text.length);
+            out.write(text);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBlock();
+        out.writeInt(0);
+        out.writeLong(totalRows);
+        out.close();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Percorre todas as páginas de uma origem seguindo o token de continuação.
+ * A próxima página é buscada em paralelo enquanto a atual é entregue ao consumidor,
+ * e nunca há mais de duas páginas em memória. Para quando a origem acaba ou quando
+ * algum dos orçamentos (itens, bytes, prazo) é atingido; nesse caso o resultado traz
+ * o token para retomar de onde parou.
+ *
+ * Os orçamentos valem por item: a página é pedida com no máximo os itens que faltam, e a que
+ * passaria de maxBytes é relida só até o último item que cabe (a mesma posição com um limite
+ * menor devolve o mesmo começo), para o token retomar logo depois dele. O primeiro item sempre
+ * é entregue, mesmo sozinho maior que maxBytes, para o drain andar.
+ */
+final class FeedbackDrainer {
+
+    private static final ExecutorService PREFETCH = Executors.newVirtualThreadPerTaskExecutor();
+
+    record Result(long items, long bytes, int pages, Map<String, Object> nextToken, boolean exhausted) {
+    }
+
+    private final int pageSize;
+    private final long maxItems;
+    private final long maxBytes;
+    private final long deadlineMillis;
+
+    FeedbackDrainer(int pageSize, long maxItems, long maxBytes, long deadlineMillis) {
+        this.pageSize = pageSize;
+        this.maxItems = maxItems;
+        this.maxBytes = maxBytes;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    Result drain(FeedbackPage.Source source, Map<String, Object> startToken, Consumer<Map<String, AttributeValue>> sink) {
+        long items = 0;
+        long bytes = 0;
+        int pages = 0;
+        Map<String, Object> token = startToken;
+
+        // A última página é limitada ao que resta do orçamento de itens
+        CompletableFuture<FeedbackPage> next = fetch(source, token, (int) Math.min(pageSize, maxItems));
+        try {
+            while (next != null) {
+                FeedbackPage page = next.join();
+                next = null;
+                pages++;
+
+                int fit = fitting(page.items(), maxBytes - bytes, items == 0);
+                boolean overBudget = fit < page.items().size();
+                if (overBudget) {
+                    page = fit == 0 ? new FeedbackPage(List.of(), token) : source.fetch(token, fit);
+                }
+                token = page.nextToken();
+
+                items += page.items().size();
+                for (Map<String, AttributeValue> item : page.items()) {
+                    bytes += estimateSize(item);
+                }
+
+                // Dispara a próxima página antes de entregar a atual
+                boolean withinBudget = !overBudget && items < maxItems && bytes < maxBytes
+                    && System.currentTimeMillis() < deadlineMillis;
+                next = (token != null && withinBudget)
+                    ? fetch(source, token, (int) Math.min(pageSize, maxItems - items))
+                    : null;
+
+                for (Map<String, AttributeValue> item : page.items()) {
+                    sink.accept(item);
+                }
+            }
+        } finally {
+            // Consumidor falhou com uma página em voo: espera por ela para que o chamador feche a origem parada
+            if (next != null) {
+                next.exceptionally(e -> null).join();
+            }
+        }
+        return new Result(items, bytes, pages, token, token == null);
+    }
+
+    // Itens do começo da página que cabem em remainingBytes; sem nada entregue ainda, o primeiro sempre cabe
+    private static int fitting(List<Map<String, AttributeValue>> items, long remainingBytes, boolean first) {
+        long used = 0;
+        for (int i = 0; i < items.size(); i++) {
+            used += estimateSize(items.get(i));
+            if (used > remainingBytes && !(first && i == 0)) {
+                return i;
+            }
+        }
+        return items.size();
+    }
+
+    private CompletableFuture<FeedbackPage> fetch(FeedbackPage.Source source, Map<String, Object> token, int limit) {
+        return CompletableFuture.supplyAsync(() -> source.fetch(token, limit), PREFETCH);
+    }
+
+    // Estimativa do tamanho do item nos moldes do cálculo do DynamoDB (nomes + valores)
+    static long estimateSize(Map<String, AttributeValue> item) {
+        long size = 0;
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            size += entry.getKey().length() + estimateSize(entry.getValue());
+        }
+        return size;
+    }
+
+    private static long estimateSize(AttributeValue value) {
+        if (value.s() != null) {
+            return value.s().length();
+        } else if (value.n() != null) {
+            return value.n().length();
+        } else if (value.hasL()) {
+            long size = 3;
+            for (AttributeValue element : value.l()) {
+                size += 1 + estimateSize(element);
+            }
+            return size;
+        } else if (value.hasM()) {
+            long size = 3;
+            for (Map.Entry<String, AttributeValue> entry : value.m().entrySet()) {
+                size += 1 + entry.getKey().length() + estimateSize(entry.getValue());
+            }
+            return size;
+        } else if (value.b() != null) {
+            return value.b().asByteArray().length;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.lambda;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Escreve a resposta de uma página da Lambda A direto dos AttributeValue para JSON, com o
+ * JsonGenerator do Jackson (streaming, sem mapas intermediários nem databind por reflexão).
+ *
+ * Números (N, e notas numéricas gravadas como S) saem como números JSON. O buffer de caracteres
+ * é reaproveitado entre chamadas, então uma instância não deve ser usada por duas threads ao mesmo tempo.
+ */
+final class FeedbackJsonWriter {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final CharArrayWriter buffer = new CharArrayWriter(16 * 1024);
+
+    String page(FeedbackPage page, String startDate, String endDate, String urgency) throws IOException {
+        buffer.reset();
+        try (JsonGenerator json = JSON.createGenerator(buffer)) {
+            json.writeStartObject();
+            json.writeNumberField("count", page.items().size());
+            json.writeArrayFieldStart("items");
+            for (Map<String, AttributeValue> item : page.items()) {
+                Feedback.of(item).writeTo(json);
+            }
+            json.writeEndArray();
+            json.writeFieldName("nextToken");
+            writeToken(json, page.nextToken());
+            json.writeStringField("startDate", startDate);
+            json.writeStringField("endDate", endDate);
+            json.writeStringField("urgency", urgency);
+            json.writeEndObject();
+        }
+        return buffer.toString();
+    }
+
+    static void writeValue(JsonGenerator json, AttributeValue value) throws IOException {
+        if (value.s() != null) {
+            json.writeString(value.s());
+        } else if (value.n() != null) {
+            json.writeNumber(value.n());
+        } else if (value.bool() != null) {
+            json.writeBoolean(value.bool());
+        } else if (value.nul() != null && value.nul()) {
+            json.writeNull();
+        } else if (value.hasM()) {
+            json.writeStartObject();
+            for (Map.Entry<String, AttributeValue> entry : value.m().entrySet()) {
+                json.writeFieldName(entry.getKey());
+                writeValue(json, entry.getValue());
+            }
+            json.writeEndObject();
+        } else if (value.hasL()) {
+            json.writeStartArray();
+            for (AttributeValue element : value.l()) {
+                writeValue(json, element);
+            }
+            json.writeEndArray();
+        } else if (value.hasSs()) {
+            json.writeStartArray();
+            for (String element : value.ss()) {
+                json.writeString(element);
+            }
+            json.writeEndArray();
+        } else if (value.hasNs()) {
+            json.writeStartArray();
+            for (String element : value.ns()) {
+                json.writeNumber(element);
+            }
+            json.writeEndArray();
+        } else if (value.b() != null) {
+            json.writeBinary(value.b().asByteArrayUnsafe());
+        } else if (value.hasBs()) {
+            json.writeStartArray();
+            for (SdkBytes element : value.bs()) {
+                json.writeBinary(element.asByteArrayUnsafe());
+            }
+            json.writeEndArray();
+        } else {
+            json.writeNull();
+        }
+    }
+
+    // Tokens só têm strings e listas de strings (ver as origens de FeedbackPage)
+    private static void writeToken(JsonGenerator json, Map<String, Object> token) throws IOException {
+        if (token == null) {
+            json.writeNull();
+            return;
+        }
+        json.writeStartObject();
+        for (Map.Entry<String, Object> entry : token.entrySet()) {
+            json.writeFieldName(entry.getKey());
+            if (entry.getValue() instanceof List<?> list) {
+                json.writeStartArray();
+                for (Object element : list) {
+                    json.writeString(String.valueOf(element));
+                }
+                json.writeEndArray();
+            } else if (entry.getValue() == null) {
+                json.writeNull();
+            } else {
+                json.writeString(entry.getValue().toString());
+            }
+        }
+        json.writeEndObject();
+    }
+
+    // Gramática de número do JSON: -?(0|[1-9]d*)(.d+)?([eE][+-]?d+)?
+    static boolean isJsonNumber(String text) {
+        int length = text.length();
+        int i = 0;
+        if (i < length && text.charAt(i) == '-') {
+            i++;
+        }
+        if (i == length) {
+            return false;
+        }
+        if (text.charAt(i) == '0') {
+            i++;
+        } else {
+            int start = i;
+            i = skipDigits(text, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && text.charAt(i) == '.') {
+            int start = ++i;
+            i = skipDigits(text, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                i++;
+            }
+            int start = i;
+            i = skipDigits(text, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    private static int skipDigits(String text, int i) {
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.lambda;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Esquema de chaves da tabela de feedbacks.
+ *
+ * Legado: todos os itens com pk = "FEEDBACK" (uma única partição).
+ * Particionado: pk = "FEEDBACK#{yyyy-MM-dd}#{n}", com n em [0, SHARD_COUNT), o que espalha
+ * escrita e leitura de um mesmo dia por várias partições físicas.
+ *
+ * A chave de ordenação (createdAt) dos itens gravados pela ingestão é o instante seguido de
+ * "#{hash do conteúdo}": dois feedbacks no mesmo segundo não se substituem, e o mesmo feedback
+ * reenviado cai na mesma chave. Itens antigos têm só o instante; quem exibe createdAt usa
+ * createdAtOf, e o fim de cada BETWEEN passa por upperBound.
+ *
+ * urgencyDay ("alta#2024-01-01") é a chave de partição do GSI por urgência: com só a urgência
+ * seriam três partições no índice, e todo feedback de "alta" cairia na mesma.
+ */
+final class FeedbackKeys {
+
+    static final String LEGACY_PARTITION = "FEEDBACK";
+    static final String URGENCY_DAY = "urgencyDay";
+    private static final String PREFIX = "FEEDBACK#";
+    private static final char SUFFIX = '#';
+    // Dígitos hex do hash do conteúdo na chave de ordenação
+    private static final int SUFFIX_LENGTH = 12;
+
+    private FeedbackKeys() {
+    }
+
+    static String partitionKey(LocalDate day, int shard) {
+        return PREFIX + day + "#" + shard;
+    }
+
+    // Shard escolhido por hash para distribuir uniformemente itens do mesmo dia
+    static String partitionKeyFor(String createdAt, String discriminator, int shardCount) {
+        if (shardCount <= 0) {
+            return LEGACY_PARTITION;
+        }
+        int shard = Math.floorMod((createdAt + "|" + discriminator).hashCode(), shardCount);
+        return partitionKey(dayOf(createdAt), shard);
+    }
+
+    static String urgencyDay(String urgency, LocalDate day) {
+        return urgency + "#" + day;
+    }
+
+    static List<String> partitionsOf(LocalDate day, int shardCount) {
+        List<String> partitions = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            partitions.add(partitionKey(day, shard));
+        }
+        return partitions;
+    }
+
+    // Extrai o dia (YYYY-MM-DD) de um timestamp ISO
+    static LocalDate dayOf(String isoTimestamp) {
+        return LocalDate.parse(isoTimestamp.substring(0, 10));
+    }
+
+    static String sortKey(String createdAt, String content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return createdAt + SUFFIX + HexFormat.of().formatHex(hash).substring(0, SUFFIX_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Instante de uma chave de ordenação, sem o sufixo (itens antigos não têm)
+    static String createdAtOf(String sortKey) {
+        int suffix = sortKey == null ? -1 : sortKey.indexOf(SUFFIX);
+        return suffix < 0 ? sortKey : sortKey.substring(0, suffix);
+    }
+
+    // Fim inclusivo de um BETWEEN que também pega as chaves com sufixo do último instante ('~' vem depois do hex)
+    static String upperBound(String end) {
+        return end + SUFFIX + "~";
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uma página de itens crus do DynamoDB e o token para buscar a próxima (null quando acabou).
+ */
+record FeedbackPage(List<Map<String, AttributeValue>> items, Map<String, Object> nextToken) {
+
+    /**
+     * Origem paginada de feedbacks para um período já definido (partição única, shards, índice...).
+     */
+    interface Source extends AutoCloseable {
+        FeedbackPage fetch(Map<String, Object> token, int limit);
+
+        // Cancela as leituras adiantadas que ainda estiverem em voo; quem não lê à frente não faz nada
+        @Override
+        default void close() {
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.lambda;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lista de feedbacks grande demais para o heap, despejada em /tmp no lote colunar FBK1 e lida
+ * de volta por memory map (o mesmo formato que a Lambda A grava no S3). createdAt volta com o
+ * texto original, então os detalhes do relatório são os mesmos da lista em memória.
+ *
+ * O SHA-256 do arquivo é calculado enquanto ele é escrito e entra no fingerprint do relatório no
+ * lugar dos campos de cada feedback: a mesma entrada gera o mesmo arquivo e, portanto, a mesma chave.
+ */
+final class FeedbackSpill {
+
+    // Custo aproximado no heap de um feedback como Map (entradas, chaves e cabeçalhos das Strings)
+    private static final long MAP_OVERHEAD_BYTES = 160;
+
+    private final Path file;
+    private final MessageDigest digest;
+    private final FeedbackBatchWriter writer;
+
+    FeedbackSpill() throws IOException {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        this.file = Files.createTempFile("feedbacks-spill-", ".fbk");
+        OutputStream out = new DigestOutputStream(Files.newOutputStream(file), digest);
+        this.writer = new FeedbackBatchWriter(out);
+    }
+
+    /**
+     * Feedbacks lidos de volta do arquivo, já apagado (o mapeamento continua válido), e o hash do conteúdo.
+     */
+    record Result(FeedbackBatchReader reader, String digest, long rows, long bytes) {
+    }
+
+    // Tamanho estimado no heap: Strings em UTF-16 no pior caso mais a estrutura do Map
+    static long estimate(Map<String, Object> feedback) {
+        long bytes = MAP_OVERHEAD_BYTES;
+        for (Object value : feedback.values()) {
+            if (value != null) {
+                bytes += 2L * value.toString().length();
+            }
+        }
+        return bytes;
+    }
+
+    static long estimate(List<Map<String, Object>> feedbacks) {
+        long bytes = 0;
+        for (Map<String, Object> feedback : feedbacks) {
+            bytes += feedback == null ? 0 : estimate(feedback);
+        }
+        return bytes;
+    }
+
+    static Result of(List<Map<String, Object>> feedbacks) throws IOException {
+        FeedbackSpill spill = new FeedbackSpill();
+        for (Map<String, Object> feedback : feedbacks) {
+            spill.write(feedback);
+        }
+        return spill.finish();
+    }
+
+    void write(Map<String, Object> feedback) throws IOException {
+        if (feedback == null) {
+            return;
+        }
+        writer.write(text(feedback.get("createdAt")), text(feedback.get("nota")),
+            text(feedback.get("urgency")), text(feedback.get("descricao")));
+    }
+
+    Result finish() throws IOException {
+        writer.close();
+        long rows = writer.totalRows();
+        long bytes = Files.size(file);
+        FeedbackBatchReader reader = new FeedbackBatchReader(FeedbackBatchReader.map(file));
+        Files.delete(file);
+        return new Result(reader, HexFormat.of().formatHex(digest.digest()), rows, bytes);
+    }
+
+    private static String text(Object value) {
+        return value == null ? null : value.toString();
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.lambda;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.TreeMap;
+import java.util.stream.Collector;
+
+/**
+ * Acumulador das estatísticas do relatório, calculadas em uma única passada.
+ *
+ * Só contadores primitivos; a contagem por dia fica num array fixo indexado pelo epoch day
+ * (dias fora da janela caem num mapa à parte). Dois acumuladores podem ser combinados,
+ * o que permite usar parallel streams ou dividir a entrada em pedaços.
+ */
+final class FeedbackStats {
+
+    static final String DATA_INVALIDA = "Data inválida";
+    static final long NO_DAY = Long.MIN_VALUE;
+
+    private static final int DEFAULT_DAYS = 400;
+
+    private long total;
+    private long notaCount;
+    private double notaSum;
+    private long notasInvalidas;
+    private long alta;
+    private long media;
+    private long baixa;
+    private long datasInvalidas;
+
+    private long firstEpochDay;
+    private final long[] perDay;
+    private TreeMap<Long, Long> outOfWindow;
+
+    // Janela ancorada no primeiro dia visto
+    FeedbackStats() {
+        this.firstEpochDay = NO_DAY;
+        this.perDay = new long[DEFAULT_DAYS];
+    }
+
+    FeedbackStats(LocalDate firstDay, LocalDate lastDay) {
+        this.firstEpochDay = firstDay.toEpochDay();
+        this.perDay = new long[(int) (lastDay.toEpochDay() - firstEpochDay + 1)];
+    }
+
+    static Collector<Map<String, Object>, FeedbackStats, FeedbackStats> collector() {
+        return Collector.of(FeedbackStats::new, FeedbackStats::accept, FeedbackStats::combine);
+    }
+
+    void accept(Map<String, Object> feedback) {
+        Object createdAt = feedback.get("createdAt");
+        long day;
+        if (createdAt == null) {
+            day = NO_DAY;
+        } else {
+            day = epochDay(createdAt.toString());
+            if (day == NO_DAY) {
+                datasInvalidas++;
+            }
+        }
+        Object urgency = feedback.get("urgency");
+        add(urgency instanceof String ? (String) urgency : null, parseNota(feedback.get("nota")), day);
+    }
+
+    /**
+     * Caminho primitivo: nota já convertida (&lt;= 0 fica fora da média) e dia em epoch day
+     * (NO_DAY quando ausente ou inválido).
+     */
+    void add(String urgency, double nota, long epochDay) {
+        total++;
+        if (nota > 0) {
+            notaCount++;
+            notaSum += nota;
+        }
+        if (urgency != null) {
+            switch (urgency) {
+                case "alta" -> alta++;
+                case "media" -> media++;
+                case "baixa" -> baixa++;
+                default -> { }
+            }
+        }
+        if (epochDay != NO_DAY) {
+            addDay(epochDay, 1);
+        }
+    }
+
+    // Soma uma linha dos agregados diários
+    void add(DailyAggregate row) {
+        total += row.count();
+        notaCount += row.notaCount();
+        notaSum += row.notaSum();
+        alta += row.alta();
+        media += row.media();
+        baixa += row.baixa();
+        if (row.count() > 0) {
+            addDay(LocalDate.parse(row.day()).toEpochDay(), row.count());
+        }
+    }
+
+    FeedbackStats combine(FeedbackStats other) {
+        total += other.total;
+        notaCount += other.notaCount;
+        notaSum += other.notaSum;
+        notasInvalidas += other.notasInvalidas;
+        alta += other.alta;
+        media += other.media;
+        baixa += other.baixa;
+        datasInvalidas += other.datasInvalidas;
+
+        if (other.firstEpochDay != NO_DAY) {
+            if (firstEpochDay == other.firstEpochDay && perDay.length == other.perDay.length) {
+                for (int i = 0; i < perDay.length; i++) {
+                    perDay[i] += other.perDay[i];
+                }
+            } else {
+                for (int i = 0; i < other.perDay.length; i++) {
+                    if (other.perDay[i] != 0) {
+                        addDay(other.firstEpochDay + i, other.perDay[i]);
+                    }
+                }
+            }
+        }
+        if (other.outOfWindow != null) {
+            other.outOfWindow.forEach(this::addDay);
+        }
+        return this;
+    }
+
+    private void addDay(long epochDay, long count) {
+        if (firstEpochDay == NO_DAY) {
+            firstEpochDay = epochDay - perDay.length / 2;
+        }
+        long index = epochDay - firstEpochDay;
+        if (index >= 0 && index < perDay.length) {
+            perDay[(int) index] += count;
+        } else {
+            if (outOfWindow == null) {
+                outOfWindow = new TreeMap<>();
+            }
+            outOfWindow.merge(epochDay, count, Long::sum);
+        }
+    }
+
+    long total() {
+        return total;
+    }
+
+    long alta() {
+        return alta;
+    }
+
+    long media() {
+        return media;
+    }
+
+    long baixa() {
+        return baixa;
+    }
+
+    long notasInvalidas() {
+        return notasInvalidas;
+    }
+
+    long datasInvalidas() {
+        return datasInvalidas;
+    }
+
+    OptionalDouble mediaNotas() {
+        return notaCount > 0 ? OptionalDouble.of(notaSum / notaCount) : OptionalDouble.empty();
+    }
+
+    // Dias com avaliações, em ordem (YYYY-MM-DD), mais "Data inválida" quando houver
+    Map<String, Long> avaliacoesPorDia() {
+        TreeMap<String, Long> days = new TreeMap<>();
+        if (firstEpochDay != NO_DAY) {
+            for (int i = 0; i < perDay.length; i++) {
+                if (perDay[i] != 0) {
+                    days.put(LocalDate.ofEpochDay(firstEpochDay + i).toString(), perDay[i]);
+                }
+            }
+        }
+        if (outOfWindow != null) {
+            outOfWindow.forEach((day, count) -> days.put(LocalDate.ofEpochDay(day).toString(), count));
+        }
+        if (datasInvalidas > 0) {
+            days.put(DATA_INVALIDA, datasInvalidas);
+        }
+        return days;
+    }
+
+    private double parseNota(Object nota) {
+        double value = nota(nota);
+        if (Double.isNaN(value)) {
+            notasInvalidas++;
+            return 0.0;
+        }
+        return value;
+    }
+
+    // Nota do evento como número: 0 quando ausente, NaN quando não é um número
+    static double nota(Object nota) {
+        if (nota == null) {
+            return 0.0;
+        }
+        if (nota instanceof Number) {
+            return ((Number) nota).doubleValue();
+        }
+        String text = nota.toString();
+        // Caminho rápido para notas inteiras, que são o caso comum
+        int length = text.length();
+        if (length > 0 && length <= 9) {
+            int value = 0;
+            int i = 0;
+            for (; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (i == length) {
+                return value;
+            }
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Epoch day de um timestamp ISO (YYYY-MM-DD...) lido direto dos caracteres, sem substring
+     * nem LocalDate.parse. Retorna NO_DAY se o prefixo não for uma data.
+     */
+    static long epochDay(CharSequence timestamp) {
+        if (timestamp.length() < 10 || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-') {
+            return NO_DAY;
+        }
+        int y = digits(timestamp, 0, 4);
+        int m = digits(timestamp, 5, 7);
+        int d = digits(timestamp, 8, 10);
+        if (y < 0 || m < 1 || m > 12 || d < 1 || d > lengthOfMonth(y, m)) {
+            return NO_DAY;
+        }
+        // Algoritmo "days from civil"
+        y -= m <= 2 ? 1 : 0;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    // Dias do mês no calendário gregoriano, com fevereiro de 29 nos anos bissextos
+    private static int lengthOfMonth(int y, int m) {
+        if (m == 2) {
+            return (y % 4 == 0 && (y % 100 != 0 || y % 400 == 0)) ? 29 : 28;
+        }
+        return m == 4 || m == 6 || m == 9 || m == 11 ? 30 : 31;
+    }
+
+    private static int digits(CharSequence s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Gravação de feedbacks na tabela com BatchWriteItem, à medida que chegam.
+ *
+ * Os itens são agrupados em lotes de 25 (o máximo do BatchWriteItem), gravados em paralelo em
+ * virtual threads, com no máximo "concurrency" chamadas em voo: add() bloqueia quando todas estão
+ * ocupadas, então quem lê a entrada não passa muito à frente da escrita. Itens que o DynamoDB
+ * devolve em UnprocessedItems (capacidade da partição esgotada) são reenviados com backoff
+ * exponencial com jitter; erros ou tentativas esgotadas marcam os itens como falhos sem afetar os
+ * demais lotes.
+ */
+final class FeedbackWriter {
+
+    static final int BATCH_SIZE = 25;
+    // Chaves de itens falhos devolvidas no resultado (o restante só entra na contagem)
+    private static final int MAX_FAILED_KEYS = 100;
+
+    // lastError: mensagem do último erro que fez um lote falhar (null se nenhum falhou)
+    record Result(long written, long failed, List<String> failedKeys, int retries, long duplicates, String lastError) { }
+
+    private final DynamoDbClient ddb;
+    private final String tableName;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final Metrics metrics;
+    private final Semaphore inFlight;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<String> failedKeys = new ArrayList<>();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicReference<String> lastError = new AtomicReference<>();
+    private long duplicates;
+
+    // Lote em formação, pela chave (pk|createdAt): o BatchWriteItem rejeita chaves repetidas no mesmo lote
+    private Map<String, WriteRequest> pending = new LinkedHashMap<>();
+
+    FeedbackWriter(DynamoDbClient ddb, String tableName, int concurrency, int maxAttempts, long baseBackoffMillis, Metrics metrics) {
+        this.ddb = ddb;
+        this.tableName = tableName;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.metrics = metrics;
+        this.inFlight = new Semaphore(concurrency);
+    }
+
+    /**
+     * Item repetido no lote é o mesmo feedback reenviado (a chave de ordenação tem o hash do
+     * conteúdo): fica um só, e o BatchWriteItem não recebe chaves repetidas.
+     */
+    void add(Map<String, AttributeValue> item) throws InterruptedException {
+        String key = item.get("pk").s() + "|" + item.get("createdAt").s();
+        WriteRequest request = WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build();
+        if (pending.put(key, request) != null) {
+            duplicates++;
+        }
+        if (pending.size() == BATCH_SIZE) {
+            submit();
+        }
+    }
+
+    private void submit() throws InterruptedException {
+        List<WriteRequest> batch = List.copyOf(pending.values());
+        pending = new LinkedHashMap<>();
+        inFlight.acquire();
+        executor.submit(() -> {
+            try {
+                write(batch);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Grava o último lote e espera todos os lotes em voo.
+     */
+    Result finish() throws InterruptedException {
+        if (!pending.isEmpty()) {
+            submit();
+        }
+        executor.close();
+        synchronized (failedKeys) {
+            return new Result(written.get(), failed.get(), List.copyOf(failedKeys), retries.get(), duplicates, lastError.get());
+        }
+    }
+
+    private void write(List<WriteRequest> batch) {
+        List<WriteRequest> remaining = batch;
+        for (int attempt = 1; ; attempt++) {
+            BatchWriteItemResponse response;
+            try {
+                response = metrics.batchWrite(ddb, BatchWriteItemRequest.builder()
+                    .requestItems(Map.of(tableName, remaining))
+                    .build());
+            } catch (RuntimeException e) {
+                lastError.set(e.getMessage());
+                fail(remaining);
+                return;
+            }
+            List<WriteRequest> unprocessed = response.unprocessedItems().getOrDefault(tableName, List.of());
+            written.addAndGet(remaining.size() - unprocessed.size());
+            if (unprocessed.isEmpty()) {
+                return;
+            }
+            if (attempt == maxAttempts) {
+                lastError.set(unprocessed.size() + " itens não processados após " + maxAttempts + " tentativas");
+                fail(unprocessed);
+                return;
+            }
+            retries.incrementAndGet();
+            if (!sleep(backoffMillis(attempt))) {
+                fail(unprocessed);
+                return;
+            }
+            remaining = unprocessed;
+        }
+    }
+
+    private void fail(List<WriteRequest> requests) {
+        failed.addAndGet(requests.size());
+        synchronized (failedKeys) {
+            for (WriteRequest request : requests) {
+                if (failedKeys.size() == MAX_FAILED_KEYS) {
+                    break;
+                }
+                failedKeys.add(FeedbackKeys.createdAtOf(request.putRequest().item().get("createdAt").s()));
+            }
+        }
+    }
+
+    // "Full jitter": espera aleatória entre 0 e base * 2^(tentativa - 1)
+    private long backoffMillis(int attempt) {
+        long ceiling = baseBackoffMillis << Math.min(attempt - 1, 10);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -3,105 +3,421 @@ package com.example.lambda;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.S3ClientBuilder;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 
-import java.net.URI;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.OptionalDouble;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
 
 public class GenerateWeeklyReportHandler implements RequestHandler<Map<String, Object>, String> {
 
-    private final S3Client s3;
-    private final String bucketName;
+    private final AwsClients clients;
+    private final String bucketName = System.getenv("REPORTS_BUCKET");
+    private final String statsTableName;
+    private final int reportPartSize = Integer.parseInt(System.getenv().getOrDefault("REPORT_PART_SIZE", "8388608"));
+    private final String defaultStatsSource = System.getenv().getOrDefault("REPORT_STATS_SOURCE", "raw");
+    private final int parallelStatsThreshold = Integer.parseInt(System.getenv().getOrDefault("PARALLEL_STATS_THRESHOLD", "100000"));
+    private final String defaultVariants = System.getenv().getOrDefault("REPORT_VARIANTS", "");
+    private final int variantTopN = Integer.parseInt(System.getenv().getOrDefault("REPORT_TOP_N", "10"));
+    private final String defaultFormat = System.getenv().getOrDefault("REPORT_FORMAT", "text");
+    private final long spillThresholdBytes;
+
+    private static volatile boolean bucketReady;
+    private static final ExecutorService VARIANT_UPLOADS = Executors.newVirtualThreadPerTaskExecutor();
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> FEEDBACK = new TypeReference<>() {};
+    private static final List<String> STATS_SOURCES = List.of("raw", "aggregates", "verify", "approximate");
+
+    private final Metrics metrics = new Metrics("GenerateWeeklyReport");
 
     public GenerateWeeklyReportHandler() {
-        String s3Endpoint = System.getenv("S3_ENDPOINT");
-        String accessKey = System.getenv("AWS_ACCESS_KEY_ID");
-        String secretKey = System.getenv("AWS_SECRET_ACCESS_KEY");
-        
-        S3ClientBuilder builder = S3Client.builder();
-        
-        if (s3Endpoint != null && !s3Endpoint.isEmpty()) {
-            // MinIO ou S3 local
-            builder.endpointOverride(URI.create(s3Endpoint))
-                   .forcePathStyle(true)
-                   .region(Region.US_EAST_1);
-            
-            if (accessKey != null && secretKey != null) {
-                AwsBasicCredentials credentials = AwsBasicCredentials.create(accessKey, secretKey);
-                builder.credentialsProvider(StaticCredentialsProvider.create(credentials));
+        this(AwsClients.shared());
+        AwsClients.registerPriming("GenerateWeeklyReport", this::prime);
+    }
+
+    GenerateWeeklyReportHandler(AwsClients clients) {
+        this(clients, Long.parseLong(System.getenv().getOrDefault("REPORT_SPILL_THRESHOLD_BYTES", "67108864")));
+    }
+
+    GenerateWeeklyReportHandler(AwsClients clients, long spillThresholdBytes) {
+        this(clients, spillThresholdBytes, System.getenv("DAILY_STATS_TABLE"));
+    }
+
+    GenerateWeeklyReportHandler(AwsClients clients, long spillThresholdBytes, String statsTableName) {
+        this.clients = clients;
+        this.spillThresholdBytes = spillThresholdBytes;
+        this.statsTableName = statsTableName;
+    }
+
+    // Antes do snapshot: relatório sintético (lista e lote colunar) descartado, mais as chamadas do SDK
+    private void prime() {
+        try {
+            List<Map<String, Object>> sample = List.of(
+                Map.of("createdAt", "2024-01-01T10:00:00Z", "nota", "5", "urgency", "alta", "descricao", "Priming"),
+                Map.of("createdAt", "2024-01-02T10:00:00Z", "nota", "3", "urgency", "baixa"));
+            ReportInput list = new ListReportInput(sample);
+            ReportVariants variants = new ReportVariants(new LinkedHashSet<>(ReportVariants.ALL), LocalDate.parse("2024-01-07"), variantTopN);
+            DailySketches sketches = DailySketches.empty("descricao");
+            sample.forEach(feedback -> sketches.add(FeedbackStats.nota(feedback.get("nota")), (String) feedback.get("descricao")));
+            sketches.toUpdateValues();
+            writeReport(section -> Writer.nullWriter(), list.stats(null, null, parallelStatsThreshold, variants), sketches, list);
+            for (String variant : variants.enabled()) {
+                variantReport(variant, variants);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (FeedbackBatchWriter batch = new FeedbackBatchWriter(bytes)) {
+                for (Map<String, Object> feedback : sample) {
+                    batch.write((String) feedback.get("createdAt"), (String) feedback.get("nota"),
+                        (String) feedback.get("urgency"), (String) feedback.get("descricao"));
+                }
+            }
+            ReportInput batch = new BatchReportInput(new FeedbackBatchReader(ByteBuffer.wrap(bytes.toByteArray())));
+            try (SectionedReport.Output sectioned = new SectionedReport.Output(OutputStream.nullOutputStream())) {
+                writeReport(sectioned, batch.stats(null, null, parallelStatsThreshold, variants.fresh()), null, batch);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        clients.s3().headBucket(HeadBucketRequest.builder().bucket(bucketName).build());
+        if (hasStatsTable()) {
+            summarize(loadAggregates(LocalDate.now(), LocalDate.now()));
+        }
+        metrics.discard();
+    }
+
+    private boolean hasStatsTable() {
+        return statsTableName != null && !statsTableName.isEmpty();
+    }
+
+    // Verifica (e cria, se preciso) o bucket uma vez por container, não a cada invocação
+    private void ensureBucket(LambdaLogger logger) {
+        if (bucketReady) {
+            return;
+        }
+        try {
+            clients.s3().headBucket(HeadBucketRequest.builder().bucket(bucketName).build());
+            logger.log("Bucket encontrado: " + bucketName + "\n");
+            bucketReady = true;
+        } catch (Exception e) {
+            logger.log("Bucket não existe, tentando criar: " + bucketName + "\n");
+            try {
+                clients.s3().createBucket(CreateBucketRequest.builder()
+                        .bucket(bucketName)
+                        .build());
+                logger.log("Bucket criado com sucesso: " + bucketName + "\n");
+                bucketReady = true;
+            } catch (Exception createError) {
+                logger.log("AVISO: Não foi possível criar bucket (pode não ter permissão): " + createError.getMessage() + "\n");
+                logger.log("Continuando assumindo que bucket será criado automaticamente pelo S3...\n");
             }
-        } else {
-            // AWS S3 em produção - usar credenciais padrão
-            String regionEnv = System.getenv("AWS_REGION");
-            Region region = regionEnv != null ? Region.of(regionEnv) : Region.US_EAST_1;
-            builder.region(region);
         }
-        
-        this.s3 = builder.build();
-        this.bucketName = System.getenv("REPORTS_BUCKET");
+    }
+
+    private boolean reportExists(String objectKey) {
+        try {
+            clients.s3().headObject(HeadObjectRequest.builder().bucket(bucketName).key(objectKey).build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
     }
 
     @Override
     public String handleRequest(Map<String, Object> input, Context context) {
+        return generate(input, null, context);
+    }
+
+    /**
+     * Mesmo evento lido em streaming: os feedbacks são contados à medida que chegam e, passando de
+     * REPORT_SPILL_THRESHOLD_BYTES, vão para um lote FBK1 em /tmp em vez de ficar na lista. Devolve
+     * a chave do relatório como string JSON, igual ao handleRequest.
+     */
+    public void handleStream(InputStream input, OutputStream output, Context context) throws IOException {
+        Map<String, Object> event = new HashMap<>();
+        List<Map<String, Object>> buffered = new ArrayList<>();
+        FeedbackSpill spill = null;
+        try (JsonParser parser = JSON.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Evento do relatório deve ser um objeto JSON");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() != JsonToken.START_ARRAY || !"feedbacks".equals(field)) {
+                    event.put(field, parser.readValueAs(Object.class));
+                    continue;
+                }
+                long estimated = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    Map<String, Object> feedback = parser.readValueAs(FEEDBACK);
+                    if (spill != null) {
+                        spill.write(feedback);
+                        continue;
+                    }
+                    buffered.add(feedback);
+                    estimated += feedback == null ? 0 : FeedbackSpill.estimate(feedback);
+                    // Mesmo critério do handleRequest (soma das estimativas), para a mesma entrada ter a mesma chave
+                    if (estimated > spillThresholdBytes) {
+                        spill = new FeedbackSpill();
+                        for (Map<String, Object> pending : buffered) {
+                            spill.write(pending);
+                        }
+                        buffered.clear();
+                    }
+                }
+                if (spill == null) {
+                    event.put("feedbacks", buffered);
+                }
+            }
+        }
+        String objectKey = generate(event, spill == null ? null : spill.finish(), context);
+        JSON.writeValue(output, objectKey);
+    }
+
+    // "spilled": feedbacks já despejados em disco pelo handleStream; a lista do evento é ignorada
+    private String generate(Map<String, Object> input, FeedbackSpill.Result spilled, Context context) {
+        long invocationStart = System.nanoTime();
         LambdaLogger logger = context.getLogger();
         logger.log("Iniciando geração do relatório semanal...\n");
 
         try {
-            // Exemplo: feedbacks recebidos da Lambda A
-            List<Map<String, Object>> feedbacks = (List<Map<String, Object>>) input.get("feedbacks");
+            ensureBucket(logger);
 
-            // Verificar se o bucket existe, criar se necessário
-            try {
-                s3.headBucket(HeadBucketRequest.builder().bucket(bucketName).build());
-                logger.log("Bucket encontrado: " + bucketName + "\n");
-            } catch (Exception e) {
-                logger.log("Bucket não existe, tentando criar: " + bucketName + "\n");
-                try {
-                    s3.createBucket(CreateBucketRequest.builder()
-                            .bucket(bucketName)
-                            .build());
-                    logger.log("Bucket criado com sucesso: " + bucketName + "\n");
-                } catch (Exception createError) {
-                    logger.log("AVISO: Não foi possível criar bucket (pode não ter permissão): " + createError.getMessage() + "\n");
-                    logger.log("Continuando assumindo que bucket será criado automaticamente pelo S3...\n");
+            // Período e fonte das estatísticas: "raw" lê todos os feedbacks, "aggregates" lê uma
+            // linha por dia, "verify" calcula das duas formas e compara e "approximate" usa só as
+            // linhas dos dias, com os sketches (percentis e distintos), sem ler nenhum feedback
+            String statsSource = input.get("statsSource") != null ? input.get("statsSource").toString() : defaultStatsSource;
+            if (!STATS_SOURCES.contains(statsSource)) {
+                throw new IllegalArgumentException("Origem de estatísticas desconhecida: " + statsSource + " (válidas: " + STATS_SOURCES + ")");
+            }
+            boolean useAggregates = !"raw".equals(statsSource);
+            if (useAggregates && !hasStatsTable()) {
+                throw new IllegalArgumentException("statsSource " + statsSource + " precisa da tabela de agregados (DAILY_STATS_TABLE)");
+            }
+            boolean approximate = "approximate".equals(statsSource);
+            LocalDate endDay = input.get("endDate") != null ? FeedbackKeys.dayOf(input.get("endDate").toString()) : LocalDate.now();
+            LocalDate startDay = input.get("startDate") != null ? FeedbackKeys.dayOf(input.get("startDate").toString()) : endDay.minusDays(6);
+            // Variantes (janela móvel, mês, urgência, notas extremas) saem da mesma passada, cada uma
+            // no seu objeto, com o mesmo hash do relatório semanal
+            ReportVariants variants = approximate ? null
+                : ReportVariants.requested(input.get("variants"), defaultVariants, endDay, variantTopN);
+            FeedbackStats aggregated = null;
+            List<Map<String, AttributeValue>> days = List.of();
+            DailySketches sketches = null;
+            if (useAggregates) {
+                // Com variantes, a janela móvel e o mês também saem dos agregados, e podem começar antes do período
+                LocalDate firstDay = variants != null && variants.firstDay().isBefore(startDay) ? variants.firstDay() : startDay;
+                days = loadDays(firstDay, endDay, approximate);
+                List<DailyAggregate> rows = days.stream().map(DailyAggregate::fromItem).toList();
+                String first = startDay.toString();
+                aggregated = summarize(rows.stream().filter(row -> row.day().compareTo(first) >= 0).toList());
+                if (variants != null) {
+                    variants.fromAggregates(rows);
+                }
+                logger.log("Estatísticas lidas dos agregados diários: " + startDay + " a " + endDay + "\n");
+            }
+            if (approximate) {
+                sketches = DailySketches.empty(null);
+                for (Map<String, AttributeValue> day : days) {
+                    sketches.merge(DailySketches.fromItem(day));
+                }
+                logger.log("Sketches de " + days.size() + " dias combinados: " + sketches.notaCount() + " notas\n");
+            }
+
+            // Lista do evento grande demais para ficar no heap durante o relatório: vai para um lote
+            // FBK1 em /tmp, lido por memory map como o lote da Lambda A
+            String batchKey = input.get("batchKey") != null ? input.get("batchKey").toString() : null;
+            List<Map<String, Object>> feedbackList = (List<Map<String, Object>>) input.get("feedbacks");
+            if (approximate) {
+                // Os feedbacks crus não entram no relatório aproximado: nem baixados, nem no fingerprint
+                batchKey = null;
+                feedbackList = null;
+                spilled = null;
+            }
+            if (batchKey == null && spilled == null && feedbackList != null) {
+                long estimated = FeedbackSpill.estimate(feedbackList);
+                if (estimated > spillThresholdBytes) {
+                    logger.log("Lista de feedbacks com ~" + estimated + " bytes acima do limite de memória, despejando em /tmp\n");
+                    spilled = FeedbackSpill.of(feedbackList);
+                }
+            }
+            if (spilled != null) {
+                logger.log("Feedbacks despejados em /tmp: " + spilled.rows() + " feedbacks, " + spilled.bytes() + " bytes\n");
+            }
+
+            // Chave endereçada pelo conteúdo: mesma entrada, mesmo objeto. Lote colunar e lista despejada
+            // entram pelo SHA-256 do arquivo FBK1 (o lote da Lambda A já tem o hash no nome; outro lote,
+            // pelo ETag), sem baixar nada; lista do evento entra campo a campo
+            ReportFingerprint fingerprint = new ReportFingerprint(useAggregates ? statsSource : "raw", startDay, endDay);
+            if (batchKey != null) {
+                fingerprint.add("fbk1").add(batchContentHash(batchKey));
+            } else if (spilled != null) {
+                fingerprint.add("fbk1").add(spilled.digest());
+            } else if (feedbackList != null) {
+                for (Map<String, Object> feedback : feedbackList) {
+                    fingerprint.add(feedback.get("createdAt")).add(feedback.get("nota"))
+                        .add(feedback.get("urgency")).add(feedback.get("descricao"));
+                }
+            }
+            if (aggregated != null) {
+                fingerprint.add(aggregated);
+            }
+            // Cada gravação de sketches incrementa a versão da linha do dia
+            if (sketches != null) {
+                days.forEach(day -> fingerprint.add(day.get("day").s()).add(DailySketches.version(day)));
+            }
+            if (variants != null) {
+                fingerprint.add(String.join(",", variants.enabled())).add(variantTopN);
+                if (useAggregates) {
+                    fingerprint.add(variants.rolling()).add(variants.monthly());
                 }
             }
+            // "sections": gzip por seção com índice no fim (SectionedReport); "text": texto simples
+            String format = input.get("format") != null ? input.get("format").toString() : defaultFormat;
+            if (!"text".equals(format) && !"sections".equals(format)) {
+                throw new IllegalArgumentException("Formato de relatório desconhecido: " + format + " (text ou sections)");
+            }
+            boolean sectioned = "sections".equals(format);
+            if (sectioned) {
+                fingerprint.add(format);
+            }
+            String textKey = fingerprint.objectKey(startDay, endDay);
+            String objectKey = sectioned ? textKey + SectionedReport.EXTENSION : textKey;
+            Map<String, String> variantKeys = new LinkedHashMap<>();
+            if (variants != null) {
+                variants.enabled().forEach(variant -> variantKeys.put(variant, ReportFingerprint.variantKey(textKey, variant)));
+            }
+
+            // O upload multipart só aparece no bucket quando completo: se existe, está inteiro
+            if (reportExists(objectKey) && variantKeys.values().stream().allMatch(this::reportExists)) {
+                logger.log("Relatório idêntico já existe, nada a gerar: " + bucketName + "/" + objectKey + "\n");
+                return objectKey;
+            }
 
-            // Calcular estatísticas dos feedbacks
-            String reportContent = generateReportContent(feedbacks, logger);
-            logger.log("Conteúdo do relatório:\n" + reportContent + "\n");
+            // Feedbacks recebidos da Lambda A: lista no evento, lote colunar no S3 ("batchKey") ou
+            // a lista despejada em /tmp
+            ReportInput feedbacks = batchKey != null
+                ? BatchReportInput.download(clients.s3(), bucketName, batchKey, metrics, logger)
+                : spilled != null ? new BatchReportInput(spilled.reader()) : new ListReportInput(feedbackList);
+            if (useAggregates) {
+                // Detalhes e variantes dos mesmos dias das estatísticas dos agregados, mesmo que a
+                // entrada traga feedbacks de fora do período
+                feedbacks = feedbacks.within(startDay, endDay);
+            }
+
+            FeedbackStats summary;
+            if (!useAggregates) {
+                summary = feedbacks.isEmpty() ? null : summarize(feedbacks, null, null, variants, logger);
+            } else if ("verify".equals(statsSource)) {
+                // Compara só os feedbacks crus que caem no mesmo período dos agregados
+                FeedbackStats inWindow = feedbacks.isEmpty() ? null : summarize(feedbacks, startDay, endDay, null, logger);
+                verify(inWindow == null || inWindow.total() == 0 ? null : inWindow, aggregated, logger);
+                summary = feedbacks.isEmpty() ? null : summarize(feedbacks, null, null, variants, logger);
+            } else {
+                summary = aggregated;
+                if (variants != null && !feedbacks.isEmpty()) {
+                    // As variantes precisam dos feedbacks crus: uma passada só para elas
+                    feedbacks.stats(null, null, parallelStatsThreshold, variants);
+                }
+            }
+
+            // Variantes são pequenas: montadas em memória e enviadas em paralelo com o relatório principal
+            List<Future<?>> variantUploads = new ArrayList<>();
+            for (Map.Entry<String, String> variant : variantKeys.entrySet()) {
+                byte[] body = variantReport(variant.getKey(), variants).getBytes(StandardCharsets.UTF_8);
+                variantUploads.add(VARIANT_UPLOADS.submit(() -> putVariant(variant.getValue(), body)));
+            }
 
-            // Nome do arquivo no S3
-            String objectKey = "weekly-report-" + LocalDate.now() + ".txt";
             logger.log("Salvando arquivo: " + objectKey + " no bucket: " + bucketName + "\n");
 
-            // Upload para S3
-            s3.putObject(
-                PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(objectKey)
-                    .contentType("text/plain; charset=utf-8")
-                    .contentEncoding("utf-8")
-                    .build(),
-                RequestBody.fromString(reportContent, StandardCharsets.UTF_8)
-            );
+            // Relatório escrito em streaming direto no upload (uma parte em memória por vez)
+            S3MultipartOutputStream upload = sectioned
+                ? new S3MultipartOutputStream(clients.s3(), bucketName, objectKey, SectionedReport.CONTENT_TYPE, null, reportPartSize)
+                : new S3MultipartOutputStream(clients.s3(), bucketName, objectKey, "text/plain; charset=utf-8", reportPartSize);
+            long buildStart = System.nanoTime();
+            try {
+                if (sectioned) {
+                    SectionedReport.Output output = new SectionedReport.Output(upload);
+                    writeReport(output, summary, sketches, feedbacks);
+                    output.close();
+                } else {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(upload, StandardCharsets.UTF_8), 64 * 1024);
+                    writeReport(section -> writer, summary, sketches, feedbacks);
+                    writer.close();
+                }
+            } catch (IOException | RuntimeException e) {
+                upload.abort();
+                throw e;
+            }
+            // Escrita e upload se intercalam: o tempo de montagem é o total menos o das chamadas ao S3
+            metrics.timeNanos(Metrics.REPORT_BUILD, System.nanoTime() - buildStart - upload.uploadNanos());
+            metrics.timeNanos(Metrics.S3_PUT, upload.uploadNanos());
+            metrics.bytes(Metrics.S3_PUT_BYTES, upload.bytesWritten());
+            for (Future<?> variantUpload : variantUploads) {
+                try {
+                    variantUpload.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Falha no upload de uma variante do relatório: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
             logger.log("Upload concluído com sucesso!\n");
+            if (!variantKeys.isEmpty()) {
+                logger.log("Variantes salvas: " + String.join(", ", variantKeys.values()) + "\n");
+            }
 
-            logger.log("Relatório salvo no bucket S3: " + bucketName + "/" + objectKey + "\n");
+            // Só o resumo vai para o log; o conteúdo completo fica no S3
+            logger.log("Relatório salvo no bucket S3: " + bucketName + "/" + objectKey
+                + " (" + (summary == null ? 0 : summary.total()) + " feedbacks, "
+                + upload.bytesWritten() + " bytes, " + upload.partCount() + " parte(s))\n");
 
             // Retornar apenas o objectKey para permitir encadeamento na Step Function
             return objectKey;
@@ -109,98 +425,448 @@ public class GenerateWeeklyReportHandler implements RequestHandler<Map<String, O
         } catch (Exception e) {
             logger.log("Erro ao gerar relatório: " + e.getMessage());
             throw new RuntimeException(e);
+        } finally {
+            metrics.flush(logger);
+            AwsClients.logFirstInvocation(logger, "GenerateWeeklyReport", invocationStart);
         }
     }
 
-    private String generateReportContent(List<Map<String, Object>> feedbacks, LambdaLogger logger) {
-        StringBuilder report = new StringBuilder();
-        
+    // Texto simples devolve o mesmo Writer para todas as seções; o formato "sections" abre um membro gzip por seção
+    private void writeReport(SectionedReport.Sink sections, FeedbackStats summary, DailySketches sketches,
+                             ReportInput feedbacks) throws IOException {
+        Writer report = sections.section(SectionedReport.SUMMARY);
         report.append("=== RELATÓRIO SEMANAL DE FEEDBACKS ===\n");
-        report.append("Data de geração: ").append(LocalDate.now()).append("\n\n");
+        report.append("Data de geração: ").append(LocalDate.now().toString()).append("\n\n");
+
+        if (!writeSummary(sections, report, summary, sketches) || feedbacks.isEmpty()) {
+            return;
+        }
+
+        // Detalhes dos feedbacks
+        report = sections.section(SectionedReport.DETAILS);
+        report.append("\n=== DETALHES DOS FEEDBACKS ===\n");
+        feedbacks.writeDetails(report);
+    }
 
-        if (feedbacks == null || feedbacks.isEmpty()) {
+    // Total, média e, com sketches, percentis e distintos (em "report", a seção de resumo já aberta) e
+    // distribuição por urgência e por dia; false quando não há feedbacks
+    private static boolean writeSummary(SectionedReport.Sink sections, Writer report, FeedbackStats summary,
+                                        DailySketches sketches) throws IOException {
+        if (summary == null || summary.total() == 0) {
             report.append("Nenhum feedback encontrado no período.\n");
-            return report.toString();
+            return false;
         }
 
-        int total = feedbacks.size();
-        report.append("Total de feedbacks: ").append(total).append("\n\n");
+        report.append("Total de feedbacks: ").append(Long.toString(summary.total())).append("\n\n");
 
-        // Calcular média das notas
-        OptionalDouble mediaNotas = feedbacks.stream()
-            .filter(feedback -> feedback.get("nota") != null)
-            .mapToDouble(feedback -> {
-                try {
-                    return Double.parseDouble(feedback.get("nota").toString());
-                } catch (NumberFormatException e) {
-                    logger.log("Nota inválida ignorada: " + feedback.get("nota"));
-                    return 0.0;
+        if (summary.mediaNotas().isPresent()) {
+            report.append(String.format("Média geral das notas: %.2f\n", summary.mediaNotas().getAsDouble()));
+        }
+        if (sketches != null) {
+            writeApproximate(report, sketches);
+        }
+
+        report = sections.section(SectionedReport.URGENCY);
+        report.append("\n=== DISTRIBUIÇÃO POR URGÊNCIA ===\n");
+        report.append("Alta: ").append(Long.toString(summary.alta())).append(" feedbacks\n");
+        report.append("Média: ").append(Long.toString(summary.media())).append(" feedbacks\n");
+        report.append("Baixa: ").append(Long.toString(summary.baixa())).append(" feedbacks\n");
+
+        writeDays(sections.section(SectionedReport.DAYS), summary);
+        return true;
+    }
+
+    private static void writeApproximate(Writer report, DailySketches sketches) throws IOException {
+        report.append("\n=== ESTATÍSTICAS APROXIMADAS (SKETCHES DIÁRIOS) ===\n");
+        if (sketches.quantile(0.5).isPresent()) {
+            report.append(String.format("Mediana das notas: %.2f\n", sketches.quantile(0.5).getAsDouble()));
+            report.append(String.format("Percentil 90 das notas: %.2f\n", sketches.quantile(0.9).getAsDouble()));
+            report.append(String.format("Erro de posição dos percentis: até %.2f%% (%d notas)\n",
+                100 * sketches.rankError(), sketches.notaCount()));
+        } else {
+            report.append("Nenhuma nota nos sketches do período.\n");
+        }
+        if (sketches.distinctOf() != null) {
+            report.append("Valores distintos de ").append(sketches.distinctOf()).append(": ")
+                .append(Long.toString(sketches.distinct())).append(" (entre ").append(Long.toString(sketches.distinctLower()))
+                .append(" e ").append(Long.toString(sketches.distinctUpper())).append(")\n");
+        }
+        report.append("Detalhes dos feedbacks omitidos no modo aproximado.\n");
+    }
+
+    private static void writeDays(Writer report, FeedbackStats summary) throws IOException {
+        report.append("\n=== QUANTIDADE DE AVALIAÇÕES POR DIA ===\n");
+        for (Map.Entry<String, Long> entry : summary.avaliacoesPorDia().entrySet()) {
+            report.append(entry.getKey()).append(": ").append(entry.getValue().toString()).append(" avaliações\n");
+        }
+    }
+
+    private static String variantReport(String variant, ReportVariants variants) throws IOException {
+        StringWriter report = new StringWriter();
+        String generated = "Data de geração: " + LocalDate.now() + "\n";
+        switch (variant) {
+            case ReportVariants.ROLLING -> {
+                report.append("=== RELATÓRIO DOS ÚLTIMOS 7 DIAS ===\n").append(generated)
+                    .append("Período: ").append(variants.rollingFirstDay().toString()).append(" a ")
+                    .append(variants.endDay().toString()).append("\n\n");
+                writeSummary(section -> report, report, variants.rolling(), null);
+            }
+            case ReportVariants.MONTHLY -> {
+                report.append("=== RELATÓRIO MENSAL DE FEEDBACKS ===\n").append(generated)
+                    .append("Período: ").append(variants.monthFirstDay().toString()).append(" a ")
+                    .append(variants.endDay().toString()).append("\n\n");
+                writeSummary(section -> report, report, variants.monthly(), null);
+            }
+            case ReportVariants.URGENCY -> {
+                report.append("=== RELATÓRIO POR URGÊNCIA ===\n").append(generated);
+                for (String urgency : ReportVariants.URGENCIES) {
+                    FeedbackStats stats = variants.urgency(urgency);
+                    report.append("\n=== URGÊNCIA ").append(urgency.toUpperCase()).append(" ===\n");
+                    if (stats.total() == 0) {
+                        report.append("Nenhum feedback com esta urgência.\n");
+                        continue;
+                    }
+                    report.append("Total de feedbacks: ").append(Long.toString(stats.total())).append('\n');
+                    if (stats.mediaNotas().isPresent()) {
+                        report.append(String.format("Média das notas: %.2f\n", stats.mediaNotas().getAsDouble()));
+                    }
+                    writeDays(report, stats);
                 }
-            })
-            .filter(nota -> nota > 0)
-            .average();
+            }
+            case ReportVariants.EXTREMES -> {
+                report.append("=== MAIORES E MENORES NOTAS ===\n").append(generated);
+                writeRanked(report, "MAIORES NOTAS", variants.highest());
+                writeRanked(report, "MENORES NOTAS", variants.lowest());
+            }
+            default -> throw new IllegalArgumentException("Variante de relatório desconhecida: " + variant);
+        }
+        return report.toString();
+    }
 
-        if (mediaNotas.isPresent()) {
-            report.append(String.format("Média geral das notas: %.2f\n", mediaNotas.getAsDouble()));
+    private static void writeRanked(Writer report, String title, List<ReportVariants.Ranked> feedbacks) throws IOException {
+        report.append("\n=== ").append(title).append(" ===\n");
+        if (feedbacks.isEmpty()) {
+            report.append("Nenhum feedback com nota no período.\n");
+        }
+        for (int i = 0; i < feedbacks.size(); i++) {
+            ReportVariants.Ranked feedback = feedbacks.get(i);
+            writeDetail(report, i + 1, feedback.notaText(), feedback.urgency(), feedback.createdAt(), feedback.descricao());
         }
+    }
 
-        // Contadores por urgência
-        long alta = feedbacks.stream()
-            .filter(f -> "alta".equals(f.get("urgency")))
-            .count();
-        long media = feedbacks.stream()
-            .filter(f -> "media".equals(f.get("urgency")))
-            .count();
-        long baixa = feedbacks.stream()
-            .filter(f -> "baixa".equals(f.get("urgency")))
-            .count();
+    private void putVariant(String key, byte[] body) {
+        long start = System.nanoTime();
+        clients.s3().putObject(PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType("text/plain; charset=utf-8")
+                .contentEncoding("utf-8")
+                .build(),
+            RequestBody.fromBytes(body));
+        metrics.time(Metrics.S3_PUT, start);
+        metrics.bytes(Metrics.S3_PUT_BYTES, body.length);
+    }
 
-        report.append("\n=== DISTRIBUIÇÃO POR URGÊNCIA ===\n");
-        report.append("Alta: ").append(alta).append(" feedbacks\n");
-        report.append("Média: ").append(media).append(" feedbacks\n");
-        report.append("Baixa: ").append(baixa).append(" feedbacks\n");
-
-        // Quantidade de avaliações por dia
-        Map<String, Long> avaliacoesPorDia = feedbacks.stream()
-            .filter(feedback -> feedback.get("createdAt") != null)
-            .collect(Collectors.groupingBy(
-                feedback -> {
-                    try {
-                        String createdAt = feedback.get("createdAt").toString();
-                        // Extrair apenas a data (YYYY-MM-DD) do timestamp ISO
-                        return createdAt.substring(0, 10);
-                    } catch (Exception e) {
-                        logger.log("Data inválida ignorada: " + feedback.get("createdAt"));
-                        return "Data inválida";
+    // Uma linha de detalhe, sem String.format (chamada uma vez por feedback)
+    private static final Pattern CONTENT_ADDRESSED_BATCH =
+        Pattern.compile(Pattern.quote(ListFeedbacksHandler.BATCH_PREFIX) + "([0-9a-f]{64})\\.fbk");
+
+    // SHA-256 do lote gravado pela Lambda A (no nome) ou ETag de um lote com outro nome
+    private String batchContentHash(String batchKey) {
+        Matcher matcher = CONTENT_ADDRESSED_BATCH.matcher(batchKey);
+        if (matcher.matches()) {
+            return matcher.group(1);
+        }
+        return clients.s3().headObject(HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(batchKey)
+                .build())
+            .eTag();
+    }
+
+    private static void writeDetail(Writer report, long index, Object nota, Object urgency, Object createdAt, Object descricao) throws IOException {
+        report.append(Long.toString(index)).append(". Nota: ").append(String.valueOf(nota))
+            .append(" | Urgência: ").append(String.valueOf(urgency))
+            .append(" | Data: ").append(String.valueOf(createdAt)).append('\n');
+        if (descricao != null) {
+            report.append("   Descrição: ").append(descricao.toString()).append('\n');
+        }
+        report.append('\n');
+    }
+
+    // Estatísticas dos feedbacks crus, opcionalmente só dos dias [from, to], e das variantes na mesma passada
+    private FeedbackStats summarize(ReportInput feedbacks, LocalDate from, LocalDate to, ReportVariants variants,
+                                    LambdaLogger logger) throws IOException {
+        FeedbackStats stats = feedbacks.stats(from, to, parallelStatsThreshold, variants);
+
+        if (stats.notasInvalidas() > 0) {
+            logger.log("Notas inválidas ignoradas: " + stats.notasInvalidas() + "\n");
+        }
+        if (stats.datasInvalidas() > 0) {
+            logger.log("Datas inválidas ignoradas: " + stats.datasInvalidas() + "\n");
+        }
+        return stats;
+    }
+
+    private FeedbackStats summarize(List<DailyAggregate> rows) {
+        FeedbackStats stats = new FeedbackStats();
+        rows.forEach(stats::add);
+        return stats;
+    }
+
+    private List<DailyAggregate> loadAggregates(LocalDate startDay, LocalDate endDay) {
+        return loadDays(startDay, endDay, false).stream().map(DailyAggregate::fromItem).toList();
+    }
+
+    // Lê as linhas dos dias do período (no máximo 100 chaves por BatchGetItem); os sketches, alguns KB
+    // por dia, só quando pedidos
+    private List<Map<String, AttributeValue>> loadDays(LocalDate startDay, LocalDate endDay, boolean withSketches) {
+        String projection = "#day, #count, notaCount, notaSum, alta, media, baixa";
+        if (withSketches) {
+            projection += ", " + String.join(", ", DailySketches.NOTAS, DailySketches.DISTINCT,
+                DailySketches.DISTINCT_OF, DailySketches.VERSION);
+        }
+        List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (LocalDate day = startDay; !day.isAfter(endDay); day = day.plusDays(1)) {
+            keys.add(DailyAggregate.key(day.toString()));
+        }
+
+        List<Map<String, AttributeValue>> rows = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += 100) {
+            Map<String, KeysAndAttributes> pending = Map.of(statsTableName, KeysAndAttributes.builder()
+                .keys(keys.subList(from, Math.min(keys.size(), from + 100)))
+                .projectionExpression(projection)
+                .expressionAttributeNames(Map.of("#day", "day", "#count", "count"))
+                .build());
+            while (!pending.isEmpty()) {
+                BatchGetItemResponse response = clients.dynamoDb().batchGetItem(BatchGetItemRequest.builder().requestItems(pending).build());
+                response.responses().getOrDefault(statsTableName, List.of())
+                    .forEach(rows::add);
+                pending = response.unprocessedKeys();
+            }
+        }
+        return rows;
+    }
+
+    private void verify(FeedbackStats raw, FeedbackStats aggregated, LambdaLogger logger) {
+        if (raw == null) {
+            logger.log("Verificação: sem feedbacks crus para comparar (agregados: " + aggregated.total() + ")\n");
+            return;
+        }
+        List<String> divergences = new ArrayList<>();
+        if (raw.total() != aggregated.total()) {
+            divergences.add("total " + raw.total() + " != " + aggregated.total());
+        }
+        if (raw.alta() != aggregated.alta() || raw.media() != aggregated.media() || raw.baixa() != aggregated.baixa()) {
+            divergences.add("urgência " + raw.alta() + "/" + raw.media() + "/" + raw.baixa()
+                + " != " + aggregated.alta() + "/" + aggregated.media() + "/" + aggregated.baixa());
+        }
+        if (raw.mediaNotas().isPresent() != aggregated.mediaNotas().isPresent()
+                || (raw.mediaNotas().isPresent()
+                    && Math.abs(raw.mediaNotas().getAsDouble() - aggregated.mediaNotas().getAsDouble()) > 0.005)) {
+            divergences.add("média " + raw.mediaNotas() + " != " + aggregated.mediaNotas());
+        }
+        Map<String, Long> aggregatedPorDia = aggregated.avaliacoesPorDia();
+        for (Map.Entry<String, Long> entry : raw.avaliacoesPorDia().entrySet()) {
+            Long aggregatedCount = aggregatedPorDia.get(entry.getKey());
+            if (!Objects.equals(entry.getValue(), aggregatedCount)) {
+                divergences.add(entry.getKey() + " " + entry.getValue() + " != " + aggregatedCount);
+            }
+        }
+
+        if (divergences.isEmpty()) {
+            logger.log("Verificação: agregados conferem com os feedbacks crus\n");
+        } else {
+            logger.log("Verificação: DIVERGÊNCIA entre agregados e feedbacks crus: " + String.join("; ", divergences) + "\n");
+        }
+    }
+
+    /**
+     * Feedbacks de entrada do relatório, venham na lista do evento ou num lote colunar.
+     */
+    private interface ReportInput {
+        boolean isEmpty();
+
+        /**
+         * Uma passada pelos feedbacks; com variants, elas também são acumuladas.
+         */
+        FeedbackStats stats(LocalDate from, LocalDate to, int parallelThreshold, ReportVariants variants) throws IOException;
+
+        void writeDetails(Writer report) throws IOException;
+
+        // Só os feedbacks dos dias [from, to] (sem data válida ficam de fora), para estatísticas e detalhes
+        ReportInput within(LocalDate from, LocalDate to);
+    }
+
+    private static final class ListReportInput implements ReportInput {
+        private final List<Map<String, Object>> feedbacks;
+
+        ListReportInput(List<Map<String, Object>> feedbacks) {
+            this.feedbacks = feedbacks != null ? feedbacks : List.of();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return feedbacks.isEmpty();
+        }
+
+        // Uma única passada; listas grandes são divididas entre os núcleos disponíveis
+        @Override
+        public FeedbackStats stats(LocalDate from, LocalDate to, int parallelThreshold, ReportVariants variants) {
+            Stream<Map<String, Object>> stream = feedbacks.size() >= parallelThreshold ? feedbacks.parallelStream() : feedbacks.stream();
+            if (from != null) {
+                long first = from.toEpochDay();
+                long last = to.toEpochDay();
+                stream = stream.filter(f -> inWindow(f, first, last));
+            }
+            if (variants == null) {
+                return stream.collect(FeedbackStats.collector());
+            }
+            ListPass pass = stream.collect(Collector.of(() -> new ListPass(new FeedbackStats(), variants.fresh()),
+                ListPass::accept, ListPass::combine));
+            variants.combine(pass.variants());
+            return pass.stats();
+        }
+
+        @Override
+        public void writeDetails(Writer report) throws IOException {
+            for (int i = 0; i < feedbacks.size(); i++) {
+                Map<String, Object> feedback = feedbacks.get(i);
+                writeDetail(report, i + 1, feedback.get("nota"), feedback.get("urgency"), feedback.get("createdAt"), feedback.get("descricao"));
+            }
+        }
+
+        @Override
+        public ReportInput within(LocalDate from, LocalDate to) {
+            long first = from.toEpochDay();
+            long last = to.toEpochDay();
+            return new ListReportInput(feedbacks.stream().filter(f -> inWindow(f, first, last)).toList());
+        }
+
+        private static boolean inWindow(Map<String, Object> feedback, long first, long last) {
+            Object createdAt = feedback.get("createdAt");
+            long day = createdAt == null ? FeedbackStats.NO_DAY : FeedbackStats.epochDay(createdAt.toString());
+            return day != FeedbackStats.NO_DAY && day >= first && day <= last;
+        }
+    }
+
+    /**
+     * Acumuladores de um pedaço da lista: estatísticas principais e variantes.
+     */
+    private record ListPass(FeedbackStats stats, ReportVariants variants) {
+        void accept(Map<String, Object> feedback) {
+            stats.accept(feedback);
+            Object createdAt = feedback.get("createdAt");
+            long day = createdAt == null ? FeedbackStats.NO_DAY : FeedbackStats.epochDay(createdAt.toString());
+            double nota = FeedbackStats.nota(feedback.get("nota"));
+            nota = Double.isNaN(nota) ? 0.0 : nota;
+            String urgency = feedback.get("urgency") instanceof String text ? text : null;
+            variants.add(urgency, nota, day);
+            if (variants.ranks(nota)) {
+                variants.rank(new ReportVariants.Ranked(nota, String.valueOf(feedback.get("nota")), urgency,
+                    createdAt == null ? null : createdAt.toString(),
+                    feedback.get("descricao") == null ? null : feedback.get("descricao").toString()));
+            }
+        }
+
+        ListPass combine(ListPass other) {
+            stats.combine(other.stats);
+            variants.combine(other.variants);
+            return this;
+        }
+    }
+
+    /**
+     * Lote colunar (baixado do S3 ou despejado do evento) em /tmp, lido por memory map, sem virar List&lt;Map&gt;.
+     */
+    private static final class BatchReportInput implements ReportInput {
+        private final FeedbackBatchReader reader;
+        private final long size;
+        // Dias aceitos (epoch day); sem período, MIN_VALUE (= NO_DAY) a MAX_VALUE aceita tudo
+        private final long firstDay;
+        private final long lastDay;
+
+        BatchReportInput(FeedbackBatchReader reader) {
+            this(reader, reader.totalRows(), Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        // size: linhas dentro de [firstDay, lastDay], não o total do arquivo
+        private BatchReportInput(FeedbackBatchReader reader, long size, long firstDay, long lastDay) {
+            this.reader = reader;
+            this.size = size;
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+        }
+
+        static BatchReportInput download(S3Client s3, String bucketName, String batchKey, Metrics metrics, LambdaLogger logger) throws IOException {
+            Path file = Files.createTempFile("feedbacks-", ".fbk");
+            Files.delete(file);
+            long start = System.nanoTime();
+            s3.getObject(GetObjectRequest.builder().bucket(bucketName).key(batchKey).build(), file);
+            metrics.time(Metrics.S3_GET, start);
+            metrics.bytes(Metrics.S3_GET_BYTES, Files.size(file));
+            BatchReportInput input = new BatchReportInput(new FeedbackBatchReader(FeedbackBatchReader.map(file)));
+            // O mapeamento continua válido depois de apagar o arquivo
+            Files.delete(file);
+            logger.log("Lote " + batchKey + " carregado: " + input.size + " feedbacks\n");
+            return input;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public FeedbackStats stats(LocalDate from, LocalDate to, int parallelThreshold, ReportVariants variants) throws IOException {
+            FeedbackStats stats = new FeedbackStats();
+            long first = from != null ? from.toEpochDay() : Long.MIN_VALUE;
+            long last = to != null ? to.toEpochDay() : Long.MAX_VALUE;
+            reader.forEach(row -> {
+                long day = row.epochDay();
+                if (day >= firstDay && day <= lastDay
+                        && (from == null || (day != FeedbackStats.NO_DAY && day >= first && day <= last))) {
+                    stats.add(row.urgency(), row.nota(), day);
+                    if (variants != null) {
+                        variants.add(row.urgency(), row.nota(), day);
+                        if (variants.ranks(row.nota())) {
+                            variants.rank(new ReportVariants.Ranked(row.nota(), row.notaText(), row.urgency(),
+                                row.createdAtText(), row.descricao()));
+                        }
                     }
-                },
-                Collectors.counting()
-            ));
+                }
+            });
+            return stats;
+        }
 
-        report.append("\n=== QUANTIDADE DE AVALIAÇÕES POR DIA ===\n");
-        avaliacoesPorDia.entrySet().stream()
-            .sorted(Map.Entry.<String, Long>comparingByKey())
-            .forEach(entry -> {
-                report.append(entry.getKey()).append(": ").append(entry.getValue()).append(" avaliações\n");
+        @Override
+        public void writeDetails(Writer report) throws IOException {
+            long[] index = {0};
+            reader.forEach(row -> {
+                long day = row.epochDay();
+                if (day >= firstDay && day <= lastDay) {
+                    writeDetail(report, ++index[0], row.notaText(), row.urgency(), row.createdAtText(), row.descricao());
+                }
             });
+        }
 
-        // Detalhes dos feedbacks
-        report.append("\n=== DETALHES DOS FEEDBACKS ===\n");
-        for (int i = 0; i < feedbacks.size(); i++) {
-            Map<String, Object> feedback = feedbacks.get(i);
-            report.append(String.format("%d. Nota: %s | Urgência: %s | Data: %s\n", 
-                i + 1,
-                feedback.get("nota"),
-                feedback.get("urgency"),
-                feedback.get("createdAt")
-            ));
-            
-            if (feedback.get("descricao") != null) {
-                report.append("   Descrição: ").append(feedback.get("descricao")).append("\n");
+        @Override
+        public ReportInput within(LocalDate from, LocalDate to) {
+            long first = Math.max(firstDay, from.toEpochDay());
+            long last = Math.min(lastDay, to.toEpochDay());
+            long[] rows = {0};
+            try {
+                reader.forEach(row -> {
+                    long day = row.epochDay();
+                    if (day >= first && day <= last) {
+                        rows[0]++;
+                    }
+                });
+            } catch (IOException e) {
+                // Sem I/O no visitante
+                throw new UncheckedIOException(e);
             }
-            report.append("\n");
+            return new BatchReportInput(reader, rows[0], first, last);
         }
-
-        return report.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,346 @@
+package com.example.lambda;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Ingestão de feedbacks em lote: array JSON ou NDJSON (um objeto por linha) no corpo do POST
+ * /feedbacks, lista "feedbacks" numa chamada direta ou, para importações de histórico grandes
+ * demais para o API Gateway, um objeto no S3 ("sourceKey" em IMPORT_BUCKET).
+ *
+ * A entrada é lida em streaming e cada feedback é validado (createdAt ISO-8601, nota numérica em
+ * (0, 10], urgency alta/media/baixa) antes de ir para o FeedbackWriter. Os inválidos são contados
+ * e devolvidos com a posição e o motivo, sem impedir a gravação dos demais.
+ */
+public class IngestFeedbacksHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
+
+    static final double MAX_NOTA = 10.0;
+    static final int MAX_DESCRICAO = 4000;
+    // Erros de validação devolvidos na resposta (o restante só entra na contagem)
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final AwsClients clients;
+    private final String tableName;
+    // Tabela de agregados, onde fica a revisão das janelas fechadas do cache da Lambda A (SettledRevision)
+    private final String statsTable;
+    private final String importBucket = System.getenv().getOrDefault("IMPORT_BUCKET", System.getenv("REPORTS_BUCKET"));
+    private final int shardCount = Integer.parseInt(System.getenv().getOrDefault("SHARD_COUNT", "0"));
+    private final int concurrency = Integer.parseInt(System.getenv().getOrDefault("INGEST_CONCURRENCY", "16"));
+    private final int maxAttempts = Integer.parseInt(System.getenv().getOrDefault("INGEST_MAX_ATTEMPTS", "8"));
+    private final long baseBackoffMillis = Long.parseLong(System.getenv().getOrDefault("INGEST_BACKOFF_MS", "50"));
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Metrics metrics = new Metrics("IngestFeedbacks");
+
+    public IngestFeedbacksHandler() {
+        this(AwsClients.shared());
+        AwsClients.registerPriming("IngestFeedbacks", this::prime);
+    }
+
+    IngestFeedbacksHandler(AwsClients clients) {
+        this(clients, System.getenv("TABLE_NAME"));
+    }
+
+    IngestFeedbacksHandler(AwsClients clients, String tableName) {
+        this(clients, tableName, System.getenv("DAILY_STATS_TABLE"));
+    }
+
+    IngestFeedbacksHandler(AwsClients clients, String tableName, String statsTable) {
+        this.clients = clients;
+        this.tableName = tableName;
+        this.statsTable = statsTable;
+    }
+
+    // Antes do snapshot: leitura e validação das duas formas de entrada, sem gravar nada
+    private void prime() {
+        String ndjson = "{\"createdAt\":\"1970-01-01T00:00:00Z\",\"nota\":\"5\",\"urgency\":\"baixa\",\"descricao\":\"Priming\"}\n"
+            + "{\"createdAt\":\"1970-01-01T00:00:01Z\",\"nota\":7.5,\"urgency\":\"Alta\"}\n";
+        try {
+            for (String body : List.of(ndjson, "[" + ndjson.strip().replace("\n", ",") + "]")) {
+                try (JsonParser parser = mapper.createParser(body)) {
+                    read(parser, feedback -> toItem(feedback, shardCount));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        createApiGatewayResponse(200, Map.of("received", 2));
+        metrics.discard();
+    }
+
+    @Override
+    public Map<String, Object> handleRequest(Map<String, Object> event, Context context) {
+        long invocationStart = System.nanoTime();
+        boolean isApiGateway = event.containsKey("httpMethod") || event.containsKey("requestContext");
+        try {
+            Object body = event.get("body");
+            if (isApiGateway && (body == null || body.toString().isBlank())) {
+                return createApiGatewayResponse(400, Map.of("error", "Corpo vazio: envie um array JSON ou NDJSON de feedbacks"));
+            }
+            Ingestion ingestion = new Ingestion();
+            Map<String, Object> result;
+            if (isApiGateway) {
+                byte[] bytes = Boolean.TRUE.equals(event.get("isBase64Encoded"))
+                    ? Base64.getDecoder().decode(body.toString())
+                    : body.toString().getBytes(StandardCharsets.UTF_8);
+                result = ingestion.run(new ByteArrayInputStream(bytes));
+            } else if (event.get("sourceKey") != null) {
+                // Importação do S3: lida em streaming, sem carregar o objeto inteiro
+                try (InputStream source = clients.s3().getObject(GetObjectRequest.builder()
+                        .bucket(importBucket)
+                        .key(event.get("sourceKey").toString())
+                        .build(), ResponseTransformer.toInputStream())) {
+                    result = ingestion.run(source);
+                }
+            } else {
+                result = ingestion.run((List<?>) event.get("feedbacks"));
+            }
+
+            context.getLogger().log("Ingestão: " + result.get("received") + " recebidos, " + result.get("written") + " gravados, "
+                + result.get("rejected") + " inválidos, " + result.get("failed") + " falhos, " + result.get("retries")
+                + " reenvios, " + result.get("itemsPerSecond") + " itens/s\n");
+            if (result.get("lastError") != null) {
+                context.getLogger().log("Último erro de gravação: " + result.get("lastError") + "\n");
+            }
+
+            if (!isApiGateway) {
+                return result;
+            }
+            // 400: entrada malformada; 207: parte dos feedbacks não foi gravada
+            int statusCode = result.containsKey("error") ? 400
+                : (long) result.get("rejected") + (long) result.get("failed") > 0 ? 207 : 200;
+            return createApiGatewayResponse(statusCode, result);
+        } catch (Exception e) {
+            context.getLogger().log("Erro na ingestão: " + e.getMessage() + "\n");
+            if (isApiGateway) {
+                return createApiGatewayResponse(500, Map.of("error", String.valueOf(e.getMessage())));
+            }
+            throw new RuntimeException(e);
+        } finally {
+            metrics.flush(context.getLogger());
+            AwsClients.logFirstInvocation(context.getLogger(), "IngestFeedbacks", invocationStart);
+        }
+    }
+
+    /**
+     * Uma passada pela entrada: valida, agrupa e grava, e monta a resposta com as contagens.
+     */
+    private final class Ingestion {
+        private final FeedbackWriter writer = new FeedbackWriter(clients.dynamoDb(), tableName, concurrency, maxAttempts,
+            baseBackoffMillis, metrics);
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private final long start = System.nanoTime();
+        private long received;
+        private long rejected;
+        // Menor createdAt aceito: decide se alguma janela fechada do cache da Lambda A mudou
+        private String oldest;
+
+        Map<String, Object> run(InputStream input) throws InterruptedException {
+            String error = null;
+            try (JsonParser parser = mapper.createParser(input)) {
+                read(parser, this::accept);
+            } catch (JsonProcessingException e) {
+                // Lotes já enviados continuam gravados; a resposta diz até onde a entrada foi lida
+                error = "JSON inválido depois de " + received + " feedbacks: " + e.getOriginalMessage()
+                    + " (linha " + e.getLocation().getLineNr() + ")";
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return finish(error);
+        }
+
+        Map<String, Object> run(List<?> feedbacks) throws InterruptedException {
+            for (Object feedback : feedbacks != null ? feedbacks : List.of()) {
+                accept(feedback);
+            }
+            return finish(null);
+        }
+
+        private void accept(Object feedback) throws InterruptedException {
+            long index = received++;
+            Map<String, AttributeValue> item;
+            try {
+                item = toItem(feedback, shardCount);
+            } catch (IllegalArgumentException e) {
+                rejected++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(Map.of("index", index, "error", e.getMessage()));
+                }
+                return;
+            }
+            String createdAt = FeedbackKeys.createdAtOf(item.get("createdAt").s());
+            if (oldest == null || createdAt.compareTo(oldest) < 0) {
+                oldest = createdAt;
+            }
+            writer.add(item);
+        }
+
+        private Map<String, Object> finish(String error) throws InterruptedException {
+            FeedbackWriter.Result written = writer.finish();
+            // Só depois de gravar: a Lambda A que vir a revisão nova já consulta com estes itens. Vale também para um
+            // reenvio só de duplicados, caso a chamada anterior tenha falhado antes daqui
+            if (statsTable != null && !statsTable.isEmpty() && oldest != null && oldest.compareTo(SettledRevision.cutoff()) < 0) {
+                SettledRevision.bump(clients.dynamoDb(), statsTable);
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            metrics.count(Metrics.ITEMS_WRITTEN, written.written());
+            metrics.count(Metrics.ITEMS_REJECTED, rejected);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("received", received);
+            result.put("written", written.written());
+            result.put("rejected", rejected);
+            result.put("failed", written.failed());
+            result.put("duplicates", written.duplicates());
+            result.put("retries", written.retries());
+            result.put("itemsPerSecond", elapsedNanos == 0 ? 0 : Math.round(written.written() * 1e9 / elapsedNanos));
+            if (!errors.isEmpty()) {
+                result.put("errors", errors);
+            }
+            if (!written.failedKeys().isEmpty()) {
+                result.put("failedKeys", written.failedKeys());
+                result.put("lastError", written.lastError());
+            }
+            if (error != null) {
+                result.put("error", error);
+            }
+            return result;
+        }
+    }
+
+    private interface FeedbackConsumer {
+        void accept(Object feedback) throws InterruptedException;
+    }
+
+    // Array JSON ([{...}, {...}]) ou NDJSON (objetos na raiz, um por linha): o parser lê os dois
+    private void read(JsonParser parser, FeedbackConsumer consumer) throws IOException, InterruptedException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            token = parser.nextToken();
+        }
+        while (token != null && token != JsonToken.END_ARRAY) {
+            // Lido como Object: valor que não é objeto vira erro de validação, não de parse
+            consumer.accept(parser.readValueAs(Object.class));
+            token = parser.nextToken();
+        }
+    }
+
+    /**
+     * Item da tabela de feedbacks a partir de um feedback da entrada, ou IllegalArgumentException
+     * com o motivo. createdAt é normalizado em UTC ("Z"), porque as consultas por período comparam
+     * o texto, e recebe o sufixo de FeedbackKeys.sortKey; nota é gravada como texto, como nos itens
+     * existentes.
+     */
+    static Map<String, AttributeValue> toItem(Object value, int shardCount) {
+        if (!(value instanceof Map<?, ?> feedback)) {
+            throw new IllegalArgumentException("feedback deve ser um objeto JSON");
+        }
+        String createdAt = createdAt(feedback.get("createdAt"));
+        String nota = nota(feedback.get("nota"));
+        String urgency = urgency(feedback.get("urgency"));
+        Object descricao = feedback.get("descricao");
+        if (descricao != null && !(descricao instanceof String)) {
+            throw new IllegalArgumentException("descricao deve ser texto");
+        }
+        if (descricao != null && ((String) descricao).length() > MAX_DESCRICAO) {
+            throw new IllegalArgumentException("descricao com mais de " + MAX_DESCRICAO + " caracteres");
+        }
+
+        Map<String, AttributeValue> item = new HashMap<>();
+        String discriminator = descricao != null ? (String) descricao : urgency + "|" + nota;
+        item.put("pk", AttributeValue.builder().s(FeedbackKeys.partitionKeyFor(createdAt, discriminator, shardCount)).build());
+        item.put("createdAt", AttributeValue.builder()
+            .s(FeedbackKeys.sortKey(createdAt, urgency + "|" + nota + "|" + (descricao == null ? "" : descricao))).build());
+        item.put("nota", AttributeValue.builder().s(nota).build());
+        item.put("urgency", AttributeValue.builder().s(urgency).build());
+        item.put(FeedbackKeys.URGENCY_DAY, AttributeValue.builder().s(FeedbackKeys.urgencyDay(urgency, FeedbackKeys.dayOf(createdAt))).build());
+        if (descricao != null && !((String) descricao).isEmpty()) {
+            item.put("descricao", AttributeValue.builder().s((String) descricao).build());
+        }
+        return item;
+    }
+
+    private static String createdAt(Object value) {
+        if (!(value instanceof String text) || text.isBlank()) {
+            throw new IllegalArgumentException("createdAt ausente");
+        }
+        Instant instant;
+        try {
+            instant = Instant.parse(text.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("createdAt inválido (ISO-8601, ex.: 2024-01-01T10:00:00Z): " + text);
+        }
+        int year = instant.atOffset(ZoneOffset.UTC).getYear();
+        if (year < 1970 || year > 9999) {
+            throw new IllegalArgumentException("createdAt fora do intervalo aceito: " + text);
+        }
+        return instant.toString();
+    }
+
+    // Mesma leitura de nota do relatório (FeedbackStats.nota), gravada na forma canônica ("09" vira "9")
+    private static String nota(Object value) {
+        if (!(value instanceof Number) && !(value instanceof String)) {
+            throw new IllegalArgumentException(value == null ? "nota ausente" : "nota deve ser número ou texto");
+        }
+        double nota = FeedbackStats.nota(value.toString().trim());
+        if (Double.isNaN(nota) || Double.isInfinite(nota)) {
+            throw new IllegalArgumentException("nota não numérica: " + value);
+        }
+        if (nota <= 0 || nota > MAX_NOTA) {
+            throw new IllegalArgumentException("nota fora do intervalo (0, " + (int) MAX_NOTA + "]: " + value);
+        }
+        return BigDecimal.valueOf(nota).stripTrailingZeros().toPlainString();
+    }
+
+    private static String urgency(Object value) {
+        String urgency = value instanceof String text ? text.trim().toLowerCase(Locale.ROOT) : null;
+        if (urgency == null || !ReportVariants.URGENCIES.contains(urgency)) {
+            throw new IllegalArgumentException("urgency deve ser uma de " + ReportVariants.URGENCIES + ": " + value);
+        }
+        return urgency;
+    }
+
+    private Map<String, Object> createApiGatewayResponse(int statusCode, Object body) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("statusCode", statusCode);
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Access-Control-Allow-Origin", "*");
+        response.put("headers", headers);
+
+        try {
+            response.put("body", mapper.writeValueAsString(body));
+        } catch (Exception e) {
+            response.put("body", "{\"error\": \"Failed to serialize response\"}");
+        }
+
+        return response;
+    }
+}
@@ -2,38 +2,95 @@ package com.example.lambda;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 import software.amazon.awssdk.services.dynamodb.model.*;
-import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.core.sync.RequestBody;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import java.net.URI;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.*;
 
 public class ListFeedbacksHandler implements RequestHandler<Map<String, Object>, Map<String, Object>> {
 
-    private final DynamoDbClient ddb;
+    private static final String DEFAULT_START_DATE = "2020-01-01T00:00:00Z";
+    private static final String DEFAULT_END_DATE = "2030-12-31T23:59:59Z";
+    static final String BATCH_PREFIX = "batches/";
+
+    private final AwsClients clients;
+    private final String bucketName = System.getenv("REPORTS_BUCKET");
     private final String tableName = System.getenv("TABLE_NAME");
     private final int pageSize = Integer.parseInt(System.getenv().getOrDefault("DEFAULT_PAGE_SIZE", "100"));
+    private final int shardCount = Integer.parseInt(System.getenv().getOrDefault("SHARD_COUNT", "0"));
+    // Dias lidos no máximo por página nas consultas dia a dia (shards e índice por urgência)
+    private final int maxDaysPerPage = Integer.parseInt(System.getenv().getOrDefault("MAX_DAYS_PER_PAGE",
+            String.valueOf(ShardedFeedbackQuery.DEFAULT_MAX_DAYS_PER_PAGE)));
+    // Desligado por padrão: tabelas sem o GSI (DynamoDB Local, tabelas antigas) usam o filterExpression
+    private final String urgencyIndex = System.getenv().getOrDefault("URGENCY_INDEX", "");
+    private final int scanSlices = Integer.parseInt(System.getenv().getOrDefault("SCAN_SLICES", "0"));
+    private final int scanConcurrency = Integer.parseInt(System.getenv().getOrDefault("SCAN_CONCURRENCY", "8"));
+    private final int scanPrefetchPages = Integer.parseInt(System.getenv().getOrDefault("SCAN_PREFETCH_PAGES", "4"));
+    private final int drainPageSize = Integer.parseInt(System.getenv().getOrDefault("DRAIN_PAGE_SIZE", "1000"));
+    private final long drainMaxItems = Long.parseLong(System.getenv().getOrDefault("DRAIN_MAX_ITEMS", "500000"));
+    private final long drainMaxBytes = Long.parseLong(System.getenv().getOrDefault("DRAIN_MAX_BYTES", "134217728"));
+    // Drain com os itens na resposta: limitado para caber no payload da Lambda (6 MB) depois de virar JSON
+    private final long drainInlineMaxBytes = Long.parseLong(System.getenv().getOrDefault("DRAIN_INLINE_MAX_BYTES", "1048576"));
+    private final long drainTimeMarginMillis = Long.parseLong(System.getenv().getOrDefault("DRAIN_TIME_MARGIN_MS", "3000"));
+    private final long cacheTtlMillis = Long.parseLong(System.getenv().getOrDefault("LIST_CACHE_TTL_SECONDS", "60")) * 1000;
+    private final QueryResultCache cache = new QueryResultCache(Integer.parseInt(System.getenv().getOrDefault("LIST_CACHE_MAX_ENTRIES", "256")));
+    private final SettledRevision settledRevision;
     private final ObjectMapper mapper = new ObjectMapper();
+    private final FeedbackJsonWriter jsonWriter = new FeedbackJsonWriter();
+    private final Metrics metrics = new Metrics("ListFeedbacks");
 
     public ListFeedbacksHandler() {
-        String endpoint = System.getenv("DYNAMODB_ENDPOINT"); // usado só em testes locais
-        String regionEnv = System.getenv("AWS_REGION");       // já existe na AWS automaticamente
-        Region region = Region.of(regionEnv != null ? regionEnv : "us-east-1");
+        this(AwsClients.shared(), System.getenv("DAILY_STATS_TABLE"),
+                Long.parseLong(System.getenv().getOrDefault("LIST_CACHE_REVISION_CHECK_SECONDS", "10")) * 1000);
+        AwsClients.registerPriming("ListFeedbacks", this::prime);
+    }
 
-        DynamoDbClientBuilder builder = DynamoDbClient.builder().region(region);
+    ListFeedbacksHandler(AwsClients clients) {
+        this(clients, null, 0);
+    }
 
-        if (endpoint != null && !endpoint.isEmpty()) {
-            builder.endpointOverride(URI.create(endpoint));
-        }
+    // Sem a tabela de agregados não há como saber de importações em janelas fechadas: todas as respostas usam o TTL
+    ListFeedbacksHandler(AwsClients clients, String statsTable, long revisionCheckMillis) {
+        this.clients = clients;
+        this.settledRevision = statsTable == null || statsTable.isEmpty() ? null
+                : new SettledRevision(clients.dynamoDb(), statsTable, revisionCheckMillis);
+    }
 
-        this.ddb = builder.build();
+    // Antes do snapshot: consultas reais numa janela vazia (chamada direta e API Gateway) e um item sintético
+    private void prime() {
+        Map<String, Object> window = Map.of("startDate", "1970-01-01T00:00:00Z", "endDate", "1970-01-01T00:00:01Z");
+        Map<String, AttributeValue> item = Map.of(
+                "pk", AttributeValue.builder().s(FeedbackKeys.LEGACY_PARTITION).build(),
+                "createdAt", AttributeValue.builder().s("1970-01-01T00:00:00Z").build(),
+                "nota", AttributeValue.builder().n("5").build(),
+                "urgency", AttributeValue.builder().s("baixa").build());
+        Map<String, Object> result = new HashMap<>(processRequest(window, null));
+        result.put("items", List.of(convertItem(item)));
+        createApiGatewayResponse(200, result);
+        try {
+            createApiGatewayResponse(200, pageBody(window));
+            jsonWriter.page(new FeedbackPage(List.of(item), null), DEFAULT_START_DATE, DEFAULT_END_DATE, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        metrics.discard();
     }
 
     @Override
     public Map<String, Object> handleRequest(Map<String, Object> event, Context context) {
+        long invocationStart = System.nanoTime();
         try {
             // Verificar se é uma chamada do API Gateway
             boolean isApiGateway = event.containsKey("httpMethod") || event.containsKey("requestContext");
@@ -50,7 +107,14 @@ public class ListFeedbacksHandler implements RequestHandler<Map<String, Object>,
                 queryParams = event;
             }
             
-            Map<String, Object> result = processRequest(queryParams);
+            if (isApiGateway && !"drain".equals(queryParams.get("mode"))) {
+                if (cache.enabled()) {
+                    return cachedApiGatewayResponse(queryParams, context);
+                }
+                return createApiGatewayResponse(200, pageBody(queryParams));
+            }
+
+            Map<String, Object> result = processRequest(queryParams, context);
             
             if (isApiGateway) {
                 // Retornar resposta no formato API Gateway
@@ -66,28 +130,188 @@ public class ListFeedbacksHandler implements RequestHandler<Map<String, Object>,
             } else {
                 throw new RuntimeException(e);
             }
+        } finally {
+            metrics.flush(context.getLogger());
+            AwsClients.logFirstInvocation(context.getLogger(), "ListFeedbacks", invocationStart);
         }
     }
     
-    private Map<String, Object> processRequest(Map<String, Object> queryParams) {
-        // Validar e definir valores padrão para parâmetros obrigatórios
-        String startDate = (String) queryParams.get("startDate");
-        String endDate = (String) queryParams.get("endDate");
+    /**
+     * Consulta de página única pelo API Gateway com cache do corpo JSON já serializado: num hit não há
+     * Query no DynamoDB, nem conversão dos itens, nem serialização.
+     */
+    private Map<String, Object> cachedApiGatewayResponse(Map<String, Object> queryParams, Context context) throws IOException {
+        if (settledRevision != null && settledRevision.changed()) {
+            context.getLogger().log("Cache: importação em janela fechada, " + cache.invalidateSettled() + " respostas descartadas\n");
+        }
+        String key = cacheKey(queryParams);
+        String body = cache.get(key);
+        boolean hit = body != null;
+        if (!hit) {
+            body = pageBody(queryParams);
+            cache.put(key, body, settledRevision != null && isSettled(paramOrDefault(queryParams, "endDate", DEFAULT_END_DATE))
+                    ? QueryResultCache.NO_EXPIRY : cacheTtlMillis);
+        }
+        context.getLogger().log("Cache " + (hit ? "hit" : "miss") + ": " + cache.stats() + "\n");
+        return createApiGatewayResponse(200, body);
+    }
+
+    // Tupla normalizada: parâmetros vazios contam como ausentes e o token é ordenado por chave
+    // (urgency mantém maiúsculas/minúsculas, a consulta no DynamoDB diferencia)
+    private static String cacheKey(Map<String, Object> queryParams) {
+        Object token = queryParams.get("nextToken");
+        if (token instanceof Map<?, ?> map) {
+            token = map.isEmpty() ? null : new TreeMap<>(map);
+        }
+        return normalize(queryParams.get("startDate")) + '|' + normalize(queryParams.get("endDate")) + '|'
+                + normalize(queryParams.get("urgency")) + '|' + normalize(queryParams.get("slices")) + '|'
+                + normalize(token);
+    }
+
+    private static String normalize(Object value) {
+        return value == null ? "" : value.toString().trim();
+    }
+
+    // Janela que terminou antes do corte só muda com uma importação de histórico, que avisa pela revisão
+    private static boolean isSettled(String endDate) {
+        return SettledRevision.settled(endDate);
+    }
+
+    // Página única para o API Gateway: JSON escrito direto dos itens do DynamoDB
+    private String pageBody(Map<String, Object> queryParams) throws IOException {
+        String startDate = paramOrDefault(queryParams, "startDate", DEFAULT_START_DATE);
+        String endDate = paramOrDefault(queryParams, "endDate", DEFAULT_END_DATE);
+        String urgency = (String) queryParams.get("urgency");
+        Map<String, Object> nextToken = (Map<String, Object>) queryParams.get("nextToken");
+
+        FeedbackPage page;
+        try (FeedbackPage.Source source = pageSource(startDate, endDate, urgency, sliceCount(queryParams, false))) {
+            page = source.fetch(nextToken != null && !nextToken.isEmpty() ? nextToken : null, pageSize);
+        }
+        long start = System.nanoTime();
+        String body = jsonWriter.page(page, startDate, endDate, urgency);
+        metrics.time(Metrics.SERIALIZATION, start);
+        return body;
+    }
+
+    // Valores padrão para parâmetros ausentes ou vazios
+    private static String paramOrDefault(Map<String, Object> queryParams, String name, String defaultValue) {
+        String value = (String) queryParams.get(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    private Map<String, Object> processRequest(Map<String, Object> queryParams, Context context) {
+        String startDate = paramOrDefault(queryParams, "startDate", DEFAULT_START_DATE);
+        String endDate = paramOrDefault(queryParams, "endDate", DEFAULT_END_DATE);
         String urgency = (String) queryParams.get("urgency");
         Map<String, Object> nextToken = (Map<String, Object>) queryParams.get("nextToken");
 
-        // Valores padrão se não fornecidos
-        if (startDate == null || startDate.isEmpty()) {
-            startDate = "2020-01-01T00:00:00Z";
+        // "days": os N dias inteiros que terminam no dia de endDate (padrão: hoje). É como a Step
+        // Function pede a semana do relatório, já que o ASL não faz conta com datas
+        Object days = queryParams.get("days");
+        if (days != null && !days.toString().isEmpty()) {
+            LocalDate endDay = FeedbackKeys.dayOf(paramOrDefault(queryParams, "endDate", Instant.now().toString()));
+            startDate = endDay.minusDays(Integer.parseInt(days.toString()) - 1) + "T00:00:00Z";
+            endDate = endDay + "T23:59:59Z";
         }
-        if (endDate == null || endDate.isEmpty()) {
-            endDate = "2030-12-31T23:59:59Z";
+
+        boolean drain = "drain".equals(queryParams.get("mode"));
+        FeedbackPage page;
+        // Fechar a origem para as leituras adiantadas assim que a página ou o drain terminar
+        try (FeedbackPage.Source source = pageSource(startDate, endDate, urgency, sliceCount(queryParams, drain))) {
+            if (drain) {
+                // "requireComplete": drain interrompido por orçamento vira erro em vez de um resultado parcial
+                boolean requireComplete = Boolean.parseBoolean(String.valueOf(queryParams.get("requireComplete")));
+                if ("s3".equals(queryParams.get("output"))) {
+                    return drainToBatchFile(source, nextToken, startDate, endDate, urgency, requireComplete, context);
+                }
+                return drainRequest(source, nextToken, startDate, endDate, urgency, requireComplete, context);
+            }
+
+            page = source.fetch(nextToken != null && !nextToken.isEmpty() ? nextToken : null, pageSize);
         }
 
+        Map<String, Object> result = new HashMap<>();
+        result.put("count", page.items().size());
+        
+        // Convert DynamoDB items to readable format
+        long start = System.nanoTime();
+        List<Map<String, Object>> responseItems = new ArrayList<>();
+        for (Map<String, AttributeValue> item : page.items()) {
+            responseItems.add(convertItem(item));
+        }
+        metrics.time(Metrics.CONVERSION, start);
+        
+        result.put("items", responseItems);
+        result.put("nextToken", page.nextToken());
+        result.put("startDate", startDate);
+        result.put("endDate", endDate);
+        result.put("urgency", urgency);
+
+        return result;
+    }
+
+    // Fatias de tempo pedidas: o parâmetro "slices" vale sempre; sem ele, SCAN_SLICES só no modo drain,
+    // que lê o período inteiro (numa página única da API as fatias seguintes seriam lidas à toa)
+    private int sliceCount(Map<String, Object> queryParams, boolean drain) {
+        Object slices = queryParams.get("slices");
+        if (slices != null && !slices.toString().isEmpty()) {
+            return Integer.parseInt(slices.toString());
+        }
+        return drain ? scanSlices : 0;
+    }
+
+    // Com urgency a consulta vai para o GSI (urgencyDay, createdAt), se configurado. Sem urgency, SHARD_COUNT > 0
+    // liga o esquema particionado (FEEDBACK#<dia>#<n>) e 0 mantém a partição única "FEEDBACK", lida em
+    // fatias de tempo paralelas quando slices > 1 e o período tem mais de um dia
+    private FeedbackPage.Source pageSource(String startDate, String endDate, String urgency, int slices) {
+        boolean filtered = urgency != null && !urgency.isEmpty();
+        if (filtered && !urgencyIndex.isEmpty()) {
+            return new UrgencyIndexQuery(clients.dynamoDb(), metrics, tableName, urgencyIndex, startDate, endDate, urgency,
+                    maxDaysPerPage);
+        }
+        FeedbackPage.Source source;
+        boolean sliced = false;
+        if (shardCount > 0) {
+            source = new ShardedFeedbackQuery(clients.dynamoDb(), metrics, tableName, shardCount, startDate, endDate, urgency,
+                    maxDaysPerPage);
+        } else if (slices > 1 && TimeSlicedFeedbackQuery.days(startDate, endDate) > 1) {
+            source = new TimeSlicedFeedbackQuery(clients.dynamoDb(), metrics, tableName, startDate, endDate, urgency,
+                    slices, scanConcurrency, scanPrefetchPages);
+            sliced = true;
+        } else {
+            source = (token, limit) -> {
+                QueryRequest.Builder queryBuilder = buildQuery(startDate, endDate, urgency).limit(limit);
+                if (token != null) {
+                    queryBuilder.exclusiveStartKey(convertMap(token));
+                }
+                QueryResponse response = metrics.query(clients.dynamoDb(), queryBuilder.build());
+                return new FeedbackPage(response.items(),
+                        response.lastEvaluatedKey().isEmpty() ? null : toToken(response.lastEvaluatedKey()));
+            };
+        }
+        boolean slicedSource = sliced;
+        FeedbackPage.Source query = source;
+        return new FeedbackPage.Source() {
+            @Override
+            public FeedbackPage fetch(Map<String, Object> token, int limit) {
+                UrgencyIndexQuery.requireIndex(token, null);
+                TimeSlicedFeedbackQuery.requireSliced(token, slicedSource);
+                return query.fetch(token, limit);
+            }
+
+            @Override
+            public void close() {
+                query.close();
+            }
+        };
+    }
+
+    private QueryRequest.Builder buildQuery(String startDate, String endDate, String urgency) {
         Map<String, AttributeValue> exprValues = new HashMap<>();
-        exprValues.put(":pk", AttributeValue.builder().s("FEEDBACK").build());
+        exprValues.put(":pk", AttributeValue.builder().s(FeedbackKeys.LEGACY_PARTITION).build());
         exprValues.put(":start", AttributeValue.builder().s(startDate).build());
-        exprValues.put(":end", AttributeValue.builder().s(endDate).build());
+        exprValues.put(":end", AttributeValue.builder().s(FeedbackKeys.upperBound(endDate)).build());
 
         QueryRequest.Builder queryBuilder = QueryRequest.builder()
                 .tableName(tableName)
@@ -99,36 +323,150 @@ public class ListFeedbacksHandler implements RequestHandler<Map<String, Object>,
             queryBuilder.filterExpression("urgency = :urgency");
         }
 
-        queryBuilder.expressionAttributeValues(exprValues);
+        return queryBuilder.expressionAttributeValues(exprValues);
+    }
 
-        if (nextToken != null && !nextToken.isEmpty()) {
-            queryBuilder.exclusiveStartKey(convertMap(nextToken));
-        }
+    // Modo "drain": segue o token de continuação até o fim do período ou até estourar algum orçamento. Os itens
+    // voltam na resposta, então o orçamento de bytes é no máximo DRAIN_INLINE_MAX_BYTES; períodos maiores
+    // vêm com truncated e nextToken, ou vão inteiros para o S3 com output=s3
+    private Map<String, Object> drainRequest(FeedbackPage.Source source, Map<String, Object> nextToken,
+                                             String startDate, String endDate, String urgency,
+                                             boolean requireComplete, Context context) {
+        long deadline = System.currentTimeMillis() + context.getRemainingTimeInMillis() - drainTimeMarginMillis;
+        FeedbackDrainer drainer = new FeedbackDrainer(drainPageSize, drainMaxItems, Math.min(drainMaxBytes, drainInlineMaxBytes),
+                deadline);
+
+        // Conversão somada item a item: o drain intercala conversão e espera pelas páginas
+        List<Map<String, Object>> responseItems = new ArrayList<>();
+        long[] conversionNanos = {0};
+        FeedbackDrainer.Result drained = drainer.drain(source,
+                nextToken != null && !nextToken.isEmpty() ? nextToken : null,
+                item -> {
+                    long start = System.nanoTime();
+                    responseItems.add(convertItem(item));
+                    conversionNanos[0] += System.nanoTime() - start;
+                });
+        metrics.timeNanos(Metrics.CONVERSION, conversionNanos[0]);
 
-        QueryResponse response = ddb.query(queryBuilder.build());
+        context.getLogger().log("Drain: " + drained.items() + " itens, " + drained.bytes() + " bytes, "
+                + drained.pages() + " páginas" + (drained.exhausted() ? "" : " (interrompido por orçamento)") + "\n");
+        requireExhausted(drained, requireComplete, startDate, endDate);
 
         Map<String, Object> result = new HashMap<>();
-        result.put("count", response.count());
-        
-        // Convert DynamoDB items to readable format
-        List<Map<String, Object>> responseItems = new ArrayList<>();
-        for (Map<String, AttributeValue> item : response.items()) {
-            Map<String, Object> convertedItem = new HashMap<>();
-            for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
-                convertedItem.put(entry.getKey(), convertAttributeValue(entry.getValue()));
-            }
-            responseItems.add(convertedItem);
-        }
-        
+        result.put("count", responseItems.size());
         result.put("items", responseItems);
-        result.put("nextToken", response.lastEvaluatedKey().isEmpty() ? null : response.lastEvaluatedKey());
+        result.put("truncated", !drained.exhausted());
+        result.put("nextToken", drained.nextToken());
         result.put("startDate", startDate);
         result.put("endDate", endDate);
         result.put("urgency", urgency);
-
         return result;
     }
 
+    /**
+     * Drain gravando direto num lote colunar em /tmp, enviado depois ao bucket de relatórios.
+     * Só a chave do objeto volta na resposta, o que mantém o estado da Step Function pequeno.
+     */
+    private Map<String, Object> drainToBatchFile(FeedbackPage.Source source, Map<String, Object> nextToken,
+                                                 String startDate, String endDate, String urgency,
+                                                 boolean requireComplete, Context context) {
+        long deadline = System.currentTimeMillis() + context.getRemainingTimeInMillis() - drainTimeMarginMillis;
+        FeedbackDrainer drainer = new FeedbackDrainer(drainPageSize, drainMaxItems, drainMaxBytes, deadline);
+
+        Path file = null;
+        try {
+            file = Files.createTempFile("feedbacks-", ".fbk");
+            FeedbackDrainer.Result drained;
+            long[] conversionNanos = {0};
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(file), digest);
+                 FeedbackBatchWriter writer = new FeedbackBatchWriter(out)) {
+                drained = drainer.drain(source,
+                        nextToken != null && !nextToken.isEmpty() ? nextToken : null,
+                        item -> {
+                            long start = System.nanoTime();
+                            try {
+                                writer.write(FeedbackKeys.createdAtOf(stringOf(item.get("createdAt"))), stringOf(item.get("nota")),
+                                        stringOf(item.get("urgency")), stringOf(item.get("descricao")));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            conversionNanos[0] += System.nanoTime() - start;
+                        });
+            }
+            metrics.timeNanos(Metrics.CONVERSION, conversionNanos[0]);
+            // Lote parcial não chega ao bucket
+            requireExhausted(drained, requireComplete, startDate, endDate);
+
+            // Chave pelo SHA-256 do conteúdo: execuções repetidas ou janelas com os mesmos feedbacks caem no
+            // mesmo lote, e a Lambda B reaproveita o relatório (ReportFingerprint)
+            String batchKey = BATCH_PREFIX + HexFormat.of().formatHex(digest.digest()) + ".fbk";
+            long size = Files.size(file);
+            long putStart = System.nanoTime();
+            clients.s3().putObject(PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(batchKey)
+                    .contentType("application/octet-stream")
+                    .build(),
+                RequestBody.fromFile(file));
+            metrics.time(Metrics.S3_PUT, putStart);
+            metrics.bytes(Metrics.S3_PUT_BYTES, size);
+
+            context.getLogger().log("Drain: " + drained.items() + " itens em " + drained.pages() + " páginas, lote de "
+                    + size + " bytes salvo em " + bucketName + "/" + batchKey
+                    + (drained.exhausted() ? "" : " (interrompido por orçamento)") + "\n");
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("count", drained.items());
+            result.put("batchKey", batchKey);
+            result.put("batchBytes", size);
+            result.put("truncated", !drained.exhausted());
+            result.put("nextToken", drained.nextToken());
+            result.put("startDate", startDate);
+            result.put("endDate", endDate);
+            result.put("urgency", urgency);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (file != null) {
+                file.toFile().delete();
+            }
+        }
+    }
+
+    private static void requireExhausted(FeedbackDrainer.Result drained, boolean requireComplete, String startDate, String endDate) {
+        if (requireComplete && !drained.exhausted()) {
+            throw new IllegalStateException("Drain de " + startDate + " a " + endDate + " interrompido por orçamento depois de "
+                    + drained.items() + " itens e " + drained.bytes() + " bytes (DRAIN_MAX_ITEMS, DRAIN_MAX_BYTES, DRAIN_INLINE_MAX_BYTES sem output=s3 ou o timeout da Lambda)");
+        }
+    }
+
+    private static String stringOf(AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        return value.s() != null ? value.s() : value.n();
+    }
+
+    private Map<String, Object> convertItem(Map<String, AttributeValue> item) {
+        Map<String, Object> convertedItem = new HashMap<>();
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            convertedItem.put(entry.getKey(), convertAttributeValue(entry.getValue()));
+        }
+        convertedItem.computeIfPresent("createdAt", (k, v) -> FeedbackKeys.createdAtOf(v.toString()));
+        return convertedItem;
+    }
+
+    // Chaves do DynamoDB são sempre strings nesta tabela; o token volta por convertMap
+    private Map<String, Object> toToken(Map<String, AttributeValue> key) {
+        Map<String, Object> token = new HashMap<>();
+        key.forEach((k, v) -> token.put(k, v.s()));
+        return token;
+    }
+
     private Map<String, AttributeValue> convertMap(Map<String, Object> input) {
         Map<String, AttributeValue> output = new HashMap<>();
         for (Map.Entry<String, Object> entry : input.entrySet()) {
@@ -156,6 +494,7 @@ public class ListFeedbacksHandler implements RequestHandler<Map<String, Object>,
         return value.toString();
     }
     
+    // body pode ser um objeto a serializar ou uma String com o JSON já pronto (vindo do cache)
     private Map<String, Object> createApiGatewayResponse(int statusCode, Object body) {
         Map<String, Object> response = new HashMap<>();
         response.put("statusCode", statusCode);
@@ -166,7 +505,7 @@ public class ListFeedbacksHandler implements RequestHandler<Map<String, Object>,
         response.put("headers", headers);
         
         try {
-            response.put("body", mapper.writeValueAsString(body));
+            response.put("body", body instanceof String json ? json : mapper.writeValueAsString(body));
         } catch (Exception e) {
             response.put("body", "{\"error\": \"Failed to serialize response\"}");
         }
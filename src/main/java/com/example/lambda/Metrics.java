@@ -0,0 +1,232 @@
+package com.example.lambda;
+
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import org.HdrHistogram.Histogram;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Métricas de uma invocação, emitidas no fim como uma linha JSON no Embedded Metric Format
+ * (EMF) do CloudWatch: o CloudWatch Logs extrai as métricas da linha, sem chamar PutMetricData.
+ *
+ * Tempos vão para um HdrHistogram por nome (em microssegundos, 2 dígitos significativos); quando
+ * o tempo foi medido mais de uma vez na invocação (várias Query, vários SendEmail) saem também
+ * P50, P99 e Max. Contadores são somados. Os histogramas são criados uma vez por container e
+ * zerados a cada flush, então medir custa um System.nanoTime() e uma gravação O(1).
+ *
+ * Pode ser usado por várias threads (fan-out de shards, envio em paralelo).
+ */
+final class Metrics {
+
+    static final String DYNAMO_QUERY = "DynamoQueryLatency";
+    static final String DYNAMO_READ_CAPACITY = "DynamoReadCapacity";
+    static final String ITEMS_SCANNED = "ItemsScanned";
+    static final String ITEMS_RETURNED = "ItemsReturned";
+    static final String DYNAMO_BATCH_WRITE = "DynamoBatchWriteLatency";
+    static final String DYNAMO_WRITE_CAPACITY = "DynamoWriteCapacity";
+    static final String ITEMS_WRITTEN = "ItemsWritten";
+    static final String ITEMS_REJECTED = "ItemsRejected";
+    static final String CONVERSION = "ConversionTime";
+    static final String SERIALIZATION = "SerializationTime";
+    static final String REPORT_BUILD = "ReportBuildTime";
+    static final String S3_PUT = "S3PutLatency";
+    static final String S3_PUT_BYTES = "S3PutBytes";
+    static final String S3_GET = "S3GetLatency";
+    static final String S3_GET_BYTES = "S3GetBytes";
+    static final String SES_SEND = "SesSendLatency";
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final long MAX_MICROS = 15 * 60 * 1_000_000L;
+
+    private final String function;
+    private final String namespace = System.getenv().getOrDefault("METRICS_NAMESPACE", "FeedbackReportSystem");
+    private final boolean enabled = Boolean.parseBoolean(System.getenv().getOrDefault("METRICS_ENABLED", "true"));
+
+    private final Map<String, Histogram> timers = new LinkedHashMap<>();
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+
+    Metrics(String function) {
+        this.function = function;
+    }
+
+    private static final class Counter {
+        final String unit;
+        double value;
+        boolean recorded;
+
+        Counter(String unit) {
+            this.unit = unit;
+        }
+    }
+
+    // Tempo desde "startNanos" (valor de System.nanoTime())
+    void time(String name, long startNanos) {
+        timeNanos(name, System.nanoTime() - startNanos);
+    }
+
+    // Duração já medida, por exemplo somada item a item num laço
+    void timeNanos(String name, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        long micros = Math.min(MAX_MICROS, Math.max(0, nanos / 1_000));
+        synchronized (this) {
+            timers.computeIfAbsent(name, n -> new Histogram(MAX_MICROS, 2)).recordValue(micros);
+        }
+    }
+
+    void count(String name, double value) {
+        add(name, value, "Count");
+    }
+
+    void bytes(String name, long value) {
+        add(name, value, "Bytes");
+    }
+
+    private synchronized void add(String name, double value, String unit) {
+        if (!enabled) {
+            return;
+        }
+        Counter counter = counters.computeIfAbsent(name, n -> new Counter(unit));
+        counter.value += value;
+        counter.recorded = true;
+    }
+
+    /**
+     * Query no DynamoDB com ReturnConsumedCapacity=TOTAL: mede a latência, as RCUs consumidas e
+     * itens lidos (ScannedCount) contra itens devolvidos depois do filterExpression (Count).
+     */
+    QueryResponse query(DynamoDbClient ddb, QueryRequest request) {
+        if (!enabled) {
+            return ddb.query(request);
+        }
+        long start = System.nanoTime();
+        QueryResponse response = ddb.query(request.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build());
+        time(DYNAMO_QUERY, start);
+        if (response.consumedCapacity() != null && response.consumedCapacity().capacityUnits() != null) {
+            count(DYNAMO_READ_CAPACITY, response.consumedCapacity().capacityUnits());
+        }
+        count(ITEMS_SCANNED, response.scannedCount() != null ? response.scannedCount() : response.items().size());
+        count(ITEMS_RETURNED, response.count() != null ? response.count() : response.items().size());
+        return response;
+    }
+
+    /**
+     * BatchWriteItem com ReturnConsumedCapacity=TOTAL: mede a latência e as WCUs consumidas.
+     */
+    BatchWriteItemResponse batchWrite(DynamoDbClient ddb, BatchWriteItemRequest request) {
+        if (!enabled) {
+            return ddb.batchWriteItem(request);
+        }
+        long start = System.nanoTime();
+        BatchWriteItemResponse response = ddb.batchWriteItem(request.toBuilder().returnConsumedCapacity(ReturnConsumedCapacity.TOTAL).build());
+        time(DYNAMO_BATCH_WRITE, start);
+        if (response.hasConsumedCapacity()) {
+            for (ConsumedCapacity capacity : response.consumedCapacity()) {
+                if (capacity.capacityUnits() != null) {
+                    count(DYNAMO_WRITE_CAPACITY, capacity.capacityUnits());
+                }
+            }
+        }
+        return response;
+    }
+
+    // Descarta o que foi medido (priming do SnapStart não é uma invocação)
+    synchronized void discard() {
+        timers.values().forEach(Histogram::reset);
+        counters.values().forEach(counter -> {
+            counter.value = 0;
+            counter.recorded = false;
+        });
+    }
+
+    /**
+     * Escreve a linha EMF com o que foi medido desde o último flush e zera tudo. Sem medições, não escreve nada.
+     */
+    void flush(LambdaLogger logger) {
+        String line;
+        synchronized (this) {
+            line = enabled ? toEmf(System.currentTimeMillis()) : null;
+            discard();
+        }
+        if (line != null) {
+            logger.log(line + "\n");
+        }
+    }
+
+    // Nomes e valores, na ordem em que entram no JSON; null quando não há nada medido
+    String toEmf(long timestamp) {
+        Map<String, Object[]> values = new LinkedHashMap<>();
+        timers.forEach((name, histogram) -> {
+            long samples = histogram.getTotalCount();
+            if (samples == 0) {
+                return;
+            }
+            if (samples == 1) {
+                values.put(name, new Object[] {"Milliseconds", histogram.getMaxValue() / 1000.0});
+                return;
+            }
+            values.put(name + "P50", new Object[] {"Milliseconds", histogram.getValueAtPercentile(50) / 1000.0});
+            values.put(name + "P99", new Object[] {"Milliseconds", histogram.getValueAtPercentile(99) / 1000.0});
+            values.put(name + "Max", new Object[] {"Milliseconds", histogram.getMaxValue() / 1000.0});
+            values.put(name + "Count", new Object[] {"Count", (double) samples});
+        });
+        counters.forEach((name, counter) -> {
+            if (counter.recorded) {
+                values.put(name, new Object[] {counter.unit, counter.value});
+            }
+        });
+        if (values.isEmpty()) {
+            return null;
+        }
+
+        StringWriter out = new StringWriter(512);
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("_aws");
+            json.writeNumberField("Timestamp", timestamp);
+            json.writeArrayFieldStart("CloudWatchMetrics");
+            json.writeStartObject();
+            json.writeStringField("Namespace", namespace);
+            json.writeArrayFieldStart("Dimensions");
+            json.writeStartArray();
+            json.writeString("Function");
+            json.writeEndArray();
+            json.writeEndArray();
+            json.writeArrayFieldStart("Metrics");
+            for (Map.Entry<String, Object[]> entry : values.entrySet()) {
+                json.writeStartObject();
+                json.writeStringField("Name", entry.getKey());
+                json.writeStringField("Unit", (String) entry.getValue()[0]);
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeStringField("Function", function);
+            for (Map.Entry<String, Object[]> entry : values.entrySet()) {
+                json.writeNumberField(entry.getKey(), (Double) entry.getValue()[1]);
+            }
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+}
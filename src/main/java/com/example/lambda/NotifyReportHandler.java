@@ -4,66 +4,83 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.S3ClientBuilder;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
 
-import software.amazon.awssdk.services.ses.SesClient;
 import software.amazon.awssdk.services.ses.model.*;
 
-import java.net.URI;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class NotifyReportHandler implements RequestHandler<Map<String, Object>, String> {
 
-    private final S3Client s3;
-    private final SesClient ses;
-    private final String bucketName;
-    private final String recipientEmail;
-    private final String sourceEmail;
+    private static final DateTimeFormatter EXPIRY = DateTimeFormatter.ofPattern("dd/MM/yyyy 'às' HH:mm 'UTC'").withZone(ZoneOffset.UTC);
+
+    private final AwsClients clients;
+    private final String bucketName = System.getenv("REPORTS_BUCKET");
+    private final String recipientEmail = System.getenv("RECIPIENT_EMAIL");
+    private final String recipientsKey = System.getenv("RECIPIENTS_KEY");
+    private final String sourceEmail = System.getenv().getOrDefault("SOURCE_EMAIL", "no-reply@seu-dominio-validado.com");
+    private final int recipientsPerEmail = Integer.parseInt(System.getenv().getOrDefault("RECIPIENTS_PER_EMAIL", "50"));
+    private final int sendConcurrency = Integer.parseInt(System.getenv().getOrDefault("SES_MAX_CONCURRENCY", "8"));
+    private final int sendMaxAttempts = Integer.parseInt(System.getenv().getOrDefault("SES_MAX_ATTEMPTS", "5"));
+    private final long inlineMaxBytes = Long.parseLong(System.getenv().getOrDefault("INLINE_REPORT_MAX_BYTES", "262144"));
+    private final Duration linkTtl;
+    private final TokenBucket sendLimiter;
+    private final Metrics metrics = new Metrics("NotifyReport");
 
     public NotifyReportHandler() {
-        String s3Endpoint = System.getenv("S3_ENDPOINT");
-        String accessKey = System.getenv("AWS_ACCESS_KEY_ID");
-        String secretKey = System.getenv("AWS_SECRET_ACCESS_KEY");
-        
-        S3ClientBuilder builder = S3Client.builder();
-        
-        if (s3Endpoint != null && !s3Endpoint.isEmpty()) {
-            // MinIO ou S3 local
-            builder.endpointOverride(URI.create(s3Endpoint))
-                   .forcePathStyle(true)
-                   .region(Region.US_EAST_1);
-            
-            if (accessKey != null && secretKey != null) {
-                AwsBasicCredentials credentials = AwsBasicCredentials.create(accessKey, secretKey);
-                builder.credentialsProvider(StaticCredentialsProvider.create(credentials));
-            }
-        } else {
-            // AWS S3 em produção - usar credenciais padrão
-            String regionEnv = System.getenv("AWS_REGION");
-            Region region = regionEnv != null ? Region.of(regionEnv) : Region.US_EAST_1;
-            builder.region(region);
-        }
-        
-        this.s3 = builder.build();
-        this.ses = SesClient.create();
-        this.bucketName = System.getenv("REPORTS_BUCKET");
-        this.recipientEmail = System.getenv("RECIPIENT_EMAIL");
-        this.sourceEmail = System.getenv("SOURCE_EMAIL") != null ? System.getenv("SOURCE_EMAIL") : "no-reply@seu-dominio-validado.com";
+        this(AwsClients.shared());
+        AwsClients.registerPriming("NotifyReport", this::prime);
+    }
+
+    NotifyReportHandler(AwsClients clients) {
+        this(clients, Double.parseDouble(System.getenv().getOrDefault("SES_MAX_SEND_RATE", "14")));
+    }
+
+    NotifyReportHandler(AwsClients clients, double sendRate) {
+        this(clients, sendRate, linkTtl(System.getenv()));
+    }
+
+    NotifyReportHandler(AwsClients clients, double sendRate, Duration linkTtl) {
+        this.clients = clients;
+        this.linkTtl = linkTtl;
+        // Rajada de no máximo um segundo da cota: um lote maior que isso espera os tokens que faltam
+        // antes de sair, já que cada lote consome um token por destinatário
+        this.sendLimiter = new TokenBucket(sendRate, (int) Math.ceil(sendRate));
+    }
+
+    // Antes do snapshot: carrega os marshallers de S3 e SES sem enviar e-mail
+    private void prime() {
+        clients.s3().headBucket(HeadBucketRequest.builder().bucket(bucketName).build());
+        buildEmail(List.of(sourceEmail), "Priming");
+        clients.ses().getIdentityVerificationAttributes(GetIdentityVerificationAttributesRequest.builder()
+            .identities(sourceEmail)
+            .build());
+        metrics.discard();
     }
 
     @Override
     public String handleRequest(Map<String, Object> input, Context context) {
+        long invocationStart = System.nanoTime();
         LambdaLogger logger = context.getLogger();
         logger.log("Iniciando envio do relatório por e-mail...\n");
-        logger.log("RECIPIENT_EMAIL: " + recipientEmail + "\n");
         logger.log("SOURCE_EMAIL: " + sourceEmail + "\n");
         logger.log("BUCKET: " + bucketName + "\n");
 
@@ -74,42 +91,206 @@ public class NotifyReportHandler implements RequestHandler<Map<String, Object>,
                 throw new IllegalArgumentException("reportKey is required");
             }
 
-            ResponseBytes<GetObjectResponse> objectBytes = s3.getObject(
-                GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(objectKey)
-                    .build(),
-                ResponseTransformer.toBytes()
-            );
-
-            String reportContent = objectBytes.asUtf8String();
+            List<String> recipients = recipients(input);
+            if (recipients.isEmpty()) {
+                throw new IllegalArgumentException("Nenhum destinatário configurado (RECIPIENT_EMAIL ou RECIPIENTS_KEY)");
+            }
+            // Quem já recebeu numa tentativa anterior do passo não recebe de novo
+            Set<String> delivered = delivered(objectKey);
+            List<String> pending = recipients.stream().filter(recipient -> !delivered.contains(recipient)).toList();
+            logger.log("Destinatários: " + recipients.size() + " (" + (recipients.size() - pending.size()) + " já receberam)\n");
+            if (pending.isEmpty()) {
+                return "Relatório já enviado para os " + recipients.size() + " destinatários";
+            }
 
-            // Montar e enviar e-mail via SES
-            SendEmailRequest emailRequest = SendEmailRequest.builder()
-                .destination(Destination.builder()
-                    .toAddresses(recipientEmail)
-                    .build())
-                .message(Message.builder()
-                    .subject(Content.builder()
-                        .data("Relatório semanal de feedbacks")
-                        .build())
-                    .body(Body.builder()
-                        .text(Content.builder()
-                            .data(reportContent.toString())
-                            .build())
+            // Relatórios grandes vão como link pré-assinado, sem baixar o conteúdo; relatórios por
+            // seções levam o resumo, lido por faixa, e o link
+            long s3Start = System.nanoTime();
+            String body;
+            if (SectionedReport.isSectioned(objectKey)) {
+                body = sectionedBody(objectKey);
+                logger.log("Relatório por seções: resumo lido por faixa, relatório completo como link\n");
+            } else {
+                long size = clients.s3().headObject(HeadObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(objectKey)
                         .build())
-                    .build())
-                .source(sourceEmail)
-                .build();
+                    .contentLength();
+                if (size > inlineMaxBytes) {
+                    body = linkBody(objectKey, size);
+                    logger.log("Relatório com " + size + " bytes (limite " + inlineMaxBytes + "): enviando link pré-assinado\n");
+                } else {
+                    body = clients.s3().getObject(GetObjectRequest.builder()
+                            .bucket(bucketName)
+                            .key(objectKey)
+                            .build(),
+                        ResponseTransformer.toBytes())
+                        .asUtf8String();
+                    metrics.bytes(Metrics.S3_GET_BYTES, size);
+                }
+            }
+            metrics.time(Metrics.S3_GET, s3Start);
 
-            ses.sendEmail(emailRequest);
+            // Cliente SES criado só aqui, depois das validações
+            EmailDelivery delivery = new EmailDelivery(clients.ses(), sendLimiter, sendConcurrency, sendMaxAttempts, 200, metrics);
+            long start = System.nanoTime();
+            EmailDelivery.Result result = delivery.deliver(EmailDelivery.batches(pending, recipientsPerEmail),
+                batch -> buildEmail(batch, body));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
 
-            logger.log("Relatório enviado para: " + recipientEmail + "\n");
-            return "Relatório enviado com sucesso para " + recipientEmail;
+            logger.log("Relatório enviado para " + result.sent() + " de " + pending.size() + " destinatários em "
+                + elapsedMillis + " ms (" + result.retries() + " retentativas por throttling)\n");
+            if (result.sent() > 0) {
+                Set<String> failed = new HashSet<>(result.failed());
+                pending.stream().filter(recipient -> !failed.contains(recipient)).forEach(delivered::add);
+                recordDelivered(objectKey, delivered);
+            }
+            // Falha parcial derruba o passo para o Step Functions repetir: a nova tentativa só envia
+            // para quem ficou sem o e-mail
+            if (!result.failed().isEmpty()) {
+                logger.log("Falha no envio para " + result.failed().size() + " destinatários: " + result.failed()
+                    + " (último erro: " + result.lastError() + ")\n");
+                throw new IllegalStateException("Envio parcial: " + result.failed().size() + " de " + recipients.size()
+                    + " destinatários sem o e-mail (último erro: " + result.lastError() + ")");
+            }
+            return "Relatório enviado com sucesso para " + delivered.size() + " de " + recipients.size() + " destinatários";
 
         } catch (Exception e) {
             logger.log("Erro ao enviar relatório: " + e.getMessage() + "\n");
             throw new RuntimeException(e);
+        } finally {
+            metrics.flush(logger);
+            AwsClients.logFirstInvocation(logger, "NotifyReport", invocationStart);
+        }
+    }
+
+    /**
+     * RECIPIENT_EMAIL (separados por vírgula) mais o objeto RECIPIENTS_KEY do bucket, se houver
+     * (um endereço por linha, "#" inicia comentário). O evento pode trocar o objeto com "recipientsKey".
+     * Duplicados são removidos mantendo a ordem.
+     */
+    private List<String> recipients(Map<String, Object> input) {
+        Set<String> recipients = new LinkedHashSet<>();
+        if (recipientEmail != null) {
+            addAddresses(recipients, recipientEmail);
+        }
+        Object key = input.get("recipientsKey") != null ? input.get("recipientsKey") : recipientsKey;
+        if (key != null && !key.toString().isEmpty()) {
+            String list = clients.s3().getObject(GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key.toString())
+                    .build(),
+                ResponseTransformer.toBytes())
+                .asUtf8String();
+            for (String line : list.split("\n")) {
+                int comment = line.indexOf('#');
+                addAddresses(recipients, comment >= 0 ? line.substring(0, comment) : line);
+            }
+        }
+        return new ArrayList<>(recipients);
+    }
+
+    // Registro de entrega por relatório: um endereço por linha, ao lado do relatório no bucket
+    private static String deliveredKey(String objectKey) {
+        return "deliveries/" + objectKey + ".sent";
+    }
+
+    private Set<String> delivered(String objectKey) {
+        Set<String> delivered = new LinkedHashSet<>();
+        try {
+            String list = clients.s3().getObject(GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(deliveredKey(objectKey))
+                    .build(),
+                ResponseTransformer.toBytes())
+                .asUtf8String();
+            addAddresses(delivered, list);
+        } catch (NoSuchKeyException e) {
+            // Primeira tentativa para este relatório
+        }
+        return delivered;
+    }
+
+    private void recordDelivered(String objectKey, Set<String> delivered) {
+        clients.s3().putObject(PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(deliveredKey(objectKey))
+                .contentType("text/plain; charset=utf-8")
+                .build(),
+            RequestBody.fromString(String.join("\n", delivered) + "\n"));
+    }
+
+    private static void addAddresses(Set<String> recipients, String text) {
+        for (String address : text.split("[,;\\s]+")) {
+            if (!address.isEmpty()) {
+                recipients.add(address);
+            }
         }
     }
+
+    // Só o índice e as seções de resumo (dois GETs com Range); os detalhes ficam no link
+    private String sectionedBody(String objectKey) throws IOException {
+        SectionedReport.Index index = SectionedReport.readIndex(clients.s3(), bucketName, objectKey);
+        List<SectionedReport.Section> summary = index.sections().stream()
+            .filter(section -> !SectionedReport.DETAILS.equals(section.name()))
+            .toList();
+        SectionedReport.Section first = summary.get(0);
+        SectionedReport.Section last = summary.get(summary.size() - 1);
+        String text = SectionedReport.read(clients.s3(), bucketName, objectKey, first, last);
+        metrics.bytes(Metrics.S3_GET_BYTES, Math.min(SectionedReport.TAIL_BYTES, index.objectSize())
+            + last.offset() + last.length() - first.offset());
+        return text + "\n" + linkBody(objectKey, index.objectSize());
+    }
+
+    /**
+     * Validade do link. Assinado com credenciais temporárias (as da role, na Lambda), o link para de
+     * valer quando elas expiram, qualquer que seja a validade pedida, e o SDK não informa quando
+     * isso acontece: nesse caso a validade fica limitada a REPORT_LINK_SESSION_MAX_HOURS.
+     */
+    static Duration linkTtl(Map<String, String> env) {
+        Duration ttl = Duration.ofHours(Long.parseLong(env.getOrDefault("REPORT_LINK_TTL_HOURS", "24")));
+        boolean temporary = env.get("AWS_SESSION_TOKEN") != null || env.get("AWS_CONTAINER_CREDENTIALS_FULL_URI") != null;
+        if (!temporary) {
+            return ttl;
+        }
+        Duration max = Duration.ofHours(Long.parseLong(env.getOrDefault("REPORT_LINK_SESSION_MAX_HOURS", "1")));
+        return ttl.compareTo(max) > 0 ? max : ttl;
+    }
+
+    private String linkBody(String objectKey, long size) {
+        // O prazo é contado antes de assinar, então o link vale pelo menos até o horário informado
+        Instant expires = Instant.now().plus(linkTtl).truncatedTo(ChronoUnit.MINUTES);
+        String url = clients.presigner().presignGetObject(GetObjectPresignRequest.builder()
+                .signatureDuration(linkTtl)
+                .getObjectRequest(GetObjectRequest.builder().bucket(bucketName).key(objectKey).build())
+                .build())
+            .url()
+            .toString();
+        return "O relatório semanal de feedbacks (" + size / 1024 + " KB) está disponível para download em:\n\n"
+            + url + "\n\nO link expira em " + EXPIRY.format(expires) + ".\n";
+    }
+
+    // Um destinatário vai em "To"; lotes vão em "Bcc" para ninguém ver os demais endereços
+    private SendEmailRequest buildEmail(List<String> recipients, String body) {
+        Destination.Builder destination = Destination.builder();
+        if (recipients.size() == 1) {
+            destination.toAddresses(recipients);
+        } else {
+            destination.bccAddresses(recipients);
+        }
+        return SendEmailRequest.builder()
+            .destination(destination.build())
+            .message(Message.builder()
+                .subject(Content.builder()
+                    .data("Relatório semanal de feedbacks")
+                    .build())
+                .body(Body.builder()
+                    .text(Content.builder()
+                        .data(body)
+                        .build())
+                    .build())
+                .build())
+            .source(sourceEmail)
+            .build();
+    }
 }
@@ -0,0 +1,101 @@
+package com.example.lambda;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache LRU em memória das respostas já serializadas da Lambda A, limitado em número de entradas.
+ *
+ * Cada entrada tem seu próprio prazo: janelas que ainda podem receber feedbacks expiram pelo TTL,
+ * janelas totalmente no passado ficam até serem despejadas pelo LRU (NO_EXPIRY) ou descartadas
+ * quando uma importação grava nelas (invalidateSettled). Vive enquanto o container do Lambda
+ * estiver quente.
+ */
+final class QueryResultCache {
+
+    static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private record Entry(String body, long expiresAt) { }
+
+    QueryResultCache(int maxEntries) {
+        this(maxEntries, System::currentTimeMillis);
+    }
+
+    QueryResultCache(int maxEntries, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        // accessOrder = true: get() move a entrada para o fim, e a mais antiga sai primeiro
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > QueryResultCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    boolean enabled() {
+        return maxEntries > 0;
+    }
+
+    synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt() <= clock.getAsLong()) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.body();
+    }
+
+    // ttlMillis = NO_EXPIRY para janelas que não mudam mais
+    synchronized void put(String key, String body, long ttlMillis) {
+        if (!enabled()) {
+            return;
+        }
+        long expiresAt = ttlMillis == NO_EXPIRY ? NO_EXPIRY : clock.getAsLong() + ttlMillis;
+        entries.put(key, new Entry(body, expiresAt));
+    }
+
+    // Descarta as entradas sem prazo (janelas fechadas); devolve quantas saíram
+    synchronized int invalidateSettled() {
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.expiresAt() == NO_EXPIRY);
+        return before - entries.size();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    synchronized String stats() {
+        return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + entries.size();
+    }
+}
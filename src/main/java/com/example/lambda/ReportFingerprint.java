@@ -0,0 +1,71 @@
+package com.example.lambda;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+
+/**
+ * Hash SHA-256 do que determina o conteúdo de um relatório (período, fonte das estatísticas e
+ * feedbacks de entrada), usado na chave do objeto no S3. A mesma entrada gera a mesma chave, então
+ * uma repetição do passo ou um evento duplicado encontra o relatório pronto com um HEAD.
+ *
+ * Cada valor entra prefixado pelo tamanho, para "ab" + "c" não colidir com "a" + "bc".
+ */
+final class ReportFingerprint {
+
+    // Mudou o layout do relatório? Incrementar, para não reaproveitar relatórios antigos
+    private static final String FORMAT_VERSION = "1";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest;
+
+    ReportFingerprint(String statsSource, LocalDate startDay, LocalDate endDay) {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        add(FORMAT_VERSION).add(statsSource).add(startDay).add(endDay);
+    }
+
+    ReportFingerprint add(Object value) {
+        if (value == null) {
+            digest.update((byte) 0);
+            return this;
+        }
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) 1);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    // Estatísticas já calculadas (agregados diários), que mudam sem mudar a entrada do evento
+    ReportFingerprint add(FeedbackStats stats) {
+        add(stats.total()).add(stats.alta()).add(stats.media()).add(stats.baixa());
+        add(stats.mediaNotas().isPresent() ? Double.toString(stats.mediaNotas().getAsDouble()) : null);
+        stats.avaliacoesPorDia().forEach((day, count) -> add(day).add(count));
+        return this;
+    }
+
+    /**
+     * "weekly-report-{início}_{fim}-{16 hex do hash}.txt". Consome o hash; chamar uma vez só.
+     */
+    String objectKey(LocalDate startDay, LocalDate endDay) {
+        byte[] hash = digest.digest();
+        StringBuilder key = new StringBuilder("weekly-report-").append(startDay).append('_').append(endDay).append('-');
+        for (int i = 0; i < 8; i++) {
+            key.append(HEX[(hash[i] >>> 4) & 0xF]).append(HEX[hash[i] & 0xF]);
+        }
+        return key.append(".txt").toString();
+    }
+
+    // Chave de uma variante com o mesmo hash: "report-{variante}-{início}_{fim}-{hash}.txt"
+    static String variantKey(String objectKey, String variant) {
+        return "report-" + variant + "-" + objectKey.substring("weekly-report-".length());
+    }
+}
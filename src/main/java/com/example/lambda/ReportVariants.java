@@ -0,0 +1,220 @@
+package com.example.lambda;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Variantes do relatório acumuladas na mesma passada das estatísticas principais, sem reler a
+ * entrada: janela móvel dos 7 dias até endDay, mês de endDay até endDay, detalhamento por
+ * urgência e as topN maiores e menores notas.
+ *
+ * As notas extremas ficam em heaps limitados a topN: a maior nota do heap das menores (e vice-versa)
+ * é a primeira a sair, então a memória não cresce com a entrada. Empates de nota são desfeitos por
+ * createdAt e descrição, para a mesma entrada gerar o mesmo relatório em passadas paralelas.
+ * Dois acumuladores podem ser combinados, como o FeedbackStats.
+ *
+ * Com a tabela de agregados, a janela móvel e o mês vêm das linhas dos dias (fromAggregates) e
+ * não dos feedbacks, que só cobrem o período do relatório.
+ */
+final class ReportVariants {
+
+    static final String ROLLING = "rolling7";
+    static final String MONTHLY = "monthly";
+    static final String URGENCY = "urgency";
+    static final String EXTREMES = "extremes";
+    static final List<String> ALL = List.of(ROLLING, MONTHLY, URGENCY, EXTREMES);
+    static final List<String> URGENCIES = List.of("alta", "media", "baixa");
+
+    /**
+     * Um feedback guardado num dos heaps de notas extremas.
+     */
+    record Ranked(double nota, String notaText, String urgency, String createdAt, String descricao) {
+    }
+
+    private static final Comparator<Ranked> BY_NOTA = Comparator.comparingDouble(Ranked::nota)
+        .thenComparing(Ranked::createdAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(Ranked::descricao, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final Set<String> enabled;
+    private final LocalDate endDay;
+    private final int topN;
+    private final long rollingFirst;
+    private final long monthFirst;
+    private final long last;
+
+    private final FeedbackStats rolling;
+    private final FeedbackStats monthly;
+    private final FeedbackStats[] perUrgency = new FeedbackStats[URGENCIES.size()];
+    // Topo de "highest" é a menor das maiores; topo de "lowest" é a maior das menores
+    private final PriorityQueue<Ranked> highest;
+    private final PriorityQueue<Ranked> lowest;
+    private boolean windowsFromAggregates;
+
+    ReportVariants(Set<String> enabled, LocalDate endDay, int topN) {
+        for (String variant : enabled) {
+            if (!ALL.contains(variant)) {
+                throw new IllegalArgumentException("Variante de relatório desconhecida: " + variant + " (válidas: " + ALL + ")");
+            }
+        }
+        this.enabled = enabled;
+        this.endDay = endDay;
+        this.topN = Math.max(1, topN);
+        this.rollingFirst = endDay.minusDays(6).toEpochDay();
+        this.monthFirst = endDay.withDayOfMonth(1).toEpochDay();
+        this.last = endDay.toEpochDay();
+        this.rolling = new FeedbackStats(endDay.minusDays(6), endDay);
+        this.monthly = new FeedbackStats(endDay.withDayOfMonth(1), endDay);
+        for (int i = 0; i < perUrgency.length; i++) {
+            perUrgency[i] = new FeedbackStats();
+        }
+        this.highest = new PriorityQueue<>(this.topN + 1, BY_NOTA);
+        this.lowest = new PriorityQueue<>(this.topN + 1, BY_NOTA.reversed());
+    }
+
+    /**
+     * Variantes pedidas no evento (lista ou texto separado por vírgulas) ou, sem elas, na
+     * configuração; null quando nenhuma.
+     */
+    static ReportVariants requested(Object fromEvent, String configured, LocalDate endDay, int topN) {
+        Object source = fromEvent != null ? fromEvent : configured;
+        Set<String> names = new LinkedHashSet<>();
+        if (source instanceof List<?> list) {
+            list.forEach(name -> names.add(name.toString().trim()));
+        } else if (source != null) {
+            for (String name : source.toString().split(",")) {
+                names.add(name.trim());
+            }
+        }
+        names.remove("");
+        return names.isEmpty() ? null : new ReportVariants(names, endDay, topN);
+    }
+
+    // Acumulador vazio com a mesma configuração (um por pedaço numa passada paralela)
+    ReportVariants fresh() {
+        ReportVariants fresh = new ReportVariants(enabled, endDay, topN);
+        fresh.windowsFromAggregates = windowsFromAggregates;
+        return fresh;
+    }
+
+    // Primeiro dia que a janela móvel ou o mês precisam
+    LocalDate firstDay() {
+        return LocalDate.ofEpochDay(Math.min(rollingFirst, monthFirst));
+    }
+
+    /**
+     * Janela móvel e mês somados das linhas dos agregados diários; daqui em diante add() só
+     * alimenta urgência e notas extremas.
+     */
+    void fromAggregates(List<DailyAggregate> rows) {
+        windowsFromAggregates = true;
+        for (DailyAggregate row : rows) {
+            long day = LocalDate.parse(row.day()).toEpochDay();
+            if (day <= last && day >= rollingFirst) {
+                rolling.add(row);
+            }
+            if (day <= last && day >= monthFirst) {
+                monthly.add(row);
+            }
+        }
+    }
+
+    Set<String> enabled() {
+        return enabled;
+    }
+
+    LocalDate endDay() {
+        return endDay;
+    }
+
+    /**
+     * Mesmo caminho primitivo do FeedbackStats.add. Para as notas extremas, consultar ranks(nota)
+     * antes e só então montar o Ranked.
+     */
+    void add(String urgency, double nota, long epochDay) {
+        if (!windowsFromAggregates && epochDay != FeedbackStats.NO_DAY && epochDay <= last) {
+            if (epochDay >= rollingFirst) {
+                rolling.add(urgency, nota, epochDay);
+            }
+            if (epochDay >= monthFirst) {
+                monthly.add(urgency, nota, epochDay);
+            }
+        }
+        int index = urgency == null ? -1 : URGENCIES.indexOf(urgency);
+        if (index >= 0) {
+            perUrgency[index].add(urgency, nota, epochDay);
+        }
+    }
+
+    // A nota pode entrar em algum dos heaps? Notas ausentes ou inválidas (<= 0) ficam de fora
+    boolean ranks(double nota) {
+        if (nota <= 0 || !enabled.contains(EXTREMES)) {
+            return false;
+        }
+        return highest.size() < topN || lowest.size() < topN
+            || nota >= highest.peek().nota() || nota <= lowest.peek().nota();
+    }
+
+    void rank(Ranked feedback) {
+        offer(highest, feedback);
+        offer(lowest, feedback);
+    }
+
+    private void offer(PriorityQueue<Ranked> heap, Ranked feedback) {
+        if (heap.size() < topN) {
+            heap.add(feedback);
+        } else if (heap.comparator().compare(feedback, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(feedback);
+        }
+    }
+
+    ReportVariants combine(ReportVariants other) {
+        rolling.combine(other.rolling);
+        monthly.combine(other.monthly);
+        for (int i = 0; i < perUrgency.length; i++) {
+            perUrgency[i].combine(other.perUrgency[i]);
+        }
+        other.highest.forEach(feedback -> offer(highest, feedback));
+        other.lowest.forEach(feedback -> offer(lowest, feedback));
+        return this;
+    }
+
+    FeedbackStats rolling() {
+        return rolling;
+    }
+
+    FeedbackStats monthly() {
+        return monthly;
+    }
+
+    FeedbackStats urgency(String urgency) {
+        return perUrgency[URGENCIES.indexOf(urgency)];
+    }
+
+    LocalDate rollingFirstDay() {
+        return LocalDate.ofEpochDay(rollingFirst);
+    }
+
+    LocalDate monthFirstDay() {
+        return LocalDate.ofEpochDay(monthFirst);
+    }
+
+    // Maiores notas, da maior para a menor
+    List<Ranked> highest() {
+        List<Ranked> sorted = new ArrayList<>(highest);
+        sorted.sort(BY_NOTA.reversed());
+        return sorted;
+    }
+
+    // Menores notas, da menor para a maior
+    List<Ranked> lowest() {
+        List<Ranked> sorted = new ArrayList<>(lowest);
+        sorted.sort(BY_NOTA);
+        return sorted;
+    }
+}
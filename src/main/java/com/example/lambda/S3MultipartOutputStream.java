@@ -0,0 +1,174 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OutputStream que envia para o S3 em partes de tamanho fixo (multipart upload).
+ *
+ * Só uma parte fica em memória; quando enche, é enviada e o buffer é reaproveitado.
+ * Objetos menores que uma parte viram um único PutObject no close(). Em caso de erro,
+ * abort() descarta o upload para não deixar um relatório pela metade no bucket.
+ */
+final class S3MultipartOutputStream extends OutputStream {
+
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final S3Client s3;
+    private final String bucket;
+    private final String key;
+    private final String contentType;
+    private final String contentEncoding;
+    private final byte[] buffer;
+    private int position;
+    private long bytesWritten;
+    private long uploadNanos;
+
+    private String uploadId;
+    private final List<CompletedPart> parts = new ArrayList<>();
+    private boolean closed;
+
+    S3MultipartOutputStream(S3Client s3, String bucket, String key, String contentType, int partSize) {
+        this(s3, bucket, key, contentType, "utf-8", partSize);
+    }
+
+    // contentEncoding null não envia o cabeçalho (conteúdo binário ou já comprimido)
+    S3MultipartOutputStream(S3Client s3, String bucket, String key, String contentType, String contentEncoding, int partSize) {
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.key = key;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.buffer = new byte[Math.max(partSize, MIN_PART_SIZE)];
+    }
+
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    // Tempo gasto nas chamadas ao S3 (partes, PutObject e conclusão), separado do tempo de escrita
+    long uploadNanos() {
+        return uploadNanos;
+    }
+
+    int partCount() {
+        return uploadId == null ? (closed ? 1 : 0) : parts.size();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == buffer.length) {
+            uploadPart();
+        }
+        buffer[position++] = (byte) b;
+        bytesWritten++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (position == buffer.length) {
+                uploadPart();
+            }
+            int chunk = Math.min(length, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, chunk);
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+            bytesWritten += chunk;
+        }
+    }
+
+    private void uploadPart() {
+        long start = System.nanoTime();
+        if (uploadId == null) {
+            uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .contentEncoding(contentEncoding)
+                    .build())
+                .uploadId();
+        }
+        int partNumber = parts.size() + 1;
+        UploadPartResponse response = s3.uploadPart(UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) position)
+                .build(),
+            body());
+        parts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+        position = 0;
+        uploadNanos += System.nanoTime() - start;
+    }
+
+    // Lê direto do buffer, sem cópia (ByteArrayInputStream suporta mark/reset para retentativas)
+    private RequestBody body() {
+        return RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, position), position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        if (uploadId == null) {
+            // Coube numa parte só: um PutObject simples sai mais barato
+            long start = System.nanoTime();
+            s3.putObject(PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .contentEncoding(contentEncoding)
+                    .build(),
+                body());
+            uploadNanos += System.nanoTime() - start;
+            closed = true;
+            return;
+        }
+
+        if (position > 0) {
+            uploadPart();
+        }
+        long start = System.nanoTime();
+        s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+            .bucket(bucket)
+            .key(key)
+            .uploadId(uploadId)
+            .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+            .build());
+        uploadNanos += System.nanoTime() - start;
+        closed = true;
+    }
+
+    void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (uploadId != null) {
+            s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .build());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Relatório comprimido e legível por faixas: cada seção (resumo, urgência, dias, detalhes) é um
+ * membro gzip separado, e o último membro, vazio, leva no campo extra (FEXTRA) o índice com
+ * offset e tamanho de cada seção.
+ *
+ * Membros concatenados formam um gzip válido: gunzip do objeto inteiro devolve o relatório em texto,
+ * igual ao formato antigo. Quem só quer o resumo lê o índice com um GET dos últimos bytes e depois
+ * só as faixas das seções que interessam. O índice fica no fim porque o relatório é escrito em
+ * streaming e os offsets só são conhecidos depois de cada seção.
+ */
+final class SectionedReport {
+
+    static final String CONTENT_TYPE = "application/gzip";
+    static final String EXTENSION = ".gz";
+
+    static final String SUMMARY = "summary";
+    static final String URGENCY = "urgency";
+    static final String DAYS = "days";
+    static final String DETAILS = "details";
+
+    private static final String INDEX_VERSION = "FBR1";
+    // Identificador do subcampo extra com o índice ("RI", report index)
+    private static final byte SI1 = 'R';
+    private static final byte SI2 = 'I';
+    // O índice tem poucas seções: cabe com folga no fim do objeto
+    static final int TAIL_BYTES = 4096;
+
+    /**
+     * Uma seção: posição do membro gzip no objeto e tamanho do texto descomprimido.
+     */
+    record Section(String name, long offset, long length, long size) {
+    }
+
+    /**
+     * Destino de um relatório escrito por seções. Texto simples usa o mesmo Writer em todas.
+     */
+    interface Sink {
+        Writer section(String name) throws IOException;
+    }
+
+    static boolean isSectioned(String objectKey) {
+        return objectKey.endsWith(EXTENSION);
+    }
+
+    /**
+     * Escreve as seções como membros gzip no stream de destino; close() grava o índice e fecha o destino.
+     */
+    static final class Output implements Sink, Closeable {
+        private final Counting target;
+        private final List<Section> sections = new ArrayList<>();
+        private String current;
+        private long currentOffset;
+        private Counting uncompressed;
+        private GZIPOutputStream member;
+        private Writer writer;
+
+        Output(OutputStream target) {
+            this.target = new Counting(target);
+        }
+
+        @Override
+        public Writer section(String name) throws IOException {
+            finishSection();
+            current = name;
+            currentOffset = target.count;
+            // O GZIPOutputStream não fecha o destino: só finish() ao trocar de seção
+            member = new GZIPOutputStream(new FilterOutputStream(target) {
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                }
+
+                @Override
+                public void close() {
+                }
+            }, 64 * 1024);
+            uncompressed = new Counting(member);
+            writer = new BufferedWriter(new OutputStreamWriter(uncompressed, StandardCharsets.UTF_8), 64 * 1024);
+            return writer;
+        }
+
+        private void finishSection() throws IOException {
+            if (member == null) {
+                return;
+            }
+            writer.flush();
+            member.finish();
+            sections.add(new Section(current, currentOffset, target.count - currentOffset, uncompressed.count));
+            member = null;
+        }
+
+        List<Section> sections() {
+            return sections;
+        }
+
+        @Override
+        public void close() throws IOException {
+            finishSection();
+            target.write(trailer(sections));
+            target.close();
+        }
+    }
+
+    // Membro gzip vazio com o índice no FEXTRA
+    static byte[] trailer(List<Section> sections) {
+        StringBuilder index = new StringBuilder(INDEX_VERSION).append('\n');
+        for (Section section : sections) {
+            index.append(section.name()).append(' ').append(section.offset()).append(' ')
+                .append(section.length()).append(' ').append(section.size()).append('\n');
+        }
+        byte[] data = index.toString().getBytes(StandardCharsets.UTF_8);
+        int extraLength = 4 + data.length;
+        if (extraLength > 0xFFFF || 22 + extraLength > TAIL_BYTES) {
+            throw new IllegalStateException("Índice do relatório grande demais: " + data.length + " bytes");
+        }
+        ByteArrayOutputStream trailer = new ByteArrayOutputStream(22 + extraLength);
+        // ID1 ID2, CM = deflate, FLG = FEXTRA, MTIME = 0, XFL = 0, OS = desconhecido
+        trailer.writeBytes(new byte[] {0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff});
+        trailer.write(extraLength & 0xFF);
+        trailer.write(extraLength >>> 8);
+        trailer.write(SI1);
+        trailer.write(SI2);
+        trailer.write(data.length & 0xFF);
+        trailer.write(data.length >>> 8);
+        trailer.writeBytes(data);
+        // Bloco deflate final vazio, CRC32 = 0 e ISIZE = 0
+        trailer.writeBytes(new byte[] {3, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        return trailer.toByteArray();
+    }
+
+    /**
+     * Índice lido dos últimos bytes do objeto (um GET com Range), mais o tamanho total do objeto.
+     */
+    record Index(List<Section> sections, long objectSize) {
+        Section get(String name) {
+            for (Section section : sections) {
+                if (section.name().equals(name)) {
+                    return section;
+                }
+            }
+            throw new IllegalArgumentException("Seção inexistente no relatório: " + name);
+        }
+    }
+
+    static Index readIndex(S3Client s3, String bucket, String key) {
+        ResponseBytes<GetObjectResponse> tail = s3.getObject(GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .range("bytes=-" + TAIL_BYTES)
+                .build(),
+            ResponseTransformer.toBytes());
+        byte[] bytes = tail.asByteArray();
+        String contentRange = tail.response().contentRange();
+        long objectSize = contentRange != null && contentRange.contains("/")
+            ? Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1))
+            : bytes.length;
+        return new Index(parseTrailer(bytes), objectSize);
+    }
+
+    // Procura, de trás para frente, o cabeçalho do membro do índice que termina exatamente no fim
+    static List<Section> parseTrailer(byte[] tail) {
+        for (int i = tail.length - 22; i >= 0; i--) {
+            if (tail[i] != 0x1f || tail[i + 1] != (byte) 0x8b || tail[i + 2] != 8 || tail[i + 3] != 4
+                    || tail[i + 12] != SI1 || tail[i + 13] != SI2) {
+                continue;
+            }
+            int extraLength = (tail[i + 10] & 0xFF) | (tail[i + 11] & 0xFF) << 8;
+            int dataLength = (tail[i + 14] & 0xFF) | (tail[i + 15] & 0xFF) << 8;
+            if (i + 12 + extraLength + 10 != tail.length || dataLength != extraLength - 4) {
+                continue;
+            }
+            String[] lines = new String(tail, i + 16, dataLength, StandardCharsets.UTF_8).split("\n");
+            if (!INDEX_VERSION.equals(lines[0])) {
+                throw new IllegalArgumentException("Versão de índice desconhecida: " + lines[0]);
+            }
+            List<Section> sections = new ArrayList<>();
+            for (int line = 1; line < lines.length; line++) {
+                String[] fields = lines[line].split(" ");
+                sections.add(new Section(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                    Long.parseLong(fields[3])));
+            }
+            return sections;
+        }
+        throw new IllegalArgumentException("Objeto sem índice de seções no fim");
+    }
+
+    /**
+     * Texto das seções de "first" até "last" (consecutivas no objeto), com um único GET por faixa.
+     */
+    static String read(S3Client s3, String bucket, String key, Section first, Section last) throws IOException {
+        byte[] compressed = s3.getObject(GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .range("bytes=" + first.offset() + "-" + (last.offset() + last.length() - 1))
+                .build(),
+            ResponseTransformer.toBytes())
+            .asByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Counting extends FilterOutputStream {
+        long count;
+
+        Counting(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+    }
+}
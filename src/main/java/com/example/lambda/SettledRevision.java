@@ -0,0 +1,90 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Revisão das janelas fechadas, numa linha da tabela de agregados (day = "cache#settled").
+ *
+ * Janela fechada é a que termina antes de agora menos SETTLE_MARGIN: a Lambda A guarda a resposta
+ * dela no cache sem prazo. Uma importação de histórico ainda pode gravar nela, então a ingestão
+ * soma 1 na revisão depois de gravar feedbacks com createdAt anteriores a esse corte, e a Lambda A
+ * relê a revisão no máximo a cada checkEveryMillis e, quando ela muda, descarta as respostas de
+ * janelas fechadas. A margem cobre a diferença de relógio entre as Lambdas e os feedbacks que
+ * chegam com alguns minutos de atraso, que só invalidam janelas ainda com TTL.
+ */
+final class SettledRevision {
+
+    static final String ROW = "cache#settled";
+    static final Duration SETTLE_MARGIN = Duration.ofMinutes(5);
+    private static final String REVISION = "revision";
+
+    private final DynamoDbClient ddb;
+    private final String table;
+    private final long checkEveryMillis;
+    private final LongSupplier clock;
+    private long revision = -1;
+    private long checkedAt;
+
+    SettledRevision(DynamoDbClient ddb, String table, long checkEveryMillis) {
+        this(ddb, table, checkEveryMillis, System::currentTimeMillis);
+    }
+
+    SettledRevision(DynamoDbClient ddb, String table, long checkEveryMillis, LongSupplier clock) {
+        this.ddb = ddb;
+        this.table = table;
+        this.checkEveryMillis = checkEveryMillis;
+        this.clock = clock;
+    }
+
+    static boolean settled(String endDate) {
+        return endDate != null && endDate.compareTo(cutoff()) < 0;
+    }
+
+    // createdAt anterior a este instante pode cair numa janela já fechada
+    static String cutoff() {
+        return Instant.now().minus(SETTLE_MARGIN).toString();
+    }
+
+    /**
+     * true quando a revisão mudou desde a última leitura, ou não pôde ser lida (quem chama descarta
+     * as janelas fechadas). A primeira leitura só guarda a revisão: antes dela o cache está vazio.
+     */
+    synchronized boolean changed() {
+        long now = clock.getAsLong();
+        if (revision >= 0 && now - checkedAt < checkEveryMillis) {
+            return false;
+        }
+        long current;
+        try {
+            Map<String, AttributeValue> item = ddb.getItem(GetItemRequest.builder()
+                .tableName(table)
+                .key(Map.of("day", AttributeValue.builder().s(ROW).build()))
+                .consistentRead(true)
+                .build()).item();
+            current = item == null || !item.containsKey(REVISION) ? 0 : Long.parseLong(item.get(REVISION).n());
+        } catch (RuntimeException e) {
+            return true;
+        }
+        boolean changed = revision >= 0 && current != revision;
+        revision = current;
+        checkedAt = now;
+        return changed;
+    }
+
+    static void bump(DynamoDbClient ddb, String table) {
+        ddb.updateItem(UpdateItemRequest.builder()
+            .tableName(table)
+            .key(Map.of("day", AttributeValue.builder().s(ROW).build()))
+            .updateExpression("ADD " + REVISION + " :one")
+            .expressionAttributeValues(Map.of(":one", AttributeValue.builder().n("1").build()))
+            .build());
+    }
+}
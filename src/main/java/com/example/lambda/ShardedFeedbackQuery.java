@@ -0,0 +1,259 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Consulta de um período sobre a tabela particionada (ver {@link FeedbackKeys}).
+ *
+ * Os dias são entregues em ordem; dentro de cada dia todos os shards são consultados em paralelo
+ * em virtual threads, cada um já buscando a sua próxima página enquanto a atual é consumida,
+ * e os resultados são intercalados por createdAt com um merge de k vias. Cada dia que acaba sem
+ * encher a página dobra quantos dias seguintes já ficam com as Queries em voo (até
+ * MAX_DAYS_AHEAD): num período longo e quase vazio os dias vazios respondem juntos, em vez de
+ * um por vez, e numa página cheia logo no primeiro dia nenhum dia a mais é lido. Uma página lê no
+ * máximo maxDaysPerPage dias: num período longo e vazio (o padrão vai de 2020 a 2030) a resposta
+ * vem curta, ou vazia, com o token apontando para o próximo dia, em vez de uma Query por shard
+ * para cada dia do período na mesma chamada.
+ *
+ * A partição legada ("FEEDBACK") entra no merge como mais um shard de cada dia, consultada só
+ * no intervalo daquele dia: itens gravados antes de ligar SHARD_COUNT continuam aparecendo, como
+ * na reagregação da Lambda de agregação.
+ *
+ * O token de continuação é único para todos os shards: o último createdAt entregue e as
+ * partições que já entregaram item com esse mesmo createdAt (empates entre shards).
+ */
+final class ShardedFeedbackQuery implements FeedbackPage.Source {
+
+    private static final ExecutorService FAN_OUT = Executors.newVirtualThreadPerTaskExecutor();
+    private static final int MIN_SHARD_PAGE = 10;
+    private static final int MAX_DAYS_AHEAD = 16;
+    static final int DEFAULT_MAX_DAYS_PER_PAGE = 31;
+
+    private final DynamoDbClient ddb;
+    private final Metrics metrics;
+    private final String tableName;
+    private final int shardCount;
+    private final String startDate;
+    private final String endDate;
+    private final String urgency;
+    private final int maxDaysPerPage;
+
+    ShardedFeedbackQuery(DynamoDbClient ddb, Metrics metrics, String tableName, int shardCount,
+                         String startDate, String endDate, String urgency) {
+        this(ddb, metrics, tableName, shardCount, startDate, endDate, urgency, DEFAULT_MAX_DAYS_PER_PAGE);
+    }
+
+    ShardedFeedbackQuery(DynamoDbClient ddb, Metrics metrics, String tableName, int shardCount,
+                         String startDate, String endDate, String urgency, int maxDaysPerPage) {
+        if (maxDaysPerPage < 1) {
+            throw new IllegalArgumentException("maxDaysPerPage deve ser positivo: " + maxDaysPerPage);
+        }
+        this.ddb = ddb;
+        this.metrics = metrics;
+        this.tableName = tableName;
+        this.shardCount = shardCount;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.urgency = urgency;
+        this.maxDaysPerPage = maxDaysPerPage;
+    }
+
+    @Override
+    public FeedbackPage fetch(Map<String, Object> token, int limit) {
+        LocalDate lastDay = FeedbackKeys.dayOf(endDate);
+        String after = token != null ? (String) token.get("after") : null;
+        Set<String> emittedAtAfter = token != null && token.get("emitted") != null
+            ? new HashSet<>((List<String>) token.get("emitted"))
+            : new HashSet<>();
+        LocalDate nextDay = after != null ? FeedbackKeys.dayOf(after) : FeedbackKeys.dayOf(startDate);
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>(limit);
+        String lastCreatedAt = after;
+        Set<String> ties = emittedAtAfter;
+
+        ArrayDeque<List<ShardCursor>> open = new ArrayDeque<>();
+        int daysAhead = 1;
+        int daysOpened = 0;
+        try {
+            while (items.size() < limit) {
+                // Abre os próximos dias até daysAhead; só o primeiro dia do token retoma depois de "after"
+                while (open.size() < daysAhead && daysOpened < maxDaysPerPage && !nextDay.isAfter(lastDay)) {
+                    open.add(openDay(nextDay, limit - items.size(), after, emittedAtAfter));
+                    daysOpened++;
+                    nextDay = nextDay.plusDays(1);
+                    after = null;
+                    emittedAtAfter = Set.of();
+                }
+                List<ShardCursor> cursors = open.poll();
+                if (cursors == null) {
+                    break;
+                }
+
+                PriorityQueue<ShardCursor> heads = new PriorityQueue<>(
+                    Comparator.comparing(ShardCursor::headCreatedAt).thenComparing(c -> c.partition));
+                for (ShardCursor cursor : cursors) {
+                    if (cursor.advance()) {
+                        heads.add(cursor);
+                    }
+                }
+
+                while (!heads.isEmpty() && items.size() < limit) {
+                    ShardCursor cursor = heads.poll();
+                    Map<String, AttributeValue> item = cursor.buffer.poll();
+                    String createdAt = item.get("createdAt").s();
+                    items.add(item);
+
+                    if (createdAt.equals(lastCreatedAt)) {
+                        ties.add(cursor.partition);
+                    } else {
+                        lastCreatedAt = createdAt;
+                        ties = new HashSet<>(Set.of(cursor.partition));
+                    }
+
+                    if (cursor.advance()) {
+                        heads.add(cursor);
+                    }
+                }
+
+                boolean dayExhausted = heads.isEmpty();
+                cursors.forEach(ShardCursor::cancel);
+                if (!dayExhausted) {
+                    return new FeedbackPage(items, toToken(lastCreatedAt, ties));
+                }
+                // Dia acabou sem encher a página: período esparso, lê mais dias ao mesmo tempo
+                daysAhead = Math.min(MAX_DAYS_AHEAD, daysAhead * 2);
+            }
+        } finally {
+            open.forEach(cursors -> cursors.forEach(ShardCursor::cancel));
+        }
+
+        if (open.isEmpty() && nextDay.isAfter(lastDay)) {
+            return new FeedbackPage(items, null);
+        }
+        // Todos os dias abertos acabaram (página cheia no fim de um dia, ou maxDaysPerPage): retoma no próximo dia
+        if (open.isEmpty()) {
+            return new FeedbackPage(items, toToken(nextDay.toString(), Set.of()));
+        }
+        return new FeedbackPage(items, toToken(lastCreatedAt, ties));
+    }
+
+    // Dispara a primeira Query de todos os shards do dia e da partição legada, limitada ao dia
+    private List<ShardCursor> openDay(LocalDate day, int remaining, String after, Set<String> emittedAtAfter) {
+        String lower = after != null && after.compareTo(startDate) > 0 ? after : startDate;
+        String upper = FeedbackKeys.upperBound(endDate);
+        int shardLimit = Math.max(MIN_SHARD_PAGE, (remaining + shardCount - 1) / shardCount + 1);
+        List<ShardCursor> cursors = new ArrayList<>(shardCount + 1);
+        for (String partition : FeedbackKeys.partitionsOf(day, shardCount)) {
+            cursors.add(new ShardCursor(partition, lower, upper, shardLimit, after, emittedAtAfter));
+        }
+        // Todo createdAt do dia começa com yyyy-MM-dd e vem antes de "yyyy-MM-dd~"
+        String dayStart = day.toString();
+        String dayEnd = dayStart + "~";
+        cursors.add(new ShardCursor(FeedbackKeys.LEGACY_PARTITION,
+            lower.compareTo(dayStart) > 0 ? lower : dayStart,
+            upper.compareTo(dayEnd) < 0 ? upper : dayEnd,
+            shardLimit, after, emittedAtAfter));
+        return cursors;
+    }
+
+    private Map<String, Object> toToken(String lastCreatedAt, Set<String> ties) {
+        Map<String, Object> token = new HashMap<>();
+        token.put("after", lastCreatedAt);
+        token.put("emitted", new ArrayList<>(ties));
+        return token;
+    }
+
+    private QueryRequest shardQuery(String partition, String lower, String upper, int limit, Map<String, AttributeValue> startKey) {
+        Map<String, AttributeValue> exprValues = new HashMap<>();
+        exprValues.put(":pk", AttributeValue.builder().s(partition).build());
+        exprValues.put(":start", AttributeValue.builder().s(lower).build());
+        exprValues.put(":end", AttributeValue.builder().s(upper).build());
+
+        QueryRequest.Builder builder = QueryRequest.builder()
+            .tableName(tableName)
+            .limit(limit)
+            .keyConditionExpression("pk = :pk AND createdAt BETWEEN :start AND :end");
+
+        if (urgency != null && !urgency.isEmpty()) {
+            exprValues.put(":urgency", AttributeValue.builder().s(urgency).build());
+            builder.filterExpression("urgency = :urgency");
+        }
+        if (startKey != null) {
+            builder.exclusiveStartKey(startKey);
+        }
+        return builder.expressionAttributeValues(exprValues).build();
+    }
+
+    /**
+     * Posição de leitura de um shard: itens já recebidos e a próxima página em voo.
+     */
+    private final class ShardCursor {
+        final String partition;
+        final ArrayDeque<Map<String, AttributeValue>> buffer = new ArrayDeque<>();
+        private final String lower;
+        private final String upper;
+        private final int limit;
+        private final String after;
+        private final boolean skipAfter;
+        private CompletableFuture<QueryResponse> inFlight;
+
+        ShardCursor(String partition, String lower, String upper, int limit, String after, Set<String> emittedAtAfter) {
+            this.partition = partition;
+            this.lower = lower;
+            this.upper = upper;
+            this.limit = limit;
+            this.after = after;
+            this.skipAfter = after != null && emittedAtAfter.contains(partition);
+            this.inFlight = query(null);
+        }
+
+        String headCreatedAt() {
+            return buffer.peek().get("createdAt").s();
+        }
+
+        // Garante um item no buffer, esperando a página em voo se preciso; false quando o shard acabou
+        boolean advance() {
+            while (buffer.isEmpty() && inFlight != null) {
+                QueryResponse response = inFlight.join();
+                Map<String, AttributeValue> lastKey = response.lastEvaluatedKey();
+                inFlight = (lastKey == null || lastKey.isEmpty()) ? null : query(lastKey);
+                for (Map<String, AttributeValue> item : response.items()) {
+                    // Item já entregue na página anterior (mesmo createdAt do token)
+                    if (skipAfter && after.equals(item.get("createdAt").s())) {
+                        continue;
+                    }
+                    buffer.add(item);
+                }
+            }
+            return !buffer.isEmpty();
+        }
+
+        void cancel() {
+            if (inFlight != null) {
+                inFlight.cancel(true);
+            }
+        }
+
+        private CompletableFuture<QueryResponse> query(Map<String, AttributeValue> startKey) {
+            QueryRequest request = shardQuery(partition, lower, upper, limit, startKey);
+            return CompletableFuture.supplyAsync(() -> metrics.query(ddb, request), FAN_OUT);
+        }
+    }
+}
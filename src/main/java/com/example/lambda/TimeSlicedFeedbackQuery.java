@@ -0,0 +1,308 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consulta de um período longo na partição única ("FEEDBACK") dividida em fatias de tempo
+ * consultadas em paralelo.
+ *
+ * O período é cortado em sliceCount fatias com o mesmo número de dias; as fronteiras são datas
+ * sem hora ("2021-03-04"), que na ordem das strings ficam antes de qualquer createdAt do dia, então
+ * cada item cai numa fatia só. Há mais fatias do que consultas simultâneas: as "concurrency"
+ * primeiras fatias ainda não terminadas ficam ativas, cada uma lendo à frente até prefetchPages
+ * páginas, e os itens saem na ordem de createdAt (uma fatia inteira antes da seguinte). Períodos
+ * densos ficam espalhados por várias fatias, o que equilibra a carga sem precisar medir a
+ * densidade antes. A memória fica limitada a concurrency x prefetchPages páginas.
+ *
+ * O token lista as fatias que faltam, "início|fim|último createdAt entregue" (vazio se a fatia
+ * ainda não entregou nada). Entre chamadas na mesma instância (modo drain) as páginas já buscadas
+ * das fatias seguintes são aproveitadas; com uma instância nova (API) a consulta recomeça do token.
+ * As leituras adiantadas só param com close(), que o chamador faz quando não vai pedir mais páginas.
+ */
+final class TimeSlicedFeedbackQuery implements FeedbackPage.Source {
+
+    static final String TOKEN_SLICES = "slices";
+    private static final ExecutorService SCAN = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Object END_OF_SLICE = new Object();
+    private static final Object CANCELLED = new Object();
+    private static final long ABANDON_AFTER_SECONDS = 60;
+
+    private final DynamoDbClient ddb;
+    private final Metrics metrics;
+    private final String tableName;
+    private final String startDate;
+    private final String endDate;
+    private final String urgency;
+    private final int sliceCount;
+    private final int concurrency;
+    private final int prefetchPages;
+
+    // Estado da última página entregue por esta instância
+    private Map<String, Object> lastToken;
+    private final ArrayDeque<SliceCursor> active = new ArrayDeque<>();
+    private final ArrayDeque<SliceCursor> pending = new ArrayDeque<>();
+    private volatile boolean closed;
+
+    TimeSlicedFeedbackQuery(DynamoDbClient ddb, Metrics metrics, String tableName, String startDate, String endDate,
+                            String urgency, int sliceCount, int concurrency, int prefetchPages) {
+        this.ddb = ddb;
+        this.metrics = metrics;
+        this.tableName = tableName;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.urgency = urgency;
+        this.sliceCount = sliceCount;
+        this.concurrency = Math.max(1, concurrency);
+        this.prefetchPages = Math.max(1, prefetchPages);
+    }
+
+    // Dias do período (contando o primeiro e o último); fatiar só faz sentido com mais de um
+    static long days(String startDate, String endDate) {
+        return ChronoUnit.DAYS.between(FeedbackKeys.dayOf(startDate), FeedbackKeys.dayOf(endDate)) + 1;
+    }
+
+    /**
+     * Token fatiado só vale para consulta fatiada e vice-versa: o formato das posições é diferente.
+     */
+    static void requireSliced(Map<String, Object> token, boolean sliced) {
+        if (token != null && token.containsKey(TOKEN_SLICES) != sliced) {
+            throw new IllegalArgumentException(sliced
+                ? "nextToken não é de uma consulta fatiada: repita a consulta com os mesmos parâmetros"
+                : "nextToken de consulta fatiada usado numa consulta sem fatias");
+        }
+    }
+
+    @Override
+    public FeedbackPage fetch(Map<String, Object> token, int limit) {
+        if (closed) {
+            throw new IllegalStateException("Consulta fatiada já encerrada");
+        }
+        requireSliced(token, true);
+        if (token == null || token != lastToken) {
+            restart(token, limit);
+        }
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>(limit);
+        while (items.size() < limit) {
+            while (active.size() < concurrency && !pending.isEmpty()) {
+                SliceCursor next = pending.poll();
+                next.start();
+                active.add(next);
+            }
+            SliceCursor head = active.peek();
+            if (head == null) {
+                break;
+            }
+            if (!head.advance()) {
+                active.poll();
+                continue;
+            }
+            Map<String, AttributeValue> item = head.buffer.poll();
+            head.after = item.get("createdAt").s();
+            items.add(item);
+        }
+
+        if (active.isEmpty() && pending.isEmpty()) {
+            lastToken = null;
+            return new FeedbackPage(items, null);
+        }
+        List<String> slices = new ArrayList<>(active.size() + pending.size());
+        active.forEach(slice -> slices.add(slice.encode()));
+        pending.forEach(slice -> slices.add(slice.encode()));
+        Map<String, Object> next = new HashMap<>();
+        next.put(TOKEN_SLICES, slices);
+        lastToken = next;
+        return new FeedbackPage(items, next);
+    }
+
+    /**
+     * Cancela as leituras das fatias ativas, a página em voo e as lidas à frente. Sem isso, depois
+     * da página da API ou de um drain parado por orçamento, as threads seguiriam consultando até
+     * encher a fila: RCUs gastas à toa, e leituras que continuam dentro do snapshot do SnapStart.
+     * Um fetch em voo que espera página é acordado pelo cancelamento e falha.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        active.forEach(SliceCursor::cancel);
+        active.clear();
+        pending.clear();
+        lastToken = null;
+    }
+
+    private void restart(Map<String, Object> token, int limit) {
+        active.forEach(SliceCursor::cancel);
+        active.clear();
+        pending.clear();
+        if (token != null) {
+            List<?> slices = (List<?>) token.get(TOKEN_SLICES);
+            for (int i = 0; i < slices.size(); i++) {
+                String[] parts = slices.get(i).toString().split("\\|", -1);
+                pending.add(new SliceCursor(parts[0], parts[1], parts[2].isEmpty() ? null : parts[2],
+                    i == slices.size() - 1, limit));
+            }
+            return;
+        }
+        List<String> bounds = bounds();
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            pending.add(new SliceCursor(bounds.get(i), bounds.get(i + 1), null, i + 2 == bounds.size(), limit));
+        }
+    }
+
+    // startDate, as datas que separam as fatias e endDate, em ordem
+    private List<String> bounds() {
+        LocalDate first = FeedbackKeys.dayOf(startDate);
+        long days = days(startDate, endDate);
+        int slices = (int) Math.max(1, Math.min(sliceCount, days));
+        List<String> bounds = new ArrayList<>(slices + 1);
+        bounds.add(startDate);
+        for (int i = 1; i < slices; i++) {
+            bounds.add(first.plusDays(days * i / slices).toString());
+        }
+        bounds.add(endDate);
+        return bounds;
+    }
+
+    /**
+     * Posição de leitura de uma fatia: uma thread virtual segue o LastEvaluatedKey e deixa até
+     * prefetchPages páginas prontas na fila; o consumo (advance) acontece na thread do fetch.
+     */
+    private final class SliceCursor {
+        final ArrayDeque<Map<String, AttributeValue>> buffer = new ArrayDeque<>();
+        private final String lower;
+        private final String upper;
+        private final boolean last;
+        private final int limit;
+        private final BlockingQueue<Object> pages = new ArrayBlockingQueue<>(prefetchPages);
+        String after;
+        private Future<?> reader;
+        private boolean exhausted;
+
+        SliceCursor(String lower, String upper, String after, boolean last, int limit) {
+            this.lower = lower;
+            this.upper = upper;
+            this.after = after;
+            this.last = last;
+            this.limit = limit;
+        }
+
+        void start() {
+            if (reader != null) {
+                return;
+            }
+            Map<String, AttributeValue> startKey = null;
+            if (after != null) {
+                startKey = Map.of(
+                    "pk", AttributeValue.builder().s(FeedbackKeys.LEGACY_PARTITION).build(),
+                    "createdAt", AttributeValue.builder().s(after).build());
+            }
+            Map<String, AttributeValue> first = startKey;
+            reader = SCAN.submit(() -> read(first));
+        }
+
+        private void read(Map<String, AttributeValue> startKey) {
+            try {
+                Map<String, AttributeValue> lastKey = startKey;
+                do {
+                    QueryResponse response = metrics.query(ddb, request(lastKey));
+                    if (!publish(response)) {
+                        return;
+                    }
+                    lastKey = response.lastEvaluatedKey();
+                } while (lastKey != null && !lastKey.isEmpty());
+                publish(END_OF_SLICE);
+            } catch (RuntimeException e) {
+                publish(e);
+            }
+        }
+
+        // Fila cheia por muito tempo: ninguém vai consumir (drain encerrado por orçamento), a leitura para
+        private boolean publish(Object page) {
+            try {
+                return pages.offer(page, ABANDON_AFTER_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        // Garante um item no buffer, esperando a próxima página se preciso; false quando a fatia acabou
+        boolean advance() {
+            while (buffer.isEmpty() && !exhausted) {
+                Object page;
+                try {
+                    page = pages.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Leitura da fatia " + lower + " interrompida", e);
+                }
+                if (page == END_OF_SLICE) {
+                    exhausted = true;
+                } else if (page == CANCELLED) {
+                    throw new IllegalStateException("Consulta fatiada já encerrada");
+                } else if (page instanceof RuntimeException e) {
+                    throw e;
+                } else {
+                    for (Map<String, AttributeValue> item : ((QueryResponse) page).items()) {
+                        // BETWEEN inclui o fim: um item exatamente na fronteira pertence à próxima fatia
+                        if (!last && upper.equals(FeedbackKeys.createdAtOf(item.get("createdAt").s()))) {
+                            continue;
+                        }
+                        buffer.add(item);
+                    }
+                }
+            }
+            return !buffer.isEmpty();
+        }
+
+        String encode() {
+            return lower + "|" + upper + "|" + (after == null ? "" : after);
+        }
+
+        void cancel() {
+            if (reader != null) {
+                reader.cancel(true);
+            }
+            pages.clear();
+            // Acorda quem estiver esperando a próxima página desta fatia
+            pages.offer(CANCELLED);
+        }
+
+        private QueryRequest request(Map<String, AttributeValue> startKey) {
+            Map<String, AttributeValue> exprValues = new HashMap<>();
+            exprValues.put(":pk", AttributeValue.builder().s(FeedbackKeys.LEGACY_PARTITION).build());
+            exprValues.put(":start", AttributeValue.builder().s(lower).build());
+            exprValues.put(":end", AttributeValue.builder().s(FeedbackKeys.upperBound(upper)).build());
+
+            QueryRequest.Builder builder = QueryRequest.builder()
+                .tableName(tableName)
+                .limit(limit)
+                .keyConditionExpression("pk = :pk AND createdAt BETWEEN :start AND :end");
+            if (urgency != null && !urgency.isEmpty()) {
+                exprValues.put(":urgency", AttributeValue.builder().s(urgency).build());
+                builder.filterExpression("urgency = :urgency");
+            }
+            if (startKey != null) {
+                builder.exclusiveStartKey(startKey);
+            }
+            return builder.expressionAttributeValues(exprValues).build();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consulta de um período filtrado por urgência no GSI (urgencyDay, createdAt).
+ *
+ * Ao contrário do filterExpression na tabela, o índice só lê os itens da urgência pedida, então
+ * o custo e o tamanho das páginas acompanham os itens que casam. A chave do índice é a urgência
+ * junto com o dia ("alta#2024-01-01", ver {@link FeedbackKeys}): a escrita no índice se espalha por
+ * dia em vez de três partições, e a consulta lê um dia por vez, em ordem. O índice é esparso (só
+ * itens com urgencyDay, que a ingestão grava) e projeta só urgency, nota e descricao. Vale para o
+ * esquema legado e para o particionado, já que a chave do índice não depende da pk da tabela.
+ *
+ * Uma página lê no máximo maxDaysPerPage dias; num período longo e vazio ela vem curta, com o
+ * token apontando para o próximo dia. O token é "index": "urgency", o dia em leitura e, no meio do
+ * dia, a LastEvaluatedKey do índice (urgencyDay, createdAt, pk).
+ */
+final class UrgencyIndexQuery implements FeedbackPage.Source {
+
+    static final String TOKEN_INDEX = "urgency";
+    private static final String INDEX_KEY = "index";
+    private static final String DAY_KEY = "day";
+
+    private final DynamoDbClient ddb;
+    private final Metrics metrics;
+    private final String tableName;
+    private final String indexName;
+    private final String startDate;
+    private final String endDate;
+    private final String urgency;
+    private final int maxDaysPerPage;
+
+    UrgencyIndexQuery(DynamoDbClient ddb, Metrics metrics, String tableName, String indexName,
+                      String startDate, String endDate, String urgency) {
+        this(ddb, metrics, tableName, indexName, startDate, endDate, urgency, ShardedFeedbackQuery.DEFAULT_MAX_DAYS_PER_PAGE);
+    }
+
+    UrgencyIndexQuery(DynamoDbClient ddb, Metrics metrics, String tableName, String indexName,
+                      String startDate, String endDate, String urgency, int maxDaysPerPage) {
+        if (maxDaysPerPage < 1) {
+            throw new IllegalArgumentException("maxDaysPerPage deve ser positivo: " + maxDaysPerPage);
+        }
+        this.ddb = ddb;
+        this.metrics = metrics;
+        this.tableName = tableName;
+        this.indexName = indexName;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.urgency = urgency;
+        this.maxDaysPerPage = maxDaysPerPage;
+    }
+
+    @Override
+    public FeedbackPage fetch(Map<String, Object> token, int limit) {
+        requireIndex(token, TOKEN_INDEX);
+        LocalDate lastDay = FeedbackKeys.dayOf(endDate);
+        LocalDate day = token != null ? LocalDate.parse(token.get(DAY_KEY).toString()) : FeedbackKeys.dayOf(startDate);
+        Map<String, AttributeValue> startKey = null;
+        if (token != null && token.size() > 2) {
+            startKey = new HashMap<>();
+            for (Map.Entry<String, Object> entry : token.entrySet()) {
+                if (!INDEX_KEY.equals(entry.getKey()) && !DAY_KEY.equals(entry.getKey())) {
+                    startKey.put(entry.getKey(), AttributeValue.builder().s(entry.getValue().toString()).build());
+                }
+            }
+        }
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>(limit);
+        int daysRead = 0;
+        while (items.size() < limit && !day.isAfter(lastDay) && daysRead < maxDaysPerPage) {
+            QueryResponse response = metrics.query(ddb, request(day, limit - items.size(), startKey));
+            items.addAll(response.items());
+            if (response.lastEvaluatedKey().isEmpty()) {
+                day = day.plusDays(1);
+                startKey = null;
+                daysRead++;
+            } else {
+                startKey = response.lastEvaluatedKey();
+            }
+        }
+
+        if (day.isAfter(lastDay)) {
+            return new FeedbackPage(items, null);
+        }
+        Map<String, Object> next = new HashMap<>();
+        if (startKey != null) {
+            startKey.forEach((k, v) -> next.put(k, v.s()));
+        }
+        next.put(DAY_KEY, day.toString());
+        next.put(INDEX_KEY, TOKEN_INDEX);
+        return new FeedbackPage(items, next);
+    }
+
+    private QueryRequest request(LocalDate day, int limit, Map<String, AttributeValue> startKey) {
+        Map<String, AttributeValue> exprValues = new HashMap<>();
+        exprValues.put(":urgencyDay", AttributeValue.builder().s(FeedbackKeys.urgencyDay(urgency, day)).build());
+        exprValues.put(":start", AttributeValue.builder().s(startDate).build());
+        exprValues.put(":end", AttributeValue.builder().s(FeedbackKeys.upperBound(endDate)).build());
+
+        QueryRequest.Builder builder = QueryRequest.builder()
+            .tableName(tableName)
+            .indexName(indexName)
+            .limit(limit)
+            .keyConditionExpression(FeedbackKeys.URGENCY_DAY + " = :urgencyDay AND createdAt BETWEEN :start AND :end")
+            .expressionAttributeValues(exprValues);
+        if (startKey != null) {
+            builder.exclusiveStartKey(startKey);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Confere que o token foi gerado pela mesma origem (index = null para a tabela). Um token do
+     * índice reaproveitado sem urgency, ou o contrário, apontaria para outra posição de leitura.
+     */
+    static void requireIndex(Map<String, Object> token, String expected) {
+        if (token == null) {
+            return;
+        }
+        Object index = token.get(INDEX_KEY);
+        if (expected == null ? index != null : !expected.equals(index)) {
+            throw new IllegalArgumentException("nextToken não pertence a esta consulta (index: "
+                + index + ", esperado: " + expected + ")");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class AggregateFeedbacksHandlerTest {
+
+    private static Map<String, AttributeValue> image(String createdAt, String nota, String urgency) {
+        return Map.of(
+            "pk", new AttributeValue().withS(FeedbackKeys.LEGACY_PARTITION),
+            "createdAt", new AttributeValue().withS(createdAt),
+            "nota", new AttributeValue().withS(nota),
+            "urgency", new AttributeValue().withS(urgency),
+            "descricao", new AttributeValue().withS("feedback " + createdAt));
+    }
+
+    private static DynamodbEvent.DynamodbStreamRecord record(int sequence, Map<String, AttributeValue> oldImage,
+                                                             Map<String, AttributeValue> newImage) {
+        StreamRecord streamRecord = new StreamRecord();
+        streamRecord.setSequenceNumber(Integer.toString(sequence));
+        streamRecord.setOldImage(oldImage);
+        streamRecord.setNewImage(newImage);
+        DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+        record.setEventID("evento-" + sequence);
+        record.setDynamodb(streamRecord);
+        return record;
+    }
+
+    private static DynamodbEvent batch(DynamodbEvent.DynamodbStreamRecord... records) {
+        DynamodbEvent event = new DynamodbEvent();
+        event.setRecords(List.of(records));
+        return event;
+    }
+
+    private static List<String> failed(StreamsEventResponse response) {
+        return response.getBatchItemFailures().stream()
+            .map(StreamsEventResponse.BatchItemFailure::getItemIdentifier)
+            .collect(Collectors.toList());
+    }
+
+    private static long counter(InMemoryDynamoDb ddb, String day, String name) {
+        return Long.parseLong(ddb.days.get(day).get(name).n());
+    }
+
+    @Test
+    public void batchRedeliveredAfterAFailedDayCountsEachRecordOnce() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        AggregateFeedbacksHandler handler = new AggregateFeedbacksHandler(new AwsClients(ddb, null, null), "stats", true);
+        DynamodbEvent event = batch(
+            record(1, null, image("2024-03-01T09:00:00Z", "8", "alta")),
+            record(2, null, image("2024-03-02T09:00:00Z", "4", "baixa")),
+            record(3, null, image("2024-03-01T10:00:00Z", "6", "media")),
+            record(4, image("2024-03-01T09:00:00Z", "8", "alta"), image("2024-03-01T09:00:00Z", "8", "baixa")),
+            record(5, null, image("2024-03-02T11:00:00Z", "2", "baixa")));
+
+        ddb.failingDays.add("2024-03-02");
+        StreamsEventResponse first = handler.handleRequest(event, new TestContext());
+        assertEquals(List.of("2", "5"), failed(first));
+        assertEquals(2L, counter(ddb, "2024-03-01", "count"));
+        assertEquals(0L, counter(ddb, "2024-03-01", "alta"));
+        assertEquals(1L, counter(ddb, "2024-03-01", "baixa"));
+
+        // O Lambda reentrega a partir do registro 2: os do dia 1 já aplicados são descartados
+        ddb.failingDays.clear();
+        for (int delivery = 0; delivery < 2; delivery++) {
+            assertEquals(List.of(), failed(handler.handleRequest(event, new TestContext())));
+        }
+        assertEquals(2L, counter(ddb, "2024-03-01", "count"));
+        assertEquals(2L, counter(ddb, "2024-03-02", "count"));
+        assertEquals(2L, counter(ddb, "2024-03-02", "baixa"));
+        assertEquals(6.0, Double.parseDouble(ddb.days.get("2024-03-02").get("notaSum").n()), 0.0);
+        // Sketches na mesma transação: uma fusão por dia, com as notas de cada inclusão uma vez
+        assertEquals(1L, DailySketches.version(ddb.days.get("2024-03-01")));
+        assertEquals(2L, DailySketches.fromItem(ddb.days.get("2024-03-01")).notaCount());
+        assertEquals(2L, DailySketches.fromItem(ddb.days.get("2024-03-02")).notaCount());
+        assertTrue(ddb.days.get(AggregateFeedbacksHandler.MARKER_PREFIX + "evento-5").containsKey("expiresAt"));
+    }
+
+    @Test
+    public void backfillRebuildsClosedDaysFromTheTableAndCanBeRepeated() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        List<String> createdAts = new ArrayList<>();
+        for (int h = 0; h < 5; h++) {
+            createdAts.add(String.format("2024-03-01T%02d:00:00Z", h));
+        }
+        createdAts.add("2024-03-02T23:59:59.500Z");
+        createdAts.forEach(createdAt -> ddb.put(FeedbackKeys.LEGACY_PARTITION, createdAt, "alta", "7"));
+        ddb.put(FeedbackKeys.LEGACY_PARTITION, "2024-03-04T00:00:00Z", "alta", "7");
+        // Linha contada em dobro por uma versão antiga do agregador
+        ddb.days.put("2024-03-01", Map.of(
+            "day", software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().s("2024-03-01").build(),
+            "count", software.amazon.awssdk.services.dynamodb.model.AttributeValue.builder().n("10").build()));
+        AggregateFeedbacksHandler handler = new AggregateFeedbacksHandler(new AwsClients(ddb, null, null), "stats", true);
+
+        Map<String, Object> input = Map.of("startDate", "2024-03-01", "endDate", "2024-03-03T12:00:00Z");
+        for (int run = 1; run <= 2; run++) {
+            Map<String, Object> result = handler.backfill(input, new TestContext());
+            assertEquals(3, result.get("days"));
+            assertEquals(6L, result.get("feedbacks"));
+            assertNull(result.get("nextStartDate"));
+            assertEquals(5L, counter(ddb, "2024-03-01", "count"));
+            assertEquals(5L, counter(ddb, "2024-03-01", "alta"));
+            assertEquals(1L, counter(ddb, "2024-03-02", "count"));
+            assertEquals(0L, counter(ddb, "2024-03-03", "count"));
+            assertEquals(5L, DailySketches.fromItem(ddb.days.get("2024-03-01")).notaCount());
+            assertEquals((long) run, DailySketches.version(ddb.days.get("2024-03-01")));
+        }
+        assertNull(ddb.days.get("2024-03-04"));
+
+        // O stream continua somando sobre o recálculo
+        handler.handleRequest(batch(record(9, null, image("2024-03-01T20:00:00Z", "3", "baixa"))), new TestContext());
+        assertEquals(6L, counter(ddb, "2024-03-01", "count"));
+        assertEquals(6L, DailySketches.fromItem(ddb.days.get("2024-03-01")).notaCount());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class DailySketchesTest {
+
+    @Test
+    public void mergedDailyRowsAnswerRangeQuantilesAndDistinctsWithinTheirBounds() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        Random random = new Random(7);
+        List<Double> notas = new ArrayList<>();
+        for (int d = 0; d < 90; d++) {
+            String day = String.format("2024-%02d-%02d", 1 + d / 30, 1 + d % 30);
+            // Dois lotes do stream por dia, gravados um sobre o outro
+            for (int batch = 0; batch < 2; batch++) {
+                DailySketches sketches = DailySketches.empty("descricao");
+                for (int i = 0; i < 300; i++) {
+                    double nota = 1 + random.nextInt(10);
+                    notas.add(nota);
+                    // 20 mil textos possíveis: há repetições entre dias
+                    sketches.add(nota, "texto " + random.nextInt(20_000));
+                }
+                sketches.mergeInto(ddb, "stats", day);
+            }
+        }
+        assertEquals(90, ddb.days.size());
+        assertEquals(2L, DailySketches.version(ddb.days.get("2024-01-01")));
+
+        DailySketches range = DailySketches.empty(null);
+        ddb.days.values().forEach(item -> range.merge(DailySketches.fromItem(item)));
+        assertEquals(notas.size(), range.notaCount());
+        assertEquals("descricao", range.distinctOf());
+
+        Collections.sort(notas);
+        for (double rank : new double[] {0.5, 0.9}) {
+            double approximate = range.quantile(rank).getAsDouble();
+            int low = (int) Math.floor((rank - range.rankError()) * notas.size());
+            int high = (int) Math.ceil((rank + range.rankError()) * notas.size());
+            assertTrue(rank + ": " + approximate, approximate >= notas.get(low) && approximate <= notas.get(Math.min(high, notas.size() - 1)));
+        }
+        // 54 mil sorteios entre 20 mil textos: ~18.6 mil distintos
+        double expected = 20_000 * (1 - Math.pow(1 - 1 / 20_000.0, notas.size()));
+        assertTrue(range.distinctLower() + ".." + range.distinctUpper(),
+            range.distinctLower() <= expected && expected <= range.distinctUpper());
+        assertTrue(range.distinctUpper() - range.distinctLower() < expected * 0.08);
+    }
+
+    @Test
+    public void concurrentWriteOfTheSameDayIsRereadAndMergedAgain() {
+        DailySketches other = DailySketches.empty("descricao");
+        other.add(2, "outro");
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb() {
+            private boolean raced;
+
+            @Override
+            public GetItemResponse getItem(GetItemRequest request) {
+                GetItemResponse response = super.getItem(request);
+                // Outro lote grava o mesmo dia entre a leitura e a escrita
+                if (!raced) {
+                    raced = true;
+                    other.mergeInto(this, "stats", request.key().get("day").s());
+                }
+                return response;
+            }
+        };
+        DailySketches mine = DailySketches.empty("descricao");
+        mine.add(9, "meu");
+        mine.add(0, "sem nota");
+        mine.mergeInto(ddb, "stats", "2024-01-01");
+
+        Map<String, AttributeValue> row = ddb.days.get("2024-01-01");
+        DailySketches stored = DailySketches.fromItem(row);
+        assertEquals(2L, DailySketches.version(row));
+        assertEquals(2, stored.notaCount());
+        assertEquals(3, stored.distinct());
+        assertEquals(2.0, stored.quantile(0.0).getAsDouble(), 0.0);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.ses.model.SendEmailRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class EmailDeliveryTest {
+
+    private static List<String> addresses(int count) {
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            addresses.add("coordenador" + i + "@example.com");
+        }
+        return addresses;
+    }
+
+    @Test
+    public void respectsTheConfiguredRateAndRetriesThrottling() throws Exception {
+        int rate = 20;
+        StubSes ses = new StubSes(7);
+        EmailDelivery delivery = new EmailDelivery(ses, new TokenBucket(rate, 1), 8, 5, 10, new Metrics("test"));
+
+        long start = System.nanoTime();
+        EmailDelivery.Result result = delivery.deliver(EmailDelivery.batches(addresses(30), 1),
+            batch -> SendEmailRequest.builder().source("relatorios@example.com").build());
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(30, result.sent());
+        assertTrue(result.failed().isEmpty());
+        assertTrue(result.retries() > 0);
+        int attempts = ses.attemptNanos.size();
+        assertEquals(30 + result.retries(), attempts);
+
+        // Nenhuma janela de 1 s passa da taxa (mais a rajada de 1 token)
+        List<Long> times = ses.attemptNanos.stream().sorted().collect(Collectors.toList());
+        for (int i = 0, j = 0; i < times.size(); i++) {
+            while (times.get(i) - times.get(j) >= 1_000_000_000L) {
+                j++;
+            }
+            assertTrue("janela com " + (i - j + 1) + " envios", i - j + 1 <= rate + 1);
+        }
+        // Vazão próxima da configurada: a primeira tentativa sai na hora, as demais a 20/s
+        assertTrue(elapsedSeconds >= (attempts - 1) / (double) rate * 0.95);
+        assertTrue(elapsedSeconds < (attempts - 1) / (double) rate + 1.0);
+    }
+
+    @Test
+    public void sendsInlineBodyOrPresignedLinkByReportSize() {
+        InMemoryS3 s3 = new InMemoryS3();
+        s3.objects.put("destinatarios.txt", ("# coordenadores\n" + String.join("\n", addresses(60)) + "\n")
+            .getBytes(StandardCharsets.UTF_8));
+        s3.objects.put("small.txt", "Relatório curto".getBytes(StandardCharsets.UTF_8));
+        s3.objects.put("large.txt", new byte[300_000]);
+        StubSes ses = new StubSes(0);
+        S3Presigner presigner = S3Presigner.builder()
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("k", "s")))
+            .build();
+        NotifyReportHandler handler = new NotifyReportHandler(new AwsClients(null, s3, ses, presigner), 1000);
+
+        Map<String, Object> input = new HashMap<>();
+        input.put("reportKey", "small.txt");
+        input.put("recipientsKey", "destinatarios.txt");
+        handler.handleRequest(input, new TestContext());
+
+        // 60 destinatários em lotes de 50 (Bcc)
+        assertEquals(2, ses.sent.size());
+        assertEquals(60, ses.sent.stream().mapToInt(r -> r.destination().bccAddresses().size()).sum());
+        assertEquals("Relatório curto", ses.sent.get(0).message().body().text().data());
+
+        ses.sent.clear();
+        input.put("reportKey", "large.txt");
+        handler.handleRequest(input, new TestContext());
+        String body = ses.sent.get(0).message().body().text().data();
+        assertTrue(body, body.contains("large.txt") && body.contains("X-Amz-Signature="));
+    }
+
+    private static InMemoryS3 reportFor(int recipients) {
+        InMemoryS3 s3 = new InMemoryS3();
+        s3.objects.put("destinatarios.txt", String.join("\n", addresses(recipients)).getBytes(StandardCharsets.UTF_8));
+        s3.objects.put("small.txt", "Relatório curto".getBytes(StandardCharsets.UTF_8));
+        return s3;
+    }
+
+    private static Map<String, Object> notify(String reportKey) {
+        Map<String, Object> input = new HashMap<>();
+        input.put("reportKey", reportKey);
+        input.put("recipientsKey", "destinatarios.txt");
+        return input;
+    }
+
+    @Test
+    public void batchLargerThanOneSecondOfQuotaWaitsForItsTokens() {
+        StubSes ses = new StubSes(0);
+        NotifyReportHandler handler = new NotifyReportHandler(new AwsClients(null, reportFor(60), ses), 40);
+
+        long start = System.nanoTime();
+        handler.handleRequest(notify("small.txt"), new TestContext());
+
+        // Rajada de 40: o lote de 50 espera 10 tokens (0,25 s) e o de 10 espera mais 10 (0,5 s no total)
+        List<Long> times = ses.attemptNanos.stream().sorted().collect(Collectors.toList());
+        assertEquals(2, times.size());
+        assertTrue(times.get(0) - start >= 240_000_000L);
+        assertTrue(times.get(1) - start >= 490_000_000L);
+    }
+
+    @Test
+    public void partialDeliveryFailsTheStepAndTheRetrySendsOnlyToWhoMissedIt() {
+        InMemoryS3 s3 = reportFor(60);
+        StubSes ses = new StubSes(0);
+        ses.rejected.add("coordenador3@example.com");
+        NotifyReportHandler handler = new NotifyReportHandler(new AwsClients(null, s3, ses), 1000);
+
+        try {
+            handler.handleRequest(notify("small.txt"), new TestContext());
+            fail("envio parcial deveria falhar");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Envio parcial: 50 de 60"));
+        }
+        assertEquals(1, ses.sent.size());
+
+        // Nova tentativa do Step Functions: só o lote que falhou é reenviado
+        ses.rejected.clear();
+        assertEquals("Relatório enviado com sucesso para 60 de 60 destinatários",
+            handler.handleRequest(notify("small.txt"), new TestContext()));
+        assertEquals("Relatório já enviado para os 60 destinatários", handler.handleRequest(notify("small.txt"), new TestContext()));
+        List<String> received = ses.sent.stream()
+            .flatMap(request -> request.destination().bccAddresses().stream())
+            .sorted()
+            .collect(Collectors.toList());
+        assertEquals(addresses(60).stream().sorted().collect(Collectors.toList()), received);
+    }
+
+    @Test
+    public void linkFromTemporaryCredentialsIsCappedAndStatesWhenItExpires() {
+        assertEquals(Duration.ofHours(24), NotifyReportHandler.linkTtl(Map.of()));
+        assertEquals(Duration.ofHours(1), NotifyReportHandler.linkTtl(Map.of("AWS_SESSION_TOKEN", "t")));
+        assertEquals(Duration.ofHours(6), NotifyReportHandler.linkTtl(Map.of(
+            "AWS_CONTAINER_CREDENTIALS_FULL_URI", "http://127.0.0.1", "REPORT_LINK_SESSION_MAX_HOURS", "6")));
+        assertEquals(Duration.ofHours(2), NotifyReportHandler.linkTtl(Map.of(
+            "AWS_SESSION_TOKEN", "t", "REPORT_LINK_TTL_HOURS", "2", "REPORT_LINK_SESSION_MAX_HOURS", "6")));
+
+        InMemoryS3 s3 = reportFor(1);
+        s3.objects.put("large.txt", new byte[300_000]);
+        StubSes ses = new StubSes(0);
+        S3Presigner presigner = S3Presigner.builder()
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("k", "s")))
+            .build();
+        NotifyReportHandler handler = new NotifyReportHandler(new AwsClients(null, s3, ses, presigner), 1000, Duration.ofHours(1));
+
+        Instant before = Instant.now();
+        handler.handleRequest(notify("large.txt"), new TestContext());
+        String body = ses.sent.get(0).message().body().text().data();
+        assertTrue(body, body.contains("X-Amz-Expires=3600"));
+
+        // O horário informado é o da assinatura mais a validade, arredondado para baixo
+        DateTimeFormatter format = DateTimeFormatter.ofPattern("dd/MM/yyyy 'às' HH:mm 'UTC'").withZone(ZoneOffset.UTC);
+        String expires = body.substring(body.indexOf("O link expira em ") + "O link expira em ".length(), body.lastIndexOf('.'));
+        Instant stated = ZonedDateTime.parse(expires, format).toInstant();
+        assertTrue(expires, !stated.isAfter(Instant.now().plus(Duration.ofHours(1))));
+        assertTrue(expires, stated.isAfter(before.plus(Duration.ofMinutes(58))));
+    }
+}
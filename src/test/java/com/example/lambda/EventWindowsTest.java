@@ -0,0 +1,31 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class EventWindowsTest {
+
+    @Test
+    public void closesWindowsByTimeOrByCount() {
+        // Rajada de 5 eventos em 1 s, depois dois eventos isolados
+        long[] arrivals = {0, 200, 400, 600, 800, 10_000, 25_000};
+
+        List<EventWindows.Window> byTime = EventWindows.coalesce(arrivals, 5_000, 100);
+        assertEquals(3, byTime.size());
+        assertEquals(5, byTime.get(0).events());
+        assertEquals(5_000, byTime.get(0).closesAt());
+        assertEquals(5_000, byTime.get(0).maxDelayMillis());
+        assertEquals((5_000 + 4_800 + 4_600 + 4_400 + 4_200) / 5.0, byTime.get(0).meanDelayMillis(), 0.001);
+
+        // Lote cheio fecha na hora, sem esperar o prazo
+        List<EventWindows.Window> byCount = EventWindows.coalesce(arrivals, 5_000, 2);
+        assertEquals(5, byCount.size());
+        assertEquals(200, byCount.get(0).closesAt());
+        assertEquals(600, byCount.get(1).closesAt());
+        assertEquals(1, byCount.get(2).events());
+        assertEquals(5_800, byCount.get(2).closesAt());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class FeedbackBatchCodecTest {
+
+    private static FeedbackBatchReader roundTrip(int rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (FeedbackBatchWriter writer = new FeedbackBatchWriter(bytes)) {
+            writer.write("2025-12-30T10:00:00Z", "9", "alta", "Aula sobre serverless foi otima");
+            writer.write("2025-12-31T14:30:00Z", "8.5", "media", null);
+            writer.write("invalida", "abc", null, "Descrição com acentuação");
+            for (int i = 3; i < rows; i++) {
+                writer.write("2026-01-02T09:15:00Z", Integer.toString(i % 10), "urgência-" + (i % 300), "linha " + i);
+            }
+        }
+        return new FeedbackBatchReader(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    @Test
+    public void decodesWhatWasWritten() throws IOException {
+        FeedbackBatchReader reader = roundTrip(3);
+        List<String> rows = new ArrayList<>();
+        reader.forEach(row -> rows.add(row.notaText() + "|" + row.urgency() + "|" + row.createdAtText() + "|" + row.descricao()));
+
+        assertEquals(3, reader.totalRows());
+        assertEquals(List.of(
+            "9|alta|2025-12-30T10:00:00Z|Aula sobre serverless foi otima",
+            "8.5|media|2025-12-31T14:30:00Z|null",
+            "null|null|invalida|Descrição com acentuação"), rows);
+    }
+
+    @Test
+    public void createdAtKeepsItsOffsetAndFractionOfASecond() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (FeedbackBatchWriter writer = new FeedbackBatchWriter(bytes)) {
+            writer.write("2024-01-01T10:00:00-03:00", "7", "alta", null);
+            writer.write("2024-01-01T23:59:59.250Z", "7", "alta", null);
+        }
+        List<String> rows = new ArrayList<>();
+        new FeedbackBatchReader(ByteBuffer.wrap(bytes.toByteArray()))
+            .forEach(row -> rows.add(row.createdAtText() + "|" + row.epochDay()));
+
+        long day = LocalDate.parse("2024-01-01").toEpochDay();
+        assertEquals(List.of("2024-01-01T10:00:00-03:00|" + day, "2024-01-01T23:59:59.250Z|" + day), rows);
+    }
+
+    @Test
+    public void readsBatchesWrittenBeforeTheTextColumn() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FeedbackBatchWriter.MAGIC);
+        out.writeByte(FeedbackBatchWriter.VERSION_WITHOUT_TEXT);
+        out.writeInt(1);
+        out.writeByte(1);
+        out.writeShort(4);
+        out.write("alta".getBytes(StandardCharsets.UTF_8));
+        out.writeByte(1);
+        out.writeInt(900);
+        out.writeLong(FeedbackBatchWriter.encodeTimestamp("2025-12-30T10:00:00Z"));
+        out.writeInt(-1);
+        out.writeInt(0);
+        out.writeLong(1);
+
+        List<String> rows = new ArrayList<>();
+        FeedbackBatchReader reader = new FeedbackBatchReader(ByteBuffer.wrap(bytes.toByteArray()));
+        reader.forEach(row -> rows.add(row.notaText() + "|" + row.urgency() + "|" + row.createdAtText() + "|" + row.descricao()));
+        assertEquals(1, reader.totalRows());
+        assertEquals(List.of("9|alta|2025-12-30T10:00:00Z|null"), rows);
+    }
+
+    @Test
+    public void spansBlocksAndOverflowingDictionaries() throws IOException {
+        int total = FeedbackBatchWriter.BLOCK_ROWS * 2 + 17;
+        FeedbackBatchReader reader = roundTrip(total);
+
+        List<String> last = new ArrayList<>();
+        long[] count = {0};
+        reader.forEach(row -> {
+            count[0]++;
+            last.clear();
+            last.add(row.urgency() + "|" + row.descricao());
+        });
+
+        assertEquals(total, count[0]);
+        assertEquals(total, reader.totalRows());
+        assertEquals("urgência-" + ((total - 1) % 300) + "|linha " + (total - 1), last.get(0));
+    }
+
+    @Test
+    public void feedsStatisticsWithoutParsingText() throws IOException {
+        FeedbackStats stats = new FeedbackStats();
+        roundTrip(3).forEach(row -> stats.add(row.urgency(), row.nota(), row.epochDay()));
+
+        assertEquals(3, stats.total());
+        assertEquals(8.75, stats.mediaNotas().getAsDouble(), 1e-9);
+        assertEquals(1, stats.alta());
+        assertNull(stats.avaliacoesPorDia().get("2026-01-02"));
+        assertEquals(Long.valueOf(1), stats.avaliacoesPorDia().get("2025-12-31"));
+    }
+
+    @Test
+    public void zonelessAndDateOnlyTimestampsKeepTheirDayThroughTheSpill() throws IOException {
+        List<Map<String, Object>> feedbacks = List.of(
+            Map.of("createdAt", "2025-12-30T23:30:00", "nota", "7", "urgency", "alta"),
+            Map.of("createdAt", "2025-12-31", "nota", "5", "urgency", "baixa"),
+            Map.of("createdAt", "2026-01-01T01:00:00-03:00", "nota", "3", "urgency", "media"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (FeedbackBatchWriter writer = new FeedbackBatchWriter(bytes)) {
+            for (Map<String, Object> feedback : feedbacks) {
+                writer.write((String) feedback.get("createdAt"), (String) feedback.get("nota"),
+                    (String) feedback.get("urgency"), null);
+            }
+        }
+
+        FeedbackStats fromList = new FeedbackStats();
+        feedbacks.forEach(fromList::accept);
+        FeedbackStats fromSpill = new FeedbackStats();
+        List<String> createdAts = new ArrayList<>();
+        new FeedbackBatchReader(ByteBuffer.wrap(bytes.toByteArray())).forEach(row -> {
+            fromSpill.add(row.urgency(), row.nota(), row.epochDay());
+            createdAts.add(row.createdAtText());
+        });
+
+        assertEquals(List.of("2025-12-30T23:30:00", "2025-12-31", "2026-01-01T01:00:00-03:00"), createdAts);
+        assertEquals(fromList.avaliacoesPorDia(), fromSpill.avaliacoesPorDia());
+        assertEquals(Long.valueOf(1), fromSpill.avaliacoesPorDia().get("2025-12-30"));
+        assertEquals(Long.valueOf(1), fromSpill.avaliacoesPorDia().get("2026-01-01"));
+    }
+}
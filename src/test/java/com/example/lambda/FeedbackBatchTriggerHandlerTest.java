@@ -0,0 +1,105 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+
+import org.junit.Test;
+import software.amazon.awssdk.services.sfn.SfnClient;
+import software.amazon.awssdk.services.sfn.model.ExecutionAlreadyExistsException;
+import software.amazon.awssdk.services.sfn.model.StartExecutionRequest;
+import software.amazon.awssdk.services.sfn.model.StartExecutionResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class FeedbackBatchTriggerHandlerTest {
+
+    // Step Functions local: um nome já usado responde ExecutionAlreadyExists, como o serviço
+    private static final class StubSfn implements SfnClient {
+        final List<StartExecutionRequest> started = new ArrayList<>();
+        final Set<String> names = new HashSet<>();
+
+        @Override
+        public StartExecutionResponse startExecution(StartExecutionRequest request) {
+            started.add(request);
+            if (!names.add(request.name())) {
+                throw ExecutionAlreadyExistsException.builder().message("Execution already exists").build();
+            }
+            return StartExecutionResponse.builder().executionArn("arn:execution:" + request.name()).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "states";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static List<SQSEvent.SQSMessage> messages(int count) {
+        List<SQSEvent.SQSMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+            message.setMessageId("msg-" + i);
+            message.setAttributes(Map.of("SentTimestamp", Long.toString(1_700_000_000_000L + i * 1000)));
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static SQSEvent batch(List<SQSEvent.SQSMessage> messages) {
+        SQSEvent batch = new SQSEvent();
+        batch.setRecords(messages);
+        return batch;
+    }
+
+    @Test
+    public void redeliveredBatchDoesNotStartASecondExecution() {
+        StubSfn sfn = new StubSfn();
+        FeedbackBatchTriggerHandler handler = new FeedbackBatchTriggerHandler(new AwsClients(sfn));
+        SQSEvent batch = batch(messages(3));
+
+        String first = handler.handleRequest(batch, new TestContext());
+        assertTrue(first, first.startsWith("arn:execution:feedbacks-20231114T221320Z-"));
+        assertTrue(sfn.started.get(0).input().contains("\"events\":3"));
+
+        // Mesmo lote de novo (falha depois do StartExecution, por exemplo): ExecutionAlreadyExists é sucesso
+        String second = handler.handleRequest(batch, new TestContext());
+        assertEquals(sfn.started.get(0).name(), second);
+        assertEquals(2, sfn.started.size());
+        assertEquals(sfn.started.get(0).name(), sfn.started.get(1).name());
+        assertEquals(1, sfn.names.size());
+    }
+
+    @Test
+    public void executionNameDependsOnTheMessageSetNotOnItsOrder() {
+        StubSfn sfn = new StubSfn();
+        FeedbackBatchTriggerHandler handler = new FeedbackBatchTriggerHandler(new AwsClients(sfn));
+
+        List<SQSEvent.SQSMessage> messages = messages(4);
+        handler.handleRequest(batch(messages), new TestContext());
+        List<SQSEvent.SQSMessage> reversed = new ArrayList<>(messages);
+        Collections.reverse(reversed);
+        handler.handleRequest(batch(reversed), new TestContext());
+        handler.handleRequest(batch(messages.subList(0, 3)), new TestContext());
+
+        String name = sfn.started.get(0).name();
+        assertEquals(name, sfn.started.get(1).name());
+        // Mesmo instante de abertura, outro conjunto de mensagens: outra execução
+        assertNotEquals(name, sfn.started.get(2).name());
+        assertEquals(2, sfn.names.size());
+        // Nome aceito pelo Step Functions: até 80 caracteres, letras, dígitos e hífen
+        for (String started : sfn.names) {
+            assertTrue(started, started.matches("feedbacks-\\d{8}T\\d{6}Z-[0-9a-f]{16}") && started.length() <= 80);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class FeedbackDrainerTest {
+
+    private static final int SHARDS = 4;
+
+    @Test
+    public void byteBudgetIsCheckedPerItemAndTheTokenResumesRightAfterTheLastOne() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        LocalDate day = LocalDate.parse("2025-12-29");
+        for (int d = 0; d < 7; d++) {
+            for (int i = 0; i < 25; i++) {
+                String createdAt = day.plusDays(d) + String.format("T%02d:%02d:00Z", i % 24, i);
+                ddb.put(FeedbackKeys.partitionKeyFor(createdAt, "x" + i, SHARDS), createdAt, "alta", "7");
+            }
+        }
+        ShardedFeedbackQuery query = new ShardedFeedbackQuery(ddb, new Metrics("test"), "feedbacks", SHARDS,
+            "2025-12-29T00:00:00Z", "2026-01-04T23:59:59Z", null);
+
+        List<Map<String, AttributeValue>> all = new ArrayList<>();
+        new FeedbackDrainer(100, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE).drain(query, null, all::add);
+        assertEquals(7 * 25, all.size());
+        // Orçamento que acaba no meio da primeira página de 100
+        long budget = 0;
+        for (int i = 0; i < 42; i++) {
+            budget += FeedbackDrainer.estimateSize(all.get(i));
+        }
+
+        List<Map<String, AttributeValue>> drained = new ArrayList<>();
+        FeedbackDrainer.Result first = new FeedbackDrainer(100, Long.MAX_VALUE, budget + 1, Long.MAX_VALUE)
+            .drain(query, null, drained::add);
+        assertEquals(42, first.items());
+        assertTrue(first.bytes() <= budget + 1);
+        assertFalse(first.exhausted());
+
+        FeedbackDrainer.Result rest = new FeedbackDrainer(100, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE)
+            .drain(query, first.nextToken(), drained::add);
+        assertTrue(rest.exhausted());
+        assertEquals(all, drained);
+
+        // Um item maior que o orçamento ainda sai sozinho, para o drain andar
+        FeedbackDrainer.Result tiny = new FeedbackDrainer(100, Long.MAX_VALUE, 1, Long.MAX_VALUE)
+            .drain(query, null, item -> { });
+        assertEquals(1, tiny.items());
+        assertFalse(tiny.exhausted());
+    }
+}
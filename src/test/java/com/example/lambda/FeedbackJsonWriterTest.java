@@ -0,0 +1,64 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.List;
+import java.util.Map;
+
+public class FeedbackJsonWriterTest {
+
+    private static AttributeValue s(String value) {
+        return AttributeValue.builder().s(value).build();
+    }
+
+    private static AttributeValue n(String value) {
+        return AttributeValue.builder().n(value).build();
+    }
+
+    @Test
+    public void writesItemsWithRealNumbers() throws Exception {
+        Map<String, AttributeValue> typed = Map.of(
+            "pk", s("FEEDBACK"), "createdAt", s("2025-12-30T10:00:00Z"), "urgency", s("alta"),
+            "nota", s("9"), "descricao", s("Atendimento \"ótimo\""),
+            "tags", AttributeValue.builder().l(s("a"), n("2.5")).build(),
+            "meta", AttributeValue.builder().m(Map.of("lido", AttributeValue.builder().bool(true).build())).build());
+        Map<String, AttributeValue> invalid = Map.of("createdAt", s("2025-12-31T10:00:00Z"), "nota", s("08"));
+
+        FeedbackJsonWriter writer = new FeedbackJsonWriter();
+        String body = writer.page(new FeedbackPage(List.of(typed, invalid), Map.of("after", "x", "emitted", List.of("p0"))),
+            "2025-12-29T00:00:00Z", "2026-01-04T23:59:59Z", null);
+        JsonNode json = new ObjectMapper().readTree(body);
+
+        assertEquals(2, json.get("count").asInt());
+        JsonNode first = json.get("items").get(0);
+        assertTrue(first.get("nota").isNumber());
+        assertEquals(9, first.get("nota").asInt());
+        assertEquals("Atendimento \"ótimo\"", first.get("descricao").asText());
+        assertEquals(2.5, first.get("tags").get(1).asDouble(), 0.0);
+        assertTrue(first.get("meta").get("lido").asBoolean());
+        assertEquals("08", json.get("items").get(1).get("nota").asText());
+        assertEquals("p0", json.get("nextToken").get("emitted").get(0).asText());
+        assertTrue(json.get("urgency").isNull());
+
+        // O buffer é reaproveitado: a segunda página não carrega restos da primeira
+        String empty = writer.page(new FeedbackPage(List.of(), null), "a", "b", "alta");
+        assertEquals(0, new ObjectMapper().readTree(empty).get("count").asInt());
+    }
+
+    @Test
+    public void recognizesJsonNumbers() {
+        for (String number : List.of("0", "7", "-3", "8.5", "1e3", "2.5E-2")) {
+            assertTrue(number, FeedbackJsonWriter.isJsonNumber(number));
+        }
+        for (String text : List.of("", "-", "08", "8.", ".5", "1e", "NaN", " 8", "8a")) {
+            assertFalse(text, FeedbackJsonWriter.isJsonNumber(text));
+        }
+    }
+}
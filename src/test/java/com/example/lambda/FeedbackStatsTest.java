@@ -0,0 +1,98 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FeedbackStatsTest {
+
+    private static Map<String, Object> feedback(String createdAt, String nota, String urgency) {
+        Map<String, Object> feedback = new HashMap<>();
+        feedback.put("createdAt", createdAt);
+        feedback.put("nota", nota);
+        feedback.put("urgency", urgency);
+        return feedback;
+    }
+
+    @Test
+    public void matchesTheWeeklySample() {
+        List<Map<String, Object>> feedbacks = List.of(
+            feedback("2025-12-30T10:00:00Z", "9", "alta"),
+            feedback("2025-12-31T14:30:00Z", "8", "media"),
+            feedback("2026-01-02T09:15:00Z", "6", "baixa"));
+
+        FeedbackStats stats = feedbacks.stream().collect(FeedbackStats.collector());
+
+        assertEquals(3, stats.total());
+        assertEquals(7.67, stats.mediaNotas().getAsDouble(), 0.005);
+        assertEquals(1, stats.alta());
+        assertEquals(1, stats.media());
+        assertEquals(1, stats.baixa());
+        assertEquals(Map.of("2025-12-30", 1L, "2025-12-31", 1L, "2026-01-02", 1L), stats.avaliacoesPorDia());
+    }
+
+    @Test
+    public void ignoresInvalidNotasAndDatesLikeTheReport() {
+        List<Map<String, Object>> feedbacks = List.of(
+            feedback("2025-12-30T10:00:00Z", "abc", "alta"),
+            feedback("2025-12", "8.5", "urgente"),
+            feedback(null, "0", null));
+
+        FeedbackStats stats = feedbacks.stream().collect(FeedbackStats.collector());
+
+        assertEquals(3, stats.total());
+        assertEquals(8.5, stats.mediaNotas().getAsDouble(), 0.0);
+        assertEquals(1, stats.notasInvalidas());
+        assertEquals(Map.of("2025-12-30", 1L, FeedbackStats.DATA_INVALIDA, 1L), stats.avaliacoesPorDia());
+    }
+
+    @Test
+    public void parallelCombineEqualsSequential() {
+        List<Map<String, Object>> feedbacks = new ArrayList<>();
+        LocalDate first = LocalDate.parse("2024-01-01");
+        for (int i = 0; i < 20_000; i++) {
+            feedbacks.add(feedback(first.plusDays(i % 900) + "T08:00:00Z", Integer.toString(i % 11), i % 2 == 0 ? "alta" : "baixa"));
+        }
+
+        FeedbackStats sequential = feedbacks.stream().collect(FeedbackStats.collector());
+        FeedbackStats parallel = feedbacks.parallelStream().collect(FeedbackStats.collector());
+
+        assertEquals(sequential.total(), parallel.total());
+        assertEquals(sequential.mediaNotas().getAsDouble(), parallel.mediaNotas().getAsDouble(), 1e-9);
+        assertEquals(sequential.alta(), parallel.alta());
+        assertEquals(sequential.avaliacoesPorDia(), parallel.avaliacoesPorDia());
+        assertEquals(900, parallel.avaliacoesPorDia().size());
+    }
+
+    @Test
+    public void epochDayMatchesLocalDate() {
+        for (LocalDate day = LocalDate.parse("1999-12-25"); day.isBefore(LocalDate.parse("2031-01-10")); day = day.plusDays(17)) {
+            assertEquals(day.toEpochDay(), FeedbackStats.epochDay(day + "T00:00:00Z"));
+        }
+        assertEquals(FeedbackStats.NO_DAY, FeedbackStats.epochDay("2025/12/30T10"));
+        assertEquals(FeedbackStats.NO_DAY, FeedbackStats.epochDay("2025-13-01"));
+    }
+
+    @Test
+    public void epochDayRejectsDaysPastTheEndOfTheMonth() {
+        assertEquals(LocalDate.parse("2024-02-29").toEpochDay(), FeedbackStats.epochDay("2024-02-29T12:00:00Z"));
+        assertEquals(LocalDate.parse("2000-02-29").toEpochDay(), FeedbackStats.epochDay("2000-02-29"));
+        assertEquals(FeedbackStats.NO_DAY, FeedbackStats.epochDay("2024-02-30T12:00:00Z"));
+        assertEquals(FeedbackStats.NO_DAY, FeedbackStats.epochDay("2023-02-29T12:00:00Z"));
+        assertEquals(FeedbackStats.NO_DAY, FeedbackStats.epochDay("1900-02-29"));
+        assertEquals(FeedbackStats.NO_DAY, FeedbackStats.epochDay("2024-04-31"));
+        assertEquals(LocalDate.parse("2024-12-31").toEpochDay(), FeedbackStats.epochDay("2024-12-31"));
+
+        // Data impossível conta como inválida, não como o dia seguinte
+        FeedbackStats stats = new FeedbackStats();
+        stats.accept(feedback("2024-02-30T12:00:00Z", "4", "alta"));
+        assertEquals(1, stats.datasInvalidas());
+        assertEquals(Map.of(FeedbackStats.DATA_INVALIDA, 1L), stats.avaliacoesPorDia());
+    }
+}
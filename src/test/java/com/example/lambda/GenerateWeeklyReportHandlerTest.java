@@ -0,0 +1,241 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class GenerateWeeklyReportHandlerTest {
+
+    private static Map<String, Object> event(String descricao) {
+        Map<String, Object> input = new HashMap<>();
+        input.put("startDate", "2024-01-01T00:00:00Z");
+        input.put("endDate", "2024-01-07T23:59:59Z");
+        input.put("feedbacks", List.of(
+            Map.of("createdAt", "2024-01-02T10:00:00Z", "nota", "5", "urgency", "alta", "descricao", descricao),
+            Map.of("createdAt", "2024-01-03T10:00:00Z", "nota", "2", "urgency", "baixa")));
+        return input;
+    }
+
+    @Test
+    public void duplicateInputReusesTheExistingReport() {
+        InMemoryS3 s3 = new InMemoryS3();
+        GenerateWeeklyReportHandler handler = new GenerateWeeklyReportHandler(new AwsClients(null, s3, null));
+
+        String first = handler.handleRequest(event("Ótimo atendimento"), new TestContext());
+        assertTrue(first, first.startsWith("weekly-report-2024-01-01_2024-01-07-"));
+        assertTrue(s3.objects.containsKey(first));
+        int uploads = s3.puts.get() + s3.parts.get();
+
+        // Repetição do passo (ou evento duplicado): mesma chave, nenhum upload novo
+        TestContext retry = new TestContext();
+        assertEquals(first, handler.handleRequest(event("Ótimo atendimento"), retry));
+        assertEquals(uploads, s3.puts.get() + s3.parts.get());
+        assertTrue(retry.logs.stream().anyMatch(line -> line.contains("já existe")));
+
+        // Entrada diferente no mesmo período gera outro relatório
+        String changed = handler.handleRequest(event("Atendimento demorado"), new TestContext());
+        assertNotEquals(first, changed);
+        assertTrue(s3.objects.containsKey(changed));
+    }
+
+    @Test
+    public void variantsAreWrittenAsSeparateObjectsFromOnePass() {
+        InMemoryS3 s3 = new InMemoryS3();
+        GenerateWeeklyReportHandler handler = new GenerateWeeklyReportHandler(new AwsClients(null, s3, null));
+        Map<String, Object> input = event("Ótimo atendimento");
+        input.put("feedbacks", List.of(
+            Map.of("createdAt", "2023-12-30T10:00:00Z", "nota", "9", "urgency", "media", "descricao", "Fim de ano"),
+            Map.of("createdAt", "2024-01-02T10:00:00Z", "nota", "5", "urgency", "alta", "descricao", "Ótimo atendimento"),
+            Map.of("createdAt", "2024-01-03T10:00:00Z", "nota", "2", "urgency", "baixa")));
+        input.put("variants", ReportVariants.ALL);
+
+        String weekly = handler.handleRequest(input, new TestContext());
+        String hash = weekly.substring("weekly-report-".length());
+        assertTrue(s3.objects.get(weekly) != null);
+
+        String rolling = text(s3, "report-rolling7-" + hash);
+        assertTrue(rolling, rolling.contains("Período: 2024-01-01 a 2024-01-07"));
+        assertTrue(rolling, rolling.contains("Total de feedbacks: 2"));
+        assertTrue(text(s3, "report-monthly-" + hash).contains("Total de feedbacks: 2"));
+        String urgency = text(s3, "report-urgency-" + hash);
+        assertTrue(urgency, urgency.contains("=== URGÊNCIA MEDIA ===\nTotal de feedbacks: 1"));
+        String extremes = text(s3, "report-extremes-" + hash);
+        assertTrue(extremes, extremes.contains("=== MAIORES NOTAS ===\n1. Nota: 9"));
+        assertTrue(extremes, extremes.contains("=== MENORES NOTAS ===\n1. Nota: 2"));
+
+        // Tudo já existe: a repetição não envia nada
+        int uploads = s3.puts.get() + s3.parts.get();
+        assertEquals(weekly, handler.handleRequest(input, new TestContext()));
+        assertEquals(uploads, s3.puts.get() + s3.parts.get());
+    }
+
+    @Test
+    public void oversizedInputIsSpilledToDiskWithTheSameKeyOnBothEntryPoints() throws Exception {
+        List<Map<String, Object>> feedbacks = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            feedbacks.add(Map.of("createdAt", String.format("2024-01-0%dT10:%02d:%02dZ", 1 + i % 7, i / 60 % 60, i % 60),
+                "nota", Integer.toString(1 + i % 10), "urgency", i % 3 == 0 ? "alta" : "baixa",
+                "descricao", "Feedback " + i));
+        }
+        Map<String, Object> input = event("Ótimo atendimento");
+        input.put("feedbacks", feedbacks);
+        byte[] json = new ObjectMapper().writeValueAsBytes(input);
+
+        InMemoryS3 s3 = new InMemoryS3();
+        GenerateWeeklyReportHandler handler = new GenerateWeeklyReportHandler(new AwsClients(null, s3, null), 64 * 1024);
+        TestContext context = new TestContext();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.handleStream(new ByteArrayInputStream(json), output, context);
+        String spilled = new ObjectMapper().readValue(output.toByteArray(), String.class);
+        assertTrue(context.logs.stream().anyMatch(line -> line.contains("despejados em /tmp: 3000 feedbacks")));
+        String report = text(s3, spilled);
+        assertTrue(report, report.contains("Total de feedbacks: 3000"));
+        assertTrue(report, report.contains("3000. Nota: 10 | Urgência: baixa | Data: 2024-01-04T10:49:59Z\n   Descrição: Feedback 2999"));
+
+        // A mesma lista já desserializada cai no mesmo despejo e, portanto, na mesma chave
+        int uploads = s3.puts.get() + s3.parts.get();
+        assertEquals(spilled, handler.handleRequest(input, new TestContext()));
+        assertEquals(uploads, s3.puts.get() + s3.parts.get());
+
+        // Abaixo do limite os dois caminhos usam a lista em memória
+        GenerateWeeklyReportHandler roomy = new GenerateWeeklyReportHandler(new AwsClients(null, s3, null), Long.MAX_VALUE);
+        output.reset();
+        roomy.handleStream(new ByteArrayInputStream(json), output, new TestContext());
+        String inMemory = new ObjectMapper().readValue(output.toByteArray(), String.class);
+        assertNotEquals(spilled, inMemory);
+        assertEquals(inMemory, roomy.handleRequest(input, new TestContext()));
+    }
+
+    @Test
+    public void spilledReportShowsTimestampsAsReceived() {
+        Map<String, Object> input = event("Ótimo atendimento");
+        input.put("variants", List.of("extremes"));
+        input.put("feedbacks", List.of(
+            Map.of("createdAt", "2024-01-02T10:00:00-03:00", "nota", "5", "urgency", "alta", "descricao", "Com fuso"),
+            Map.of("createdAt", "2024-01-03T10:00:00.250Z", "nota", "2", "urgency", "baixa"),
+            Map.of("createdAt", "2024-01-04T08:00:00", "nota", "8.5", "urgency", "media")));
+        InMemoryS3 s3 = new InMemoryS3();
+
+        String listKey = new GenerateWeeklyReportHandler(new AwsClients(null, s3, null), Long.MAX_VALUE)
+            .handleRequest(input, new TestContext());
+        TestContext context = new TestContext();
+        String spillKey = new GenerateWeeklyReportHandler(new AwsClients(null, s3, null), 1)
+            .handleRequest(input, context);
+
+        assertTrue(context.logs.stream().anyMatch(line -> line.contains("despejados em /tmp: 3 feedbacks")));
+        String spilled = text(s3, spillKey);
+        assertTrue(spilled, spilled.contains("1. Nota: 5 | Urgência: alta | Data: 2024-01-02T10:00:00-03:00"));
+        assertTrue(spilled, spilled.contains("2. Nota: 2 | Urgência: baixa | Data: 2024-01-03T10:00:00.250Z"));
+        assertEquals(text(s3, listKey), spilled);
+        assertEquals(text(s3, "report-extremes-" + listKey.substring("weekly-report-".length())),
+            text(s3, "report-extremes-" + spillKey.substring("weekly-report-".length())));
+    }
+
+    @Test
+    public void aggregatesReportUsesOneWindowForStatsDetailsAndVariants() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        // 2024-01-03 só existe nos agregados: entra no mês, fora do período do relatório
+        ddb.days.put("2024-01-03", aggregateRow("2024-01-03", 4, 28, 0, 4, 0));
+        ddb.days.put("2024-01-16", aggregateRow("2024-01-16", 1, 5, 1, 0, 0));
+        ddb.days.put("2024-01-17", aggregateRow("2024-01-17", 1, 2, 0, 0, 1));
+        InMemoryS3 s3 = new InMemoryS3();
+        GenerateWeeklyReportHandler handler = new GenerateWeeklyReportHandler(new AwsClients(ddb, s3, null), Long.MAX_VALUE, "stats");
+
+        Map<String, Object> input = new HashMap<>();
+        input.put("startDate", "2024-01-15T00:00:00Z");
+        input.put("endDate", "2024-01-21T23:59:59Z");
+        input.put("statsSource", "aggregates");
+        input.put("variants", ReportVariants.ALL);
+        input.put("feedbacks", List.of(
+            Map.of("createdAt", "2024-01-10T10:00:00Z", "nota", "10", "urgency", "alta", "descricao", "Fora do período"),
+            Map.of("createdAt", "2024-01-16T10:00:00Z", "nota", "5", "urgency", "alta", "descricao", "Ótimo atendimento"),
+            Map.of("createdAt", "2024-01-17T10:00:00Z", "nota", "2", "urgency", "baixa")));
+
+        String weekly = handler.handleRequest(input, new TestContext());
+        String hash = weekly.substring("weekly-report-".length());
+        String report = text(s3, weekly);
+        assertTrue(report, report.contains("Total de feedbacks: 2"));
+        assertTrue(report, report.contains("2. Nota: 2 | Urgência: baixa | Data: 2024-01-17T10:00:00Z"));
+        assertTrue(report, !report.contains("Fora do período"));
+        assertTrue(text(s3, "report-rolling7-" + hash).contains("Total de feedbacks: 2"));
+        String monthly = text(s3, "report-monthly-" + hash);
+        assertTrue(monthly, monthly.contains("Período: 2024-01-01 a 2024-01-21"));
+        assertTrue(monthly, monthly.contains("Total de feedbacks: 6"));
+        String extremes = text(s3, "report-extremes-" + hash);
+        assertTrue(extremes, extremes.contains("=== MAIORES NOTAS ===\n1. Nota: 5"));
+        assertTrue(extremes, !extremes.contains("Fora do período"));
+    }
+
+    @Test
+    public void spilledInputOutsideTheAggregatesWindowCountsAsEmptyLikeTheList() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        ddb.days.put("2024-01-16", aggregateRow("2024-01-16", 1, 5, 1, 0, 0));
+        InMemoryS3 s3 = new InMemoryS3();
+        Map<String, Object> input = new HashMap<>();
+        input.put("startDate", "2024-01-15T00:00:00Z");
+        input.put("endDate", "2024-01-21T23:59:59Z");
+        input.put("statsSource", "aggregates");
+        input.put("feedbacks", List.of(
+            Map.of("createdAt", "2024-01-10T10:00:00Z", "nota", "10", "urgency", "alta", "descricao", "Fora do período")));
+
+        String fromList = text(s3, new GenerateWeeklyReportHandler(new AwsClients(ddb, s3, null), Long.MAX_VALUE, "stats")
+            .handleRequest(input, new TestContext()));
+        TestContext context = new TestContext();
+        String fromSpill = text(s3, new GenerateWeeklyReportHandler(new AwsClients(ddb, s3, null), 1, "stats")
+            .handleRequest(input, context));
+
+        assertTrue(context.logs.stream().anyMatch(line -> line.contains("despejados em /tmp")));
+        assertTrue(fromList, !fromList.contains("DETALHES"));
+        assertEquals(fromList, fromSpill);
+    }
+
+    @Test
+    public void unknownOrUnavailableStatsSourceIsRejected() {
+        InMemoryS3 s3 = new InMemoryS3();
+        Map<String, Object> input = event("Ótimo atendimento");
+        input.put("statsSource", "aggregate");
+        GenerateWeeklyReportHandler withTable = new GenerateWeeklyReportHandler(new AwsClients(new InMemoryDynamoDb(), s3, null), Long.MAX_VALUE, "stats");
+        try {
+            withTable.handleRequest(input, new TestContext());
+            fail("statsSource inválido deveria falhar");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Origem de estatísticas desconhecida: aggregate"));
+        }
+
+        input.put("statsSource", "approximate");
+        GenerateWeeklyReportHandler withoutTable = new GenerateWeeklyReportHandler(new AwsClients(null, s3, null), Long.MAX_VALUE, null);
+        try {
+            withoutTable.handleRequest(input, new TestContext());
+            fail("approximate sem tabela de agregados deveria falhar");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("precisa da tabela de agregados"));
+        }
+        assertTrue(s3.objects.isEmpty());
+    }
+
+    private static Map<String, AttributeValue> aggregateRow(String day, long count, double notaSum, long alta, long media, long baixa) {
+        Map<String, AttributeValue> row = new HashMap<>(DailyAggregate.key(day));
+        new DailyAggregate(day, count, count, notaSum, alta, media, baixa).toUpdateValues()
+            .forEach((name, value) -> row.put(name.substring(1), value));
+        return row;
+    }
+
+    private static String text(InMemoryS3 s3, String key) {
+        byte[] bytes = s3.objects.get(key);
+        assertTrue(key, bytes != null);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.CancellationReason;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.Put;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItem;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsRequest;
+import software.amazon.awssdk.services.dynamodb.model.TransactWriteItemsResponse;
+import software.amazon.awssdk.services.dynamodb.model.TransactionCanceledException;
+import software.amazon.awssdk.services.dynamodb.model.Update;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tabela de feedbacks em memória que entende as queries feitas pelos handlers
+ * (pk + createdAt BETWEEN, filtro por urgência, limit e exclusiveStartKey), mais as linhas por
+ * dia da tabela de agregados (GetItem, UpdateItem e TransactWriteItems com "SET"/"ADD" e as
+ * condições de versão e de marcador) e o BatchWriteItem da ingestão, com as mesmas validações do
+ * DynamoDB.
+ */
+class InMemoryDynamoDb implements DynamoDbClient {
+
+    final Map<String, TreeMap<String, Map<String, AttributeValue>>> partitions = new ConcurrentHashMap<>();
+    final AtomicInteger queries = new AtomicInteger();
+    final Map<String, Map<String, AttributeValue>> days = new ConcurrentHashMap<>();
+    final AtomicInteger batchWrites = new AtomicInteger();
+    // Próximos BatchWriteItem que devolvem metade dos itens em UnprocessedItems (partição sem capacidade)
+    final AtomicInteger throttledWrites = new AtomicInteger();
+    // Dias cujas transações falham com erro do serviço (não condicional)
+    final Set<String> failingDays = ConcurrentHashMap.newKeySet();
+
+    void put(String pk, String createdAt, String urgency, String nota) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("pk", AttributeValue.builder().s(pk).build());
+        item.put("createdAt", AttributeValue.builder().s(createdAt).build());
+        item.put("urgency", AttributeValue.builder().s(urgency).build());
+        item.put(FeedbackKeys.URGENCY_DAY, AttributeValue.builder().s(FeedbackKeys.urgencyDay(urgency, FeedbackKeys.dayOf(createdAt))).build());
+        item.put("nota", AttributeValue.builder().s(nota).build());
+        item.put("descricao", AttributeValue.builder().s("feedback " + createdAt).build());
+        partitions.computeIfAbsent(pk, k -> new TreeMap<>()).put(createdAt, item);
+    }
+
+    @Override
+    public QueryResponse query(QueryRequest request) {
+        queries.incrementAndGet();
+        if (request.indexName() != null) {
+            return queryUrgencyIndex(request);
+        }
+        Map<String, AttributeValue> values = request.expressionAttributeValues();
+        String pk = values.get(":pk").s();
+        String start = values.get(":start").s();
+        String end = values.get(":end").s();
+        String urgency = values.containsKey(":urgency") ? values.get(":urgency").s() : null;
+
+        TreeMap<String, Map<String, AttributeValue>> partition = partitions.getOrDefault(pk, new TreeMap<>());
+        String from = start;
+        boolean inclusive = true;
+        if (request.hasExclusiveStartKey()) {
+            String startKey = request.exclusiveStartKey().get("createdAt").s();
+            if (startKey.compareTo(from) >= 0) {
+                from = startKey;
+                inclusive = false;
+            }
+        }
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        Map<String, AttributeValue> lastEvaluated = null;
+        int evaluated = 0;
+        for (Map<String, AttributeValue> item : partition.subMap(from, inclusive, end, true).values()) {
+            if (request.limit() != null && evaluated == request.limit()) {
+                break;
+            }
+            evaluated++;
+            lastEvaluated = Map.of("pk", item.get("pk"), "createdAt", item.get("createdAt"));
+            if (urgency == null || urgency.equals(item.get("urgency").s())) {
+                items.add(item);
+            }
+        }
+        boolean more = lastEvaluated != null
+            && !partition.subMap(lastEvaluated.get("createdAt").s(), false, end, true).isEmpty()
+            && request.limit() != null && evaluated == request.limit();
+
+        return QueryResponse.builder()
+            .items(items)
+            .count(items.size())
+            .scannedCount(evaluated)
+            .lastEvaluatedKey(more ? lastEvaluated : Map.of())
+            .build();
+    }
+
+    // GSI (urgencyDay, createdAt): itens de todas as partições, ordenados por createdAt e pk
+    private QueryResponse queryUrgencyIndex(QueryRequest request) {
+        Map<String, AttributeValue> values = request.expressionAttributeValues();
+        String urgencyDay = values.get(":urgencyDay").s();
+        String start = values.get(":start").s();
+        String end = values.get(":end").s();
+        String after = null;
+        if (request.hasExclusiveStartKey()) {
+            after = request.exclusiveStartKey().get("createdAt").s() + "|" + request.exclusiveStartKey().get("pk").s();
+        }
+
+        TreeMap<String, Map<String, AttributeValue>> index = new TreeMap<>();
+        for (TreeMap<String, Map<String, AttributeValue>> partition : partitions.values()) {
+            for (Map<String, AttributeValue> item : partition.subMap(start, true, end, true).values()) {
+                AttributeValue itemKey = item.get(FeedbackKeys.URGENCY_DAY);
+                if (itemKey != null && urgencyDay.equals(itemKey.s())) {
+                    index.put(item.get("createdAt").s() + "|" + item.get("pk").s(), item);
+                }
+            }
+        }
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>(
+            (after == null ? index : index.tailMap(after, false)).values());
+        boolean more = request.limit() != null && items.size() > request.limit();
+        if (more) {
+            items = items.subList(0, request.limit());
+        }
+        Map<String, AttributeValue> last = more ? items.get(items.size() - 1) : null;
+        return QueryResponse.builder()
+            .items(items)
+            .count(items.size())
+            .scannedCount(items.size())
+            .lastEvaluatedKey(last == null ? Map.of()
+                : Map.of(FeedbackKeys.URGENCY_DAY, last.get(FeedbackKeys.URGENCY_DAY), "createdAt", last.get("createdAt"), "pk", last.get("pk")))
+            .build();
+    }
+
+    @Override
+    public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+        batchWrites.incrementAndGet();
+        Map.Entry<String, List<WriteRequest>> table = request.requestItems().entrySet().iterator().next();
+        List<WriteRequest> writes = table.getValue();
+        Set<String> keys = new HashSet<>();
+        for (WriteRequest write : writes) {
+            Map<String, AttributeValue> item = write.putRequest().item();
+            if (!keys.add(item.get("pk").s() + "|" + item.get("createdAt").s())) {
+                throw DynamoDbException.builder().message("Provided list of item keys contains duplicates").statusCode(400).build();
+            }
+        }
+        if (writes.isEmpty() || writes.size() > 25) {
+            throw DynamoDbException.builder().message("Too many items requested for the BatchWriteItem call").statusCode(400).build();
+        }
+        int accepted = throttledWrites.getAndUpdate(n -> Math.max(0, n - 1)) > 0 ? writes.size() / 2 : writes.size();
+        for (WriteRequest write : writes.subList(0, accepted)) {
+            Map<String, AttributeValue> item = write.putRequest().item();
+            partitions.computeIfAbsent(item.get("pk").s(), k -> new TreeMap<>()).put(item.get("createdAt").s(), item);
+        }
+        List<WriteRequest> unprocessed = writes.subList(accepted, writes.size());
+        return BatchWriteItemResponse.builder()
+            .unprocessedItems(unprocessed.isEmpty() ? Map.of() : Map.of(table.getKey(), List.copyOf(unprocessed)))
+            .build();
+    }
+
+    // Linhas dos agregados diários (a projeção é ignorada)
+    @Override
+    public BatchGetItemResponse batchGetItem(BatchGetItemRequest request) {
+        Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<>();
+        request.requestItems().forEach((table, keys) -> {
+            List<Map<String, AttributeValue>> rows = new ArrayList<>();
+            for (Map<String, AttributeValue> key : keys.keys()) {
+                Map<String, AttributeValue> item = days.get(key.get("day").s());
+                if (item != null) {
+                    rows.add(new HashMap<>(item));
+                }
+            }
+            responses.put(table, rows);
+        });
+        return BatchGetItemResponse.builder().responses(responses).build();
+    }
+
+    @Override
+    public GetItemResponse getItem(GetItemRequest request) {
+        Map<String, AttributeValue> item = days.get(request.key().get("day").s());
+        return GetItemResponse.builder().item(item == null ? Map.of() : new HashMap<>(item)).build();
+    }
+
+    @Override
+    public synchronized UpdateItemResponse updateItem(UpdateItemRequest request) {
+        if (!conditionHolds(days.get(request.key().get("day").s()), request.conditionExpression(), request.expressionAttributeNames(), request.expressionAttributeValues())) {
+            throw ConditionalCheckFailedException.builder().message("versão mudou").build();
+        }
+        days.put(request.key().get("day").s(),
+            update(row(request.key()), request.updateExpression(), request.expressionAttributeNames(), request.expressionAttributeValues()));
+        return UpdateItemResponse.builder().build();
+    }
+
+    // Linhas da tabela de agregados: Update na linha do dia e Put dos marcadores de evento
+    @Override
+    public synchronized TransactWriteItemsResponse transactWriteItems(TransactWriteItemsRequest request) {
+        List<CancellationReason> reasons = new ArrayList<>();
+        boolean cancelled = false;
+        for (TransactWriteItem write : request.transactItems()) {
+            boolean holds;
+            if (write.update() != null) {
+                Update update = write.update();
+                if (failingDays.contains(update.key().get("day").s())) {
+                    throw DynamoDbException.builder().message("Internal server error").statusCode(500).build();
+                }
+                holds = conditionHolds(days.get(update.key().get("day").s()), update.conditionExpression(),
+                    update.expressionAttributeNames(), update.expressionAttributeValues());
+            } else {
+                Put put = write.put();
+                holds = conditionHolds(days.get(put.item().get("day").s()), put.conditionExpression(),
+                    put.expressionAttributeNames(), put.expressionAttributeValues());
+            }
+            cancelled |= !holds;
+            reasons.add(CancellationReason.builder().code(holds ? "None" : "ConditionalCheckFailed").build());
+        }
+        if (cancelled) {
+            throw TransactionCanceledException.builder().message("Transaction cancelled").cancellationReasons(reasons).build();
+        }
+        for (TransactWriteItem write : request.transactItems()) {
+            if (write.update() != null) {
+                Update update = write.update();
+                days.put(update.key().get("day").s(),
+                    update(row(update.key()), update.updateExpression(), update.expressionAttributeNames(), update.expressionAttributeValues()));
+            } else {
+                days.put(write.put().item().get("day").s(), new HashMap<>(write.put().item()));
+            }
+        }
+        return TransactWriteItemsResponse.builder().build();
+    }
+
+    private Map<String, AttributeValue> row(Map<String, AttributeValue> key) {
+        return new HashMap<>(days.getOrDefault(key.get("day").s(), key));
+    }
+
+    // Sem linha (item null) toda condição vale; "attribute_not_exists(v)" (linha nova) ou "attribute_not_exists(v) OR v = :expected" (versão)
+    private static boolean conditionHolds(Map<String, AttributeValue> item, String condition,
+                                          Map<String, String> names, Map<String, AttributeValue> values) {
+        if (condition == null || item == null) {
+            return true;
+        }
+        String attribute = name(condition.substring("attribute_not_exists(".length(), condition.indexOf(')')), names);
+        if (!item.containsKey(attribute)) {
+            return true;
+        }
+        return condition.contains(" OR ") && item.get(attribute).equals(values.get(":expected"));
+    }
+
+    // "SET a = :a, ..." e/ou "ADD b :b, ..." com números
+    private static Map<String, AttributeValue> update(Map<String, AttributeValue> item, String expression,
+                                                      Map<String, String> names, Map<String, AttributeValue> values) {
+        int add = expression.startsWith("ADD ") ? 0 : expression.indexOf(" ADD ") + 1;
+        if (expression.startsWith("SET ")) {
+            String set = add > 0 ? expression.substring(4, add - 1) : expression.substring(4);
+            for (String assignment : set.split(", ")) {
+                String[] parts = assignment.split(" = ");
+                item.put(name(parts[0], names), values.get(parts[1]));
+            }
+        } else if (add != 0) {
+            throw new UnsupportedOperationException(expression);
+        }
+        if (add > 0 || expression.startsWith("ADD ")) {
+            for (String increment : expression.substring(add + 4).split(", ")) {
+                String[] parts = increment.split(" ");
+                AttributeValue current = item.get(name(parts[0], names));
+                BigDecimal sum = new BigDecimal(values.get(parts[1]).n()).add(current == null ? BigDecimal.ZERO : new BigDecimal(current.n()));
+                item.put(name(parts[0], names), AttributeValue.builder().n(sum.toPlainString()).build());
+            }
+        }
+        return item;
+    }
+
+    private static String name(String token, Map<String, String> names) {
+        return token.startsWith("#") ? names.get(token) : token;
+    }
+
+    @Override
+    public String serviceName() {
+        return "dynamodb";
+    }
+
+    @Override
+    public void close() {
+    }
+}
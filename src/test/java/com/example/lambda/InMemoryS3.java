@@ -0,0 +1,159 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bucket S3 em memória com o subconjunto de operações usado pelos handlers.
+ */
+class InMemoryS3 implements S3Client {
+
+    final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+    final AtomicInteger puts = new AtomicInteger();
+    final AtomicInteger parts = new AtomicInteger();
+    final AtomicLong bytesRead = new AtomicLong();
+    private final Map<String, TreeMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    private static byte[] read(RequestBody body) {
+        try (InputStream in = body.contentStreamProvider().newStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public HeadBucketResponse headBucket(HeadBucketRequest request) {
+        return HeadBucketResponse.builder().build();
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest request) {
+        byte[] bytes = objects.get(request.key());
+        if (bytes == null) {
+            throw NoSuchKeyException.builder().message("NoSuchKey: " + request.key()).build();
+        }
+        return HeadObjectResponse.builder()
+            .contentLength((long) bytes.length)
+            .contentType(contentTypes.get(request.key()))
+            .build();
+    }
+
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+        puts.incrementAndGet();
+        objects.put(request.key(), read(body));
+        if (request.contentType() != null) {
+            contentTypes.put(request.key(), request.contentType());
+        }
+        return PutObjectResponse.builder().eTag(UUID.randomUUID().toString()).build();
+    }
+
+    @Override
+    public <T> T getObject(GetObjectRequest request, ResponseTransformer<GetObjectResponse, T> transformer) {
+        byte[] bytes = objects.get(request.key());
+        if (bytes == null) {
+            throw NoSuchKeyException.builder().message("NoSuchKey: " + request.key()).build();
+        }
+        GetObjectResponse.Builder response = GetObjectResponse.builder().contentType(contentTypes.get(request.key()));
+        if (request.range() != null) {
+            // "bytes=início-fim" ou "bytes=-últimos", como o S3
+            String range = request.range().substring("bytes=".length());
+            int dash = range.indexOf('-');
+            int from = dash == 0 ? Math.max(0, bytes.length - Integer.parseInt(range.substring(1))) : Integer.parseInt(range.substring(0, dash));
+            int to = dash == 0 || dash == range.length() - 1 ? bytes.length - 1 : Math.min(bytes.length - 1, Integer.parseInt(range.substring(dash + 1)));
+            response.contentRange("bytes " + from + "-" + to + "/" + bytes.length);
+            bytes = Arrays.copyOfRange(bytes, from, to + 1);
+        }
+        response.contentLength((long) bytes.length);
+        bytesRead.addAndGet(bytes.length);
+        try {
+            return transformer.transform(response.build(), AbortableInputStream.create(new ByteArrayInputStream(bytes)));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+        return getObject(request, ResponseTransformer.toInputStream());
+    }
+
+    @Override
+    public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new TreeMap<>());
+        if (request.contentType() != null) {
+            contentTypes.put(request.key(), request.contentType());
+        }
+        return CreateMultipartUploadResponse.builder().uploadId(uploadId).build();
+    }
+
+    @Override
+    public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody body) {
+        parts.incrementAndGet();
+        uploads.get(request.uploadId()).put(request.partNumber(), read(body));
+        return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        TreeMap<Integer, byte[]> received = uploads.remove(request.uploadId());
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        for (CompletedPart part : request.multipartUpload().parts()) {
+            object.writeBytes(received.get(part.partNumber()));
+        }
+        objects.put(request.key(), object.toByteArray());
+        return CompleteMultipartUploadResponse.builder().key(request.key()).build();
+    }
+
+    @Override
+    public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+        uploads.remove(request.uploadId());
+        return AbortMultipartUploadResponse.builder().build();
+    }
+
+    @Override
+    public String serviceName() {
+        return "s3";
+    }
+
+    @Override
+    public void close() {
+    }
+}
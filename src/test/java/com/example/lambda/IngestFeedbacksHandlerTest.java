@@ -0,0 +1,127 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class IngestFeedbacksHandlerTest {
+
+    private static Map<String, Object> post(String body) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("httpMethod", "POST");
+        event.put("body", body);
+        return event;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> body(Map<String, Object> response) throws Exception {
+        return new ObjectMapper().readValue((String) response.get("body"), Map.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> errors(Map<String, Object> result) {
+        return (List<Map<String, Object>>) result.get("errors");
+    }
+
+    @Test
+    public void ndjsonIsValidatedAndWrittenInBatchesRetryingUnprocessedItems() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            ndjson.append(String.format("{\"createdAt\":\"2024-01-%02dT10:%02d:%02dZ\",\"nota\":%d,\"urgency\":\"%s\",\"descricao\":\"Feedback %d\"}\n",
+                1 + i % 28, i / 60 % 60, i % 60, 1 + i % 10, i % 2 == 0 ? "alta" : "Baixa", i));
+        }
+        ndjson.append("{\"createdAt\":\"ontem\",\"nota\":5,\"urgency\":\"alta\"}\n");
+        ndjson.append("{\"createdAt\":\"2024-02-01T10:00:00Z\",\"nota\":11,\"urgency\":\"alta\"}\n");
+        ndjson.append("{\"createdAt\":\"2024-02-01T10:00:00Z\",\"nota\":\"5\",\"urgency\":\"urgente\"}\n");
+        ndjson.append("[1, 2]\n");
+
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        ddb.throttledWrites.set(10);
+        IngestFeedbacksHandler handler = new IngestFeedbacksHandler(new AwsClients(ddb, null, null), "feedbacks");
+        Map<String, Object> response = handler.handleRequest(post(ndjson.toString()), new TestContext());
+
+        assertEquals(207, response.get("statusCode"));
+        Map<String, Object> result = body(response);
+        assertEquals(1004, result.get("received"));
+        assertEquals(1000, result.get("written"));
+        assertEquals(4, result.get("rejected"));
+        assertEquals(0, result.get("failed"));
+        assertEquals(10, result.get("retries"));
+        assertEquals(1000, ddb.partitions.get(FeedbackKeys.LEGACY_PARTITION).size());
+        // 40 lotes de 25 mais os 10 reenvios dos itens não processados
+        assertEquals(50, ddb.batchWrites.get());
+
+        List<Map<String, Object>> errors = errors(result);
+        assertEquals(1000, errors.get(0).get("index"));
+        assertTrue(errors.toString(), errors.get(0).get("error").toString().startsWith("createdAt inválido"));
+        assertTrue(errors.toString(), errors.get(1).get("error").toString().startsWith("nota fora do intervalo"));
+        assertTrue(errors.toString(), errors.get(2).get("error").toString().startsWith("urgency deve ser uma de"));
+        assertEquals("feedback deve ser um objeto JSON", errors.get(3).get("error"));
+
+        Map.Entry<String, Map<String, AttributeValue>> stored = ddb.partitions.get(FeedbackKeys.LEGACY_PARTITION).ceilingEntry("2024-01-02T10:00:01Z");
+        assertEquals("2024-01-02T10:00:01Z", FeedbackKeys.createdAtOf(stored.getKey()));
+        Map<String, AttributeValue> item = stored.getValue();
+        assertEquals("baixa", item.get("urgency").s());
+        assertEquals("2", item.get("nota").s());
+    }
+
+    @Test
+    public void feedbacksAtTheSameInstantAreAllKeptAndResentOnesAreDeduplicated() throws Exception {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        AwsClients clients = new AwsClients(ddb, null, null);
+        IngestFeedbacksHandler handler = new IngestFeedbacksHandler(clients, "feedbacks");
+        String first = "{\"createdAt\":\"2024-01-01T10:00:00Z\",\"nota\":\"5\",\"urgency\":\"media\"}";
+        // Mesmo instante em UTC, outro feedback: a chave de ordenação difere pelo hash do conteúdo
+        String other = "{\"createdAt\":\"2024-01-01T07:00:00-03:00\",\"nota\":\"8.50\",\"urgency\":\"alta\"}";
+
+        Map<String, Object> response = handler.handleRequest(post("[" + first + "," + other + "," + first + "]"), new TestContext());
+        assertEquals(200, response.get("statusCode"));
+        Map<String, Object> result = body(response);
+        assertEquals(2, result.get("written"));
+        assertEquals(1, result.get("duplicates"));
+        assertEquals(0, result.get("failed"));
+
+        // Em outra requisição o reenvio regrava o mesmo item
+        assertEquals(1, body(handler.handleRequest(post(first), new TestContext())).get("written"));
+        TreeMap<String, Map<String, AttributeValue>> partition = ddb.partitions.get(FeedbackKeys.LEGACY_PARTITION);
+        assertEquals(2, partition.size());
+
+        // O fim do período no mesmo segundo inclui os dois, e a resposta traz createdAt sem o sufixo
+        Map<String, Object> list = new HashMap<>();
+        list.put("startDate", "2024-01-01T00:00:00Z");
+        list.put("endDate", "2024-01-01T10:00:00Z");
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> items = (List<Map<String, Object>>) new ListFeedbacksHandler(clients)
+            .handleRequest(list, new TestContext()).get("items");
+        assertEquals(2, items.size());
+        for (Map<String, Object> feedback : items) {
+            assertEquals("2024-01-01T10:00:00Z", feedback.get("createdAt"));
+        }
+
+        Map<String, Object> malformed = handler.handleRequest(post(
+            "{\"createdAt\":\"2024-01-03T10:00:00Z\",\"nota\":\"7\",\"urgency\":\"baixa\"}\n{\"createdAt\": \n"), new TestContext());
+        assertEquals(400, malformed.get("statusCode"));
+        Map<String, Object> partial = body(malformed);
+        assertEquals(1, partial.get("written"));
+        assertTrue(partial.get("error").toString(), partial.get("error").toString().startsWith("JSON inválido depois de 1 feedbacks"));
+    }
+
+    @Test
+    public void shardedKeysAreDerivedFromTheNormalizedTimestamp() {
+        Map<String, AttributeValue> item = IngestFeedbacksHandler.toItem(
+            Map.of("createdAt", "2024-01-01T23:30:00-03:00", "nota", "09", "urgency", " Alta ", "descricao", "Noturno"), 4);
+        assertEquals("2024-01-02T02:30:00Z", FeedbackKeys.createdAtOf(item.get("createdAt").s()));
+        assertEquals(FeedbackKeys.partitionKeyFor("2024-01-02T02:30:00Z", "Noturno", 4), item.get("pk").s());
+        assertTrue(item.get("pk").s().startsWith("FEEDBACK#2024-01-02#"));
+        assertEquals("9", item.get("nota").s());
+        assertEquals("alta", item.get("urgency").s());
+    }
+}
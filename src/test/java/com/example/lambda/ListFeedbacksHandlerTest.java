@@ -0,0 +1,106 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ListFeedbacksHandlerTest {
+
+    // Um feedback por hora de 2025-12-01 a 2026-01-14
+    private static InMemoryDynamoDb sixWeeks() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        LocalDate day = LocalDate.parse("2025-12-01");
+        for (int d = 0; d < 45; d++) {
+            for (int h = 0; h < 24; h++) {
+                ddb.put(FeedbackKeys.LEGACY_PARTITION, day.plusDays(d) + String.format("T%02d:00:00Z", h), "alta", "7");
+            }
+        }
+        return ddb;
+    }
+
+    private static Map<String, Object> weekDrain(String endDate) {
+        Map<String, Object> event = new HashMap<>();
+        event.put("mode", "drain");
+        event.put("output", "s3");
+        event.put("endDate", endDate);
+        event.put("days", 7);
+        event.put("requireComplete", true);
+        return event;
+    }
+
+    @Test
+    public void workflowDrainReadsOnlyTheWeekEndingOnTheExecutionDay() throws Exception {
+        InMemoryS3 s3 = new InMemoryS3();
+        ListFeedbacksHandler handler = new ListFeedbacksHandler(new AwsClients(sixWeeks(), s3, null));
+
+        // Mesmo formato do $$.Execution.StartTime do Step Functions
+        Map<String, Object> result = handler.handleRequest(weekDrain("2026-01-04T06:15:00.123Z"), new TestContext());
+
+        assertEquals("2025-12-29T00:00:00Z", result.get("startDate"));
+        assertEquals("2026-01-04T23:59:59Z", result.get("endDate"));
+        assertEquals(false, result.get("truncated"));
+        assertEquals(7L * 24, result.get("count"));
+        byte[] batch = s3.objects.get((String) result.get("batchKey"));
+        assertEquals(7L * 24, new FeedbackBatchReader(ByteBuffer.wrap(batch)).totalRows());
+    }
+
+    @Test
+    public void repeatedWorkflowRunsShareTheBatchAndTheReport() {
+        InMemoryS3 s3 = new InMemoryS3();
+        AwsClients clients = new AwsClients(sixWeeks(), s3, null);
+        ListFeedbacksHandler handler = new ListFeedbacksHandler(clients);
+
+        // Dois "Feedback Submitted" com a mesma semana: mesmo conteúdo, mesmo lote
+        String first = (String) handler.handleRequest(weekDrain("2026-01-04T06:15:00Z"), new TestContext()).get("batchKey");
+        String second = (String) handler.handleRequest(weekDrain("2026-01-04T18:40:00Z"), new TestContext()).get("batchKey");
+        assertEquals(first, second);
+        assertTrue(first, first.matches("batches/[0-9a-f]{64}\\.fbk"));
+
+        GenerateWeeklyReportHandler generate = new GenerateWeeklyReportHandler(clients);
+        Map<String, Object> input = new HashMap<>();
+        input.put("startDate", "2025-12-29T00:00:00Z");
+        input.put("endDate", "2026-01-04T23:59:59Z");
+        input.put("batchKey", first);
+        String report = generate.handleRequest(input, new TestContext());
+        int uploads = s3.puts.get() + s3.parts.get();
+        input.put("batchKey", second);
+        assertEquals(report, generate.handleRequest(input, new TestContext()));
+        assertEquals(uploads, s3.puts.get() + s3.parts.get());
+    }
+
+    @Test
+    public void drainStoppedByItsBudgetFailsInsteadOfUploadingAPartialBatch() {
+        InMemoryS3 s3 = new InMemoryS3();
+        ListFeedbacksHandler handler = new ListFeedbacksHandler(new AwsClients(sixWeeks(), s3, null));
+        // Sem tempo além da margem do drain: para depois da primeira página
+        TestContext noTimeLeft = new TestContext() {
+            @Override
+            public int getRemainingTimeInMillis() {
+                return 0;
+            }
+        };
+        Map<String, Object> event = weekDrain("2026-01-14T00:00:00Z");
+        event.put("days", 45);
+
+        try {
+            handler.handleRequest(event, noTimeLeft);
+            fail("drain parcial deveria falhar");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("interrompido por orçamento depois de 1000 itens"));
+        }
+        assertTrue(s3.objects.isEmpty());
+
+        // Sem requireComplete o resultado parcial continua disponível, com o token para retomar
+        event.remove("requireComplete");
+        Map<String, Object> partial = handler.handleRequest(event, noTimeLeft);
+        assertEquals(true, partial.get("truncated"));
+        assertEquals(1000L, partial.get("count"));
+    }
+}
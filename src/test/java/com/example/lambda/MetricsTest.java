@@ -0,0 +1,56 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MetricsTest {
+
+    @Test
+    public void emitsEmbeddedMetricFormatAndResetsAfterFlush() throws Exception {
+        Metrics metrics = new Metrics("ListFeedbacks");
+        metrics.timeNanos(Metrics.DYNAMO_QUERY, 2_000_000);
+        metrics.timeNanos(Metrics.DYNAMO_QUERY, 4_000_000);
+        metrics.timeNanos(Metrics.DYNAMO_QUERY, 40_000_000);
+        metrics.timeNanos(Metrics.SERIALIZATION, 1_500_000);
+        metrics.count(Metrics.DYNAMO_READ_CAPACITY, 0.5);
+        metrics.count(Metrics.DYNAMO_READ_CAPACITY, 1.5);
+        metrics.bytes(Metrics.S3_PUT_BYTES, 1024);
+
+        TestContext context = new TestContext();
+        metrics.flush(context.getLogger());
+        assertEquals(1, context.logs.size());
+        JsonNode emf = new ObjectMapper().readTree(context.logs.get(0));
+
+        JsonNode directive = emf.get("_aws").get("CloudWatchMetrics").get(0);
+        assertEquals("FeedbackReportSystem", directive.get("Namespace").asText());
+        assertEquals("Function", directive.get("Dimensions").get(0).get(0).asText());
+        List<String> declared = new ArrayList<>();
+        directive.get("Metrics").forEach(metric -> declared.add(metric.get("Name").asText()));
+        declared.forEach(name -> assertTrue(name, emf.has(name)));
+
+        assertEquals("ListFeedbacks", emf.get("Function").asText());
+        // Várias medições: percentis; uma só: o valor
+        assertEquals(4.0, emf.get("DynamoQueryLatencyP50").asDouble(), 0.1);
+        assertEquals(40.0, emf.get("DynamoQueryLatencyMax").asDouble(), 0.5);
+        assertEquals(3, emf.get("DynamoQueryLatencyCount").asInt());
+        assertEquals(1.5, emf.get("SerializationTime").asDouble(), 0.05);
+        assertFalse(emf.has("SerializationTimeP50"));
+        assertEquals(2.0, emf.get("DynamoReadCapacity").asDouble(), 0.0);
+        assertEquals(1024, emf.get("S3PutBytes").asInt());
+
+        // Depois do flush nada foi medido: nenhuma linha nova
+        metrics.flush(context.getLogger());
+        assertEquals(1, context.logs.size());
+        assertNull(metrics.toEmf(0));
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class QueryResultCacheTest {
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntry() {
+        QueryResultCache cache = new QueryResultCache(2);
+        cache.put("a", "A", QueryResultCache.NO_EXPIRY);
+        cache.put("b", "B", QueryResultCache.NO_EXPIRY);
+        cache.get("a");
+        cache.put("c", "C", QueryResultCache.NO_EXPIRY);
+
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    public void openWindowsExpireAndSettledOnesDoNot() {
+        AtomicLong now = new AtomicLong(1_000);
+        QueryResultCache cache = new QueryResultCache(10, now::get);
+        cache.put("open", "O", 60_000);
+        cache.put("settled", "S", QueryResultCache.NO_EXPIRY);
+
+        now.addAndGet(59_999);
+        assertEquals("O", cache.get("open"));
+        now.addAndGet(1);
+        assertNull(cache.get("open"));
+        assertEquals("S", cache.get("settled"));
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void repeatedApiGatewayQueriesAreServedFromTheCache() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        ddb.put(FeedbackKeys.LEGACY_PARTITION, "2025-01-02T10:00:00Z", "alta", "9");
+        ListFeedbacksHandler handler = new ListFeedbacksHandler(new AwsClients(ddb, null, null));
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("startDate", "2025-01-01T00:00:00Z");
+        params.put("endDate", "2025-01-07T23:59:59Z");
+        Map<String, Object> event = new HashMap<>();
+        event.put("httpMethod", "GET");
+        event.put("queryStringParameters", params);
+
+        Map<String, Object> first = handler.handleRequest(event, new TestContext());
+        params.put("urgency", " ");
+        Map<String, Object> second = handler.handleRequest(event, new TestContext());
+
+        assertEquals(1, ddb.queries.get());
+        assertEquals(first.get("body"), second.get("body"));
+        assertEquals(200, second.get("statusCode"));
+    }
+
+    @Test
+    public void historicalImportDiscardsCachedSettledWindows() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        ddb.put(FeedbackKeys.LEGACY_PARTITION, "2025-01-02T10:00:00Z", "alta", "9");
+        AwsClients clients = new AwsClients(ddb, null, null);
+        ListFeedbacksHandler handler = new ListFeedbacksHandler(clients, "stats", 0);
+        IngestFeedbacksHandler ingest = new IngestFeedbacksHandler(clients, "feedbacks", "stats");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("startDate", "2025-01-01T00:00:00Z");
+        params.put("endDate", "2025-01-07T23:59:59Z");
+        Map<String, Object> event = new HashMap<>();
+        event.put("httpMethod", "GET");
+        event.put("queryStringParameters", params);
+        handler.handleRequest(event, new TestContext());
+        handler.handleRequest(event, new TestContext());
+        assertEquals(1, ddb.queries.get());
+
+        // Feedback de agora não toca janelas fechadas: a revisão não muda
+        ingest.handleRequest(Map.of("feedbacks", List.of(
+            Map.of("createdAt", Instant.now().toString(), "nota", "7", "urgency", "baixa"))), new TestContext());
+        assertNull(ddb.days.get(SettledRevision.ROW));
+        handler.handleRequest(event, new TestContext());
+        assertEquals(1, ddb.queries.get());
+
+        ingest.handleRequest(Map.of("feedbacks", List.of(
+            Map.of("createdAt", "2025-01-03T08:00:00Z", "nota", "4", "urgency", "media"))), new TestContext());
+        Map<String, Object> refreshed = handler.handleRequest(event, new TestContext());
+        assertEquals(2, ddb.queries.get());
+        assertTrue(refreshed.get("body").toString(), refreshed.get("body").toString().contains("2025-01-03T08:00:00Z"));
+        handler.handleRequest(event, new TestContext());
+        assertEquals(2, ddb.queries.get());
+    }
+}
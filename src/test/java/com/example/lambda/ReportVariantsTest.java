@@ -0,0 +1,53 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+public class ReportVariantsTest {
+
+    @Test
+    public void boundedHeapsKeepTheExtremesAcrossCombinedChunks() {
+        LocalDate endDay = LocalDate.parse("2024-01-31");
+        ReportVariants first = new ReportVariants(Set.of(ReportVariants.EXTREMES, ReportVariants.MONTHLY), endDay, 3);
+        ReportVariants second = first.fresh();
+
+        SplittableRandom random = new SplittableRandom(7);
+        List<Double> notas = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            double nota = 1 + random.nextInt(1000) / 100.0;
+            notas.add(nota);
+            ReportVariants chunk = i % 2 == 0 ? first : second;
+            long day = endDay.minusDays(i % 45).toEpochDay();
+            chunk.add("alta", nota, day);
+            if (chunk.ranks(nota)) {
+                chunk.rank(new ReportVariants.Ranked(nota, Double.toString(nota), "alta",
+                    LocalDate.ofEpochDay(day) + "T00:00:" + String.format("%02d", i % 60) + "Z", "f" + i));
+            }
+        }
+        first.combine(second);
+
+        notas.sort(Comparator.naturalOrder());
+        assertEquals(notas.subList(0, 3), first.lowest().stream().map(ReportVariants.Ranked::nota).toList());
+        assertEquals(List.of(notas.get(999), notas.get(998), notas.get(997)),
+            first.highest().stream().map(ReportVariants.Ranked::nota).toList());
+        // Mês de janeiro: os 31 primeiros dias de cada ciclo de 45
+        long january = 0;
+        for (int i = 0; i < 1000; i++) {
+            january += i % 45 < 31 ? 1 : 0;
+        }
+        assertEquals(january, first.monthly().total());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVariants() {
+        ReportVariants.requested("rolling7, trimestral", "", LocalDate.parse("2024-01-31"), 10);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class S3MultipartOutputStreamTest {
+
+    @Test
+    public void smallObjectsAreASinglePut() throws IOException {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3MultipartOutputStream out = new S3MultipartOutputStream(s3, "bucket", "small.txt", "text/plain", 0);
+        out.write("relatório".getBytes());
+        out.close();
+
+        assertEquals(1, s3.puts.get());
+        assertEquals(0, s3.parts.get());
+        assertArrayEquals("relatório".getBytes(), s3.objects.get("small.txt"));
+    }
+
+    @Test
+    public void largeObjectsAreSplitIntoParts() throws IOException {
+        InMemoryS3 s3 = new InMemoryS3();
+        byte[] content = new byte[S3MultipartOutputStream.MIN_PART_SIZE * 2 + 1234];
+        new Random(7).nextBytes(content);
+
+        S3MultipartOutputStream out = new S3MultipartOutputStream(s3, "bucket", "large.txt", "text/plain", 0);
+        for (int offset = 0; offset < content.length; offset += 1000) {
+            out.write(content, offset, Math.min(1000, content.length - offset));
+        }
+        out.close();
+
+        assertEquals(3, s3.parts.get());
+        assertEquals(3, out.partCount());
+        assertArrayEquals(content, s3.objects.get("large.txt"));
+    }
+
+    @Test
+    public void abortLeavesNoObject() throws IOException {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3MultipartOutputStream out = new S3MultipartOutputStream(s3, "bucket", "partial.txt", "text/plain", 0);
+        out.write(new byte[S3MultipartOutputStream.MIN_PART_SIZE + 10]);
+        out.abort();
+        out.close();
+
+        assertFalse(s3.objects.containsKey("partial.txt"));
+    }
+}
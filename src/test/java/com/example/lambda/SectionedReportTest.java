@@ -0,0 +1,80 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+public class SectionedReportTest {
+
+    private static Map<String, Object> event(String format) {
+        List<Map<String, Object>> feedbacks = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            feedbacks.add(Map.of("createdAt", String.format("2024-01-0%dT10:%02d:%02dZ", 1 + i % 7, i / 60 % 60, i % 60),
+                "nota", Integer.toString(1 + i % 10), "urgency", i % 3 == 0 ? "alta" : "baixa",
+                "descricao", "Feedback número " + i + " sobre o atendimento no laboratório"));
+        }
+        Map<String, Object> input = new HashMap<>();
+        input.put("startDate", "2024-01-01T00:00:00Z");
+        input.put("endDate", "2024-01-07T23:59:59Z");
+        input.put("feedbacks", feedbacks);
+        input.put("format", format);
+        return input;
+    }
+
+    @Test
+    public void gzipOfTheWholeObjectIsTheTextReportAndNotifyReadsOnlyTheSummary() throws Exception {
+        InMemoryS3 s3 = new InMemoryS3();
+        S3Presigner presigner = S3Presigner.builder()
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("k", "s")))
+            .build();
+        AwsClients clients = new AwsClients(null, s3, new StubSes(0), presigner);
+        GenerateWeeklyReportHandler generate = new GenerateWeeklyReportHandler(clients);
+
+        String textKey = generate.handleRequest(event("text"), new TestContext());
+        String sectionedKey = generate.handleRequest(event("sections"), new TestContext());
+        assertTrue(sectionedKey, sectionedKey.endsWith(".txt.gz"));
+        assertEquals(SectionedReport.CONTENT_TYPE, s3.contentTypes.get(sectionedKey));
+
+        byte[] compressed = s3.objects.get(sectionedKey);
+        String text = new String(s3.objects.get(textKey), StandardCharsets.UTF_8);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertEquals(text, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertTrue(compressed.length * 4 < text.length());
+
+        List<SectionedReport.Section> sections = SectionedReport.parseTrailer(compressed);
+        assertEquals(List.of("summary", "urgency", "days", "details"), sections.stream().map(SectionedReport.Section::name).toList());
+
+        StubSes ses = (StubSes) clients.ses();
+        s3.bytesRead.set(0);
+        Map<String, Object> notify = new HashMap<>();
+        notify.put("reportKey", sectionedKey);
+        notify.put("recipientsKey", "destinatarios.txt");
+        s3.objects.put("destinatarios.txt", "coordenador@example.com\n".getBytes(StandardCharsets.UTF_8));
+        new NotifyReportHandler(clients).handleRequest(notify, new TestContext());
+
+        String body = ses.sent.get(0).message().body().text().data();
+        assertTrue(body, body.startsWith("=== RELATÓRIO SEMANAL DE FEEDBACKS ==="));
+        assertTrue(body, body.contains("Total de feedbacks: 2000") && body.contains("=== QUANTIDADE DE AVALIAÇÕES POR DIA ==="));
+        assertFalse(body, body.contains("DETALHES DOS FEEDBACKS"));
+        assertTrue(body, body.contains("X-Amz-Signature="));
+        // Índice e resumo, não o objeto inteiro
+        long listBytes = "coordenador@example.com\n".length();
+        assertTrue(s3.bytesRead.get() + " de " + compressed.length, s3.bytesRead.get() - listBytes < compressed.length / 4);
+    }
+}
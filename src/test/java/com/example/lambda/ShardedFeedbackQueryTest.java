@@ -0,0 +1,129 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ShardedFeedbackQueryTest {
+
+    private static final int SHARDS = 4;
+
+    private InMemoryDynamoDb week() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        LocalDate day = LocalDate.parse("2025-12-29");
+        for (int d = 0; d < 7; d++) {
+            for (int i = 0; i < 25; i++) {
+                String createdAt = day.plusDays(d) + String.format("T%02d:%02d:00Z", i % 24, i);
+                ddb.put(FeedbackKeys.partitionKeyFor(createdAt, "x" + i, SHARDS), createdAt, i % 3 == 0 ? "alta" : "baixa", "7");
+            }
+        }
+        // Empate de createdAt entre dois shards
+        ddb.put(FeedbackKeys.partitionKey(LocalDate.parse("2025-12-30"), 0), "2025-12-30T12:30:00Z", "alta", "9");
+        ddb.put(FeedbackKeys.partitionKey(LocalDate.parse("2025-12-30"), 1), "2025-12-30T12:30:00Z", "media", "8");
+        return ddb;
+    }
+
+    @Test
+    public void pagesThroughAllShardsInCreatedAtOrder() {
+        InMemoryDynamoDb ddb = week();
+        ShardedFeedbackQuery query = new ShardedFeedbackQuery(ddb, new Metrics("test"), "feedbacks", SHARDS,
+            "2025-12-29T00:00:00Z", "2026-01-04T23:59:59Z", null);
+
+        List<String> seen = new ArrayList<>();
+        Map<String, Object> token = null;
+        do {
+            FeedbackPage page = query.fetch(token, 7);
+            for (Map<String, AttributeValue> item : page.items()) {
+                seen.add(item.get("createdAt").s() + "|" + item.get("pk").s());
+            }
+            token = page.nextToken();
+        } while (token != null);
+
+        assertEquals(7 * 25 + 2, seen.size());
+        assertEquals(seen.size(), seen.stream().distinct().count());
+        List<String> sorted = new ArrayList<>(seen);
+        sorted.sort(null);
+        assertEquals(sorted, seen);
+    }
+
+    @Test
+    public void appliesUrgencyFilterAcrossShards() {
+        InMemoryDynamoDb ddb = week();
+        ShardedFeedbackQuery query = new ShardedFeedbackQuery(ddb, new Metrics("test"), "feedbacks", SHARDS,
+            "2025-12-29T00:00:00Z", "2026-01-04T23:59:59Z", "alta");
+
+        FeedbackPage page = query.fetch(null, 1000);
+
+        assertEquals(7 * 9 + 1, page.items().size());
+        assertNull(page.nextToken());
+    }
+
+    @Test
+    public void sparseYearIsReadWithDaysInFlightTogetherAndAFullFirstDayReadsNoOtherDay() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        // Um feedback a cada 30 dias ao longo de 2025
+        LocalDate first = LocalDate.parse("2025-01-01");
+        for (int d = 0; d < 365; d += 30) {
+            String createdAt = first.plusDays(d) + "T12:00:00Z";
+            ddb.put(FeedbackKeys.partitionKeyFor(createdAt, "x", SHARDS), createdAt, "alta", "7");
+        }
+        ShardedFeedbackQuery year = new ShardedFeedbackQuery(ddb, new Metrics("test"), "feedbacks", SHARDS,
+            "2025-01-01T00:00:00Z", "2025-12-31T23:59:59Z", null, 365);
+
+        FeedbackPage page = year.fetch(null, 1000);
+        assertEquals(13, page.items().size());
+        assertNull(page.nextToken());
+        // Cada dia do período é consultado uma vez por shard e na partição legada, sem dias repetidos nem a mais
+        assertEquals(365 * (SHARDS + 1), ddb.queries.get());
+
+        ddb.queries.set(0);
+        InMemoryDynamoDb dense = week();
+        ShardedFeedbackQuery week = new ShardedFeedbackQuery(dense, new Metrics("test"), "feedbacks", SHARDS,
+            "2025-12-29T00:00:00Z", "2026-01-04T23:59:59Z", null);
+        FeedbackPage firstPage = week.fetch(null, 5);
+        assertEquals(5, firstPage.items().size());
+        assertEquals(SHARDS + 1, dense.queries.get());
+    }
+
+    @Test
+    public void legacyItemsAreMergedAndLongRangesAreProbedAFewDaysPerPage() {
+        InMemoryDynamoDb ddb = week();
+        // Gravados antes de ligar SHARD_COUNT, inclusive um empate com dois shards
+        ddb.put(FeedbackKeys.LEGACY_PARTITION, "2025-12-30T12:30:00Z", "baixa", "4");
+        ddb.put(FeedbackKeys.LEGACY_PARTITION, "2025-12-31T08:00:00Z", "alta", "6");
+        ddb.put(FeedbackKeys.LEGACY_PARTITION, "2026-02-15T08:00:00Z", "alta", "6");
+
+        ShardedFeedbackQuery query = new ShardedFeedbackQuery(ddb, new Metrics("test"), "feedbacks", SHARDS,
+            "2025-12-01T00:00:00Z", "2026-03-31T23:59:59Z", null, 10);
+        List<String> seen = new ArrayList<>();
+        Map<String, Object> token = null;
+        int pages = 0;
+        do {
+            ddb.queries.set(0);
+            FeedbackPage page = query.fetch(token, 1000);
+            pages++;
+            // Nunca mais de 10 dias por página, mesmo com a página vazia
+            assertTrue(ddb.queries.get() <= 10 * (SHARDS + 1));
+            for (Map<String, AttributeValue> item : page.items()) {
+                seen.add(item.get("createdAt").s() + "|" + item.get("pk").s());
+            }
+            token = page.nextToken();
+        } while (token != null);
+
+        assertEquals(13, pages);
+        assertEquals(7 * 25 + 2 + 3, seen.size());
+        assertEquals(seen.size(), seen.stream().distinct().count());
+        List<String> sorted = new ArrayList<>(seen);
+        sorted.sort(null);
+        assertEquals(sorted, seen);
+        assertEquals("2026-02-15T08:00:00Z|" + FeedbackKeys.LEGACY_PARTITION, seen.get(seen.size() - 1));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.lambda;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.ses.SesClient;
+import software.amazon.awssdk.services.ses.model.SendEmailRequest;
+import software.amazon.awssdk.services.ses.model.SendEmailResponse;
+import software.amazon.awssdk.services.ses.model.SesException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SES local: guarda os e-mails aceitos e o instante de cada tentativa, e devolve throttling
+ * ("Maximum sending rate exceeded") a cada throttleEvery tentativas. E-mails para um endereço
+ * de rejected são recusados.
+ */
+class StubSes implements SesClient {
+
+    final List<SendEmailRequest> sent = new CopyOnWriteArrayList<>();
+    final List<Long> attemptNanos = new CopyOnWriteArrayList<>();
+    // Endereços recusados pelo SES (MessageRejected): o e-mail do lote inteiro falha
+    final Set<String> rejected = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final int throttleEvery;
+
+    StubSes(int throttleEvery) {
+        this.throttleEvery = throttleEvery;
+    }
+
+    @Override
+    public SendEmailResponse sendEmail(SendEmailRequest request) {
+        attemptNanos.add(System.nanoTime());
+        if (throttleEvery > 0 && attempts.incrementAndGet() % throttleEvery == 0) {
+            throw (SesException) SesException.builder()
+                .statusCode(400)
+                .awsErrorDetails(AwsErrorDetails.builder()
+                    .errorCode("Throttling")
+                    .errorMessage("Maximum sending rate exceeded.")
+                    .build())
+                .build();
+        }
+        List<String> addresses = new ArrayList<>();
+        if (request.destination() != null) {
+            addresses.addAll(request.destination().toAddresses());
+            addresses.addAll(request.destination().bccAddresses());
+        }
+        if (addresses.stream().anyMatch(rejected::contains)) {
+            throw (SesException) SesException.builder()
+                .statusCode(400)
+                .awsErrorDetails(AwsErrorDetails.builder()
+                    .errorCode("MessageRejected")
+                    .errorMessage("Email address is not verified.")
+                    .build())
+                .build();
+        }
+        sent.add(request);
+        return SendEmailResponse.builder().messageId(UUID.randomUUID().toString()).build();
+    }
+
+    @Override
+    public String serviceName() {
+        return "ses";
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class TimeSlicedFeedbackQueryTest {
+
+    private static final String START = "2025-11-01T00:00:00Z";
+    private static final String END = "2026-01-31T23:59:59Z";
+
+    // Dias vazios, dias densos e um item no fim exato do período
+    private InMemoryDynamoDb quarter() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        LocalDate day = LocalDate.parse("2025-11-01");
+        for (int d = 0; d < 92; d++) {
+            int perDay = d % 5 == 0 ? 0 : d > 60 ? 30 : 3;
+            for (int i = 0; i < perDay; i++) {
+                String createdAt = day.plusDays(d) + String.format("T%02d:%02d:00Z", i % 24, i);
+                ddb.put(FeedbackKeys.LEGACY_PARTITION, createdAt, i % 3 == 0 ? "alta" : "baixa", "7");
+            }
+        }
+        ddb.put(FeedbackKeys.LEGACY_PARTITION, END, "media", "5");
+        return ddb;
+    }
+
+    private static List<String> createdAt(List<Map<String, AttributeValue>> items) {
+        List<String> values = new ArrayList<>();
+        items.forEach(item -> values.add(item.get("createdAt").s()));
+        return values;
+    }
+
+    private static List<String> serial(InMemoryDynamoDb ddb, String urgency) {
+        TimeSlicedFeedbackQuery single = new TimeSlicedFeedbackQuery(ddb, new Metrics("test"), "feedbacks",
+            START, END, urgency, 1, 1, 1);
+        FeedbackPage page = single.fetch(null, 100_000);
+        assertNull(page.nextToken());
+        return createdAt(page.items());
+    }
+
+    @Test
+    public void drainReturnsTheSameItemsInOrderAsOneSerialQuery() {
+        InMemoryDynamoDb ddb = quarter();
+        TimeSlicedFeedbackQuery query = new TimeSlicedFeedbackQuery(ddb, new Metrics("test"), "feedbacks",
+            START, END, null, 16, 4, 2);
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        new FeedbackDrainer(50, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE).drain(query, null, items::add);
+
+        List<String> expected = serial(ddb, null);
+        assertEquals(expected, createdAt(items));
+        assertEquals(END, expected.get(expected.size() - 1));
+    }
+
+    @Test
+    public void resumesFromTheCompositeTokenWithFreshInstances() {
+        InMemoryDynamoDb ddb = quarter();
+        List<String> seen = new ArrayList<>();
+        Map<String, Object> token = null;
+        do {
+            // Uma instância por página, como nas chamadas pela API
+            FeedbackPage page = new TimeSlicedFeedbackQuery(ddb, new Metrics("test"), "feedbacks",
+                START, END, "alta", 10, 3, 2).fetch(token, 13);
+            seen.addAll(createdAt(page.items()));
+            token = page.nextToken();
+            if (token != null) {
+                assertTrue(token.get(TimeSlicedFeedbackQuery.TOKEN_SLICES) instanceof List);
+            }
+        } while (token != null);
+
+        assertEquals(serial(ddb, "alta"), seen);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTokensFromAnUnslicedQuery() {
+        new TimeSlicedFeedbackQuery(new InMemoryDynamoDb(), new Metrics("test"), "feedbacks", START, END, null, 8, 2, 2)
+            .fetch(Map.of("pk", FeedbackKeys.LEGACY_PARTITION, "createdAt", START), 10);
+    }
+
+    @Test
+    public void closeStopsTheSliceReadersAfterTheLastPage() throws Exception {
+        InMemoryDynamoDb table = quarter();
+        // 50 ms por Query, interrompível como a chamada HTTP do SDK
+        InMemoryDynamoDb slow = new InMemoryDynamoDb() {
+            @Override
+            public QueryResponse query(QueryRequest request) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Query interrompida", e);
+                }
+                return table.query(request);
+            }
+        };
+        TimeSlicedFeedbackQuery query = new TimeSlicedFeedbackQuery(slow, new Metrics("test"), "feedbacks",
+            START, END, null, 8, 2, 4);
+
+        // Página da API com um item: sem close, cada fatia ativa seguiria lendo 4 páginas à frente
+        try (query) {
+            assertEquals(1, query.fetch(null, 1).items().size());
+        }
+        int afterClose = table.queries.get();
+        Thread.sleep(600);
+        assertTrue(afterClose + " -> " + table.queries.get(), table.queries.get() <= afterClose + 2);
+        assertTrue(table.queries.get() < 2 * 5);
+
+        try {
+            query.fetch(null, 1);
+            fail("consulta encerrada não deveria ler de novo");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("encerrada"));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.lambda;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class UrgencyIndexQueryTest {
+
+    @Test
+    public void pagesContainOnlyMatchingItemsAcrossShards() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        LocalDate day = LocalDate.parse("2025-12-29");
+        int alta = 0;
+        for (int d = 0; d < 7; d++) {
+            for (int i = 0; i < 30; i++) {
+                String createdAt = day.plusDays(d) + String.format("T%02d:%02d:00Z", i % 24, i);
+                String urgency = i % 5 == 0 ? "alta" : "baixa";
+                alta += urgency.equals("alta") ? 1 : 0;
+                ddb.put(FeedbackKeys.partitionKeyFor(createdAt, "x" + i, 4), createdAt, urgency, "7");
+            }
+        }
+
+        UrgencyIndexQuery query = new UrgencyIndexQuery(ddb, new Metrics("test"), "feedbacks", "UrgencyDayIndex",
+            "2025-12-29T00:00:00Z", "2026-01-04T23:59:59Z", "alta");
+
+        List<String> seen = new ArrayList<>();
+        Map<String, Object> token = null;
+        do {
+            FeedbackPage page = query.fetch(token, 10);
+            for (Map<String, AttributeValue> item : page.items()) {
+                assertEquals("alta", item.get("urgency").s());
+                seen.add(item.get("createdAt").s());
+            }
+            token = page.nextToken();
+            if (token != null) {
+                assertEquals(10, page.items().size());
+                assertEquals(UrgencyIndexQuery.TOKEN_INDEX, token.get("index"));
+            }
+        } while (token != null);
+
+        assertEquals(alta, seen.size());
+        List<String> sorted = new ArrayList<>(seen);
+        sorted.sort(null);
+        assertEquals(sorted, seen);
+        // Uma Query por dia (6 itens "alta" em cada), mais uma em cada dia que uma página deixou pela metade
+        assertEquals(7 + 3, ddb.queries.get());
+    }
+
+    @Test
+    public void indexKeyIsPerDayAndLongEmptyRangesAreReadAFewDaysPerPage() {
+        InMemoryDynamoDb ddb = new InMemoryDynamoDb();
+        ddb.put(FeedbackKeys.LEGACY_PARTITION, "2025-03-10T08:00:00Z", "alta", "7");
+        ddb.put(FeedbackKeys.LEGACY_PARTITION, "2025-03-10T09:00:00Z", "baixa", "7");
+        ddb.put(FeedbackKeys.LEGACY_PARTITION, "2025-11-20T08:00:00Z", "alta", "7");
+        Map<String, AttributeValue> item = IngestFeedbacksHandler.toItem(
+            Map.of("createdAt", "2025-01-01T23:30:00-03:00", "nota", "9", "urgency", "alta"), 0);
+        assertEquals("alta#2025-01-02", item.get(FeedbackKeys.URGENCY_DAY).s());
+
+        UrgencyIndexQuery year = new UrgencyIndexQuery(ddb, new Metrics("test"), "feedbacks", "UrgencyDayIndex",
+            "2025-01-01T00:00:00Z", "2025-12-31T23:59:59Z", "alta", 30);
+        List<String> seen = new ArrayList<>();
+        Map<String, Object> token = null;
+        int pages = 0;
+        do {
+            ddb.queries.set(0);
+            FeedbackPage page = year.fetch(token, 100);
+            pages++;
+            assertTrue(ddb.queries.get() <= 30);
+            page.items().forEach(feedback -> seen.add(feedback.get("createdAt").s()));
+            token = page.nextToken();
+        } while (token != null);
+
+        assertEquals(List.of("2025-03-10T08:00:00Z", "2025-11-20T08:00:00Z"), seen);
+        assertEquals((365 + 29) / 30, pages);
+    }
+
+    @Test
+    public void rejectsTokensFromAnotherSource() {
+        Map<String, Object> tableToken = Map.of("pk", "FEEDBACK", "createdAt", "2025-12-30T10:00:00Z");
+        Map<String, Object> indexToken = Map.of("pk", "FEEDBACK", "createdAt", "2025-12-30T10:00:00Z",
+            "urgency", "alta", "index", UrgencyIndexQuery.TOKEN_INDEX);
+
+        UrgencyIndexQuery.requireIndex(tableToken, null);
+        UrgencyIndexQuery.requireIndex(indexToken, UrgencyIndexQuery.TOKEN_INDEX);
+        assertTrue(rejected(tableToken, UrgencyIndexQuery.TOKEN_INDEX));
+        assertTrue(rejected(indexToken, null));
+    }
+
+    private static boolean rejected(Map<String, Object> token, String expected) {
+        try {
+            UrgencyIndexQuery.requireIndex(token, expected);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+}